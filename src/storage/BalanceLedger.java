@@ -0,0 +1,109 @@
+package storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An account balance kept in whole cents. Postings are applied with a single atomic
+ * add, so billing and payment threads can post to the same balance at once without
+ * losing updates, and repeated postings never drift the way a floating-point sum does.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class BalanceLedger {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the number of cents in a dollar */
+    public static final int CENTS_PER_DOLLAR = 100;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the balance, in cents; positive when the customer owes money */
+    private final AtomicLong cents;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * BalanceLedger Constructor for a zero balance
+     */
+    public BalanceLedger() {
+        this.cents = new AtomicLong();
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the balance in cents
+     *
+     * @return      the balance, in cents
+     */
+    public long getCents() {
+        return cents.get();
+    }
+
+    /**
+     * Retrieves the balance in dollars
+     *
+     * @return      the balance, in dollars
+     */
+    public double getDollars() {
+        return toDollars(cents.get());
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Increases the balance
+     *
+     * @param   amount      the amount to charge, in cents; must not be negative
+     * @return              the balance right after this charge, in cents
+     */
+    public long charge(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amounts must be non-negative");
+        }
+        return cents.addAndGet(amount);
+    }
+
+    /**
+     * Decreases the balance
+     *
+     * @param   amount      the amount to credit, in cents; must not be negative
+     * @return              the balance right after this credit, in cents
+     */
+    public long credit(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amounts must be non-negative");
+        }
+        return cents.addAndGet(-amount);
+    }
+
+    /**
+     * Converts a dollar amount to cents, rounding to the nearest cent
+     *
+     * @param   dollars     the amount in dollars; must be a finite number
+     * @return              the amount in cents
+     */
+    public static long toCents(double dollars) {
+        if (Double.isNaN(dollars) || Double.isInfinite(dollars)) {
+            throw new IllegalArgumentException("Amounts must be finite");
+        }
+        return Math.round(dollars * CENTS_PER_DOLLAR);
+    }
+
+    /**
+     * Converts an amount in cents to dollars
+     *
+     * @param   cents       the amount in cents
+     * @return              the amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+}
@@ -1,5 +1,8 @@
 package storage;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 /**
  * Represents a single customer of the storage facility
  *
@@ -12,8 +15,10 @@ public class Customer implements CustomerInterface  {
     private String name;
     /** the customer's phone number */
     private String phone;
-    /** the customer's balance */
-    private double balance;
+    /** the customer's balance, kept in exact cents */
+    private final BalanceLedger balance;
+    /** the locations this customer has been added to, which index the customer's details */
+    private volatile StorageLocation[] locations;
     
     /**
      * Customer Constructor
@@ -22,9 +27,10 @@ public class Customer implements CustomerInterface  {
      * @param   phone       the customer's phone number; must not be null or empty
      */
     public Customer(String name, String phone) {
+        this.locations = new StorageLocation[0];
         setName(name);
         setPhone(phone);
-        this.balance = 0.00;
+        this.balance = new BalanceLedger();
     }
     
     /**
@@ -51,7 +57,16 @@ public class Customer implements CustomerInterface  {
      * @return  the customer's current balance
      */
     public double getBalance() {
-        return balance;
+        return balance.getDollars();
+    }
+
+    /**
+     * Retrieves the customer balance in cents
+     *
+     * @return  the customer's current balance, in cents
+     */
+    public long getBalanceCents() {
+        return balance.getCents();
     }
     
     
@@ -64,7 +79,13 @@ public class Customer implements CustomerInterface  {
         if (name == null || name.isEmpty() ) {
             throw new IllegalArgumentException("Name must be non-null and non-empty");
         }
+        String oldName = this.name;
         this.name = name;
+        if (oldName != null) {
+            for (StorageLocation location : locations) {
+                location.customerNameChanged(this, oldName);
+            }
+        }
     }
     
     /**
@@ -76,11 +97,18 @@ public class Customer implements CustomerInterface  {
         if (phone == null || phone.isEmpty()) {
             throw new IllegalArgumentException("Phone must be non-null and non-empty");
         }
+        String oldPhone = this.phone;
         this.phone = phone;
+        if (oldPhone != null) {
+            for (StorageLocation location : locations) {
+                location.customerPhoneChanged(this, oldPhone);
+            }
+        }
     }
     
     /**
-     * Charges the customer the specified amount, increasing the customer balance
+     * Charges the customer the specified amount, increasing the customer balance.
+     * The amount is rounded to the nearest cent. Safe to call from many threads at once.
      *
      * @param   amount      the amount to charge; must not be negative
      * @return              the new balance after the charge has been made
@@ -89,12 +117,12 @@ public class Customer implements CustomerInterface  {
         if (amount < 0) {
             throw new IllegalArgumentException("Amounts must be non-negative");
         }
-        balance += amount;
-        return balance;
+        return BalanceLedger.toDollars(chargeCents(BalanceLedger.toCents(amount)));
     }
     
     /**
-     * Credits the customer the specified amount, decreasing the customer balance
+     * Credits the customer the specified amount, decreasing the customer balance.
+     * The amount is rounded to the nearest cent. Safe to call from many threads at once.
      *
      * @param   amount      the amount to charge; must not be negative
      * @return              the new balance after the credit has been made
@@ -103,8 +131,93 @@ public class Customer implements CustomerInterface  {
         if (amount < 0) {
             throw new IllegalArgumentException("Amounts must be non-negative");
         }
-        balance -= amount;
+        return BalanceLedger.toDollars(creditCents(BalanceLedger.toCents(amount)));
+    }
+
+    /**
+     * Charges the customer an exact number of cents, increasing the customer balance
+     *
+     * @param   cents       the amount to charge, in cents; must not be negative
+     * @return              the new balance after the charge has been made, in cents
+     */
+    public long chargeCents(long cents) {
+        return post(StorageJournal.CHARGE, cents, true);
+    }
+
+    /**
+     * Credits the customer an exact number of cents, decreasing the customer balance
+     *
+     * @param   cents       the amount to credit, in cents; must not be negative
+     * @return              the new balance after the credit has been made, in cents
+     */
+    public long creditCents(long cents) {
+        return post(StorageJournal.CREDIT, cents, true);
+    }
+
+    /**
+     * Posts a charge or credit to the balance and records it in the journals of the
+     * customer's locations
+     *
+     * @param   kind        StorageJournal.CHARGE or StorageJournal.CREDIT
+     * @param   cents       the amount, in cents; must not be negative
+     * @param   commit      whether to wait for the journal records where journals sync
+     *                      each operation
+     * @return              the new balance, in cents
+     */
+    long post(byte kind, long cents, boolean commit) {
+        long newBalance = kind == StorageJournal.CHARGE ? balance.charge(cents) : balance.credit(cents);
+        for (StorageLocation location : locations) {
+            location.balancePosted(this, kind, cents, commit);
+        }
+        return newBalance;
+    }
+
+    /**
+     * Retrieves the ledger holding the balance, for restoring it without recording
+     * the postings again
+     *
+     * @return      the balance ledger
+     */
+    BalanceLedger getLedger() {
         return balance;
     }
 
+    /**
+     * Records a location this customer has been added to, so the location's indexes
+     * can be told about changes to the customer
+     *
+     * @param   location    the location the customer was added to
+     */
+    synchronized void addLocation(StorageLocation location) {
+        locations = Arrays.copyOf(locations, locations.length + 1);
+        locations[locations.length - 1] = location;
+    }
+
+    /**
+     * Reduces a phone number to its digits, so differently punctuated numbers compare equal
+     *
+     * @param   phone       the phone number
+     * @return              the digits of the number, in order
+     */
+    static String phoneDigits(String phone) {
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Reduces a name to the form the name index compares: lower case, with leading
+     * and trailing spaces removed and every run of spaces made a single space
+     *
+     * @param   name    the name
+     * @return          the normalized name
+     */
+    static String normalizedName(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 }
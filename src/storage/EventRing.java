@@ -0,0 +1,112 @@
+package storage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer that many threads can offer to and one thread drains. Each
+ * slot carries a sequence number telling producers whether it is free and the
+ * consumer whether it is filled, so offering takes one compare-and-swap and never
+ * waits: when the ring is full the offer fails at once.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class EventRing<E> {
+
+    /** the elements, by slot */
+    private final AtomicReferenceArray<E> slots;
+    /** the sequence of each slot: equal to the next offer position when free, one past it when filled */
+    private final AtomicLongArray sequences;
+    /** selects the slot of a position */
+    private final int mask;
+    /** the position of the next offer */
+    private final AtomicLong tail;
+    /** the position of the next element to drain; only the consumer touches it */
+    private long head;
+
+    /**
+     * EventRing Constructor
+     *
+     * @param   capacity    the number of elements the ring holds; must be a power of 2
+     */
+    EventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2");
+        }
+        slots     = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+        mask = capacity - 1;
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Retrieves the number of elements the ring holds
+     *
+     * @return      the capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Offers an element without waiting. Safe to call from many threads at once.
+     *
+     * @param   element     the element; must not be null
+     * @return              true, if the element was added; false, if the ring is full
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // the slot still holds an element from one lap ago
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Moves up to a number of elements into a list. Only one thread may drain.
+     *
+     * @param   into        receives the elements, in the order they were offered
+     * @param   maxCount    the most elements to move
+     * @return              the number of elements moved
+     */
+    int drain(List<E> into, int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            into.add(slots.get(slot));
+            slots.lazySet(slot, null);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether there is nothing to drain. Only meaningful on the draining thread.
+     *
+     * @return      true, if the next slot is not filled
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
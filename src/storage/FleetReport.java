@@ -0,0 +1,225 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of running one operation across every location of a registry: a
+ * result per location, in designation order, with the time each location took.
+ * Locations that failed or did not finish in time are reported as such and left
+ * out of the total.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class FleetReport {
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the name of the operation that was run */
+    private final String operation;
+    /** the result for each location, in designation order */
+    private final List<LocationResult> results;
+    /** the wall-clock time of the whole run, in nanoseconds */
+    private final long elapsedNanos;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * FleetReport Constructor
+     *
+     * @param   operation       the name of the operation that was run
+     * @param   results         the result for each location, in designation order
+     * @param   elapsedNanos    the wall-clock time of the whole run, in nanoseconds
+     */
+    FleetReport(String operation, List<LocationResult> results, long elapsedNanos) {
+        this.operation    = operation;
+        this.results      = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the name of the operation that was run
+     *
+     * @return      the operation name
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Retrieves the result for each location
+     *
+     * @return      the results, in designation order
+     */
+    public List<LocationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Retrieves the wall-clock time of the whole run
+     *
+     * @return      the elapsed time, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Adds up the values of the locations that completed
+     *
+     * @return      the fleet-wide total
+     */
+    public double getTotal() {
+        double total = 0.0;
+        for (LocationResult result : results) {
+            if (result.isCompleted()) {
+                total += result.getValue();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Lists the locations that failed or did not finish in time
+     *
+     * @return      the unsuccessful results, in designation order
+     */
+    public List<LocationResult> getProblems() {
+        List<LocationResult> problems = new ArrayList<>();
+        for (LocationResult result : results) {
+            if (!result.isCompleted()) {
+                problems.add(result);
+            }
+        }
+        return problems;
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Writes the report as a table, one line per location followed by the total
+     *
+     * @return      the report text
+     */
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(operation).append('\n');
+        for (LocationResult result : results) {
+            text.append(String.format("  %-24s %14s %10.3f ms%n", result.getDesignation(),
+                result.isCompleted() ? String.format("%,.2f", result.getValue()) : result.getStatus(),
+                result.getNanos() / 1e6));
+        }
+        text.append(String.format("  %-24s %14s %10.3f ms%n", "Total", String.format("%,.2f", getTotal()), elapsedNanos / 1e6));
+        return text.toString();
+    }
+
+    /**
+     * The result of the operation at one location
+     */
+    public static final class LocationResult {
+
+        /** the location's designation */
+        private final String designation;
+        /** the value the operation produced; 0 unless it completed */
+        private final double value;
+        /** the time the operation took at this location, in nanoseconds */
+        private final long nanos;
+        /** what went wrong, or null if the operation completed or timed out */
+        private final Throwable failure;
+        /** true, if the operation did not finish in time */
+        private final boolean timedOut;
+
+        /**
+         * LocationResult Constructor
+         *
+         * @param   designation     the location's designation
+         * @param   value           the value the operation produced
+         * @param   nanos           the time the operation took, in nanoseconds
+         * @param   failure         what went wrong, or null
+         * @param   timedOut        true, if the operation did not finish in time
+         */
+        LocationResult(String designation, double value, long nanos, Throwable failure, boolean timedOut) {
+            this.designation = designation;
+            this.value       = value;
+            this.nanos       = nanos;
+            this.failure     = failure;
+            this.timedOut    = timedOut;
+        }
+
+        /**
+         * Retrieves the location's designation
+         *
+         * @return      the designation
+         */
+        public String getDesignation() {
+            return designation;
+        }
+
+        /**
+         * Retrieves the value the operation produced
+         *
+         * @return      the value; 0 unless the operation completed
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * Retrieves the time the operation took at this location. For a location that
+         * timed out this is the time waited for it.
+         *
+         * @return      the time, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Retrieves what went wrong at this location
+         *
+         * @return      the failure, or null if the operation completed or timed out
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * Checks whether the operation ran out of time at this location. It may still
+         * finish later in the background.
+         *
+         * @return      true, if the operation did not finish in time
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Checks whether the operation completed at this location
+         *
+         * @return      true, if it neither failed nor timed out
+         */
+        public boolean isCompleted() {
+            return failure == null && !timedOut;
+        }
+
+        /**
+         * Describes how the operation ended at this location
+         *
+         * @return      "ok", "timed out" or "failed: " with the failure
+         */
+        public String getStatus() {
+            if (timedOut) {
+                return "timed out";
+            }
+            return failure == null ? "ok" : "failed: " + failure;
+        }
+    }
+}
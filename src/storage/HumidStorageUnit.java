@@ -68,16 +68,34 @@ public class HumidStorageUnit extends StorageUnit
             throw new IllegalArgumentException("Level is out of bound.");
         }
         this.humLevel = humLevel;
+        climateLevelChanged(humLevel);
     }
     
     /**
      * Method calculates specific unit price of Humidity Storage Unit. This method trears
-     * like an abstract in StorageUnit Class.
+     * like an abstract in StorageUnit Class. A unit placed in its location's grid is
+     * priced by the location's pricing rules; any other unit by the standard prices.
      * 
      * @return     specific unit price of Humidity Storage Unit
      */
     public double calcUnitSpecificPrice(){
-        double unitSpecificPrice = getLength() * getWidth() * PRICE_PER_SQ_FT;
+        if (getUnitIdx() >= 0) {
+            return getStorageLocation().calcUnitSpecificPrice(this);
+        }
+        return calcUnitSpecificPrice(getWidth(), getLength(), humLevel);
+    }
+
+    /**
+     * Calculates the specific unit price of a Humidity Storage Unit from its
+     * floor dimensions and level, without needing the unit itself
+     *
+     * @param   width       the unit's width, in feet
+     * @param   length      the unit's length, in feet
+     * @param   humLevel    the unit's humidity level
+     * @return              specific unit price of such a unit
+     */
+    static double calcUnitSpecificPrice(int width, int length, int humLevel) {
+        double unitSpecificPrice = length * width * PRICE_PER_SQ_FT;
         if (humLevel >= LOWER && humLevel <= UPPER_PAY) {
             unitSpecificPrice += PRICE_PAY_HUMID;
         }
@@ -0,0 +1,513 @@
+package storage;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of a location's occupancy and rent: the rented units of each type,
+ * the customers renting more than one unit, and the monthly rent all renters owe at
+ * current prices. The totals are updated from the location's rent, release, level,
+ * base price and pricing rule hooks, so reading them never scans the grid.
+ *
+ * No update takes a lock shared by the whole location. The counts are striped
+ * adders, and each renter's units and rent are kept under that renter's own lock,
+ * so rentals to different customers go ahead side by side. Rent is kept in cents,
+ * from each unit's base and specific price rounded to the cent, and moved along by
+ * exact differences, so adding and removing amounts never drifts; it is a close
+ * projection of what billing charges, not the same figure.
+ *
+ * The counters also swap the columns' price table: when new pricing rules are set,
+ * and when a rental or release moves a type's occupancy across a surge threshold.
+ * A swap only bumps a pricing version. Each renter notes the version its rent was
+ * worked out at and works it out again on its next update, and reading the totals
+ * brings the renters left behind up to date first, so a surge costs the rent path
+ * nothing but the swap.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class OccupancyCounters {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the unit types, by ordinal */
+    private static final UnitType[] TYPES = UnitType.values();
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the columns the units' specific prices are worked out from */
+    private final UnitColumns columns;
+    /** the number of units of each type, by ordinal */
+    private final int[] capacity;
+    /** the renter each unit is counted for, or null; changed under the renter's lock */
+    private final AtomicReferenceArray<Customer> renters;
+    /** the specific price each counted unit adds to its renter, in cents; guarded by the renter's lock */
+    private final long[] specificCents;
+    /** the place of each counted unit in its renter's unit list; guarded by the renter's lock */
+    private final int[] places;
+    /** the running totals of each renter */
+    private final ConcurrentHashMap<Customer, RenterTotals> renterTotals;
+    /** the rented units of each type, by ordinal */
+    private final LongAdder[] occupied;
+    /** the number of renters with more than one unit */
+    private final LongAdder multiUnitCustomers;
+    /** the monthly rent all renters owe, in cents, as far as each renter is up to date */
+    private final LongAdder revenueCents;
+    /** bumped after every change of price table or base price */
+    private final AtomicLong pricingVersion;
+    /** the pricing version every renter was last brought up to on a read */
+    private volatile long sweptVersion;
+    /** the base price of a unit, in cents */
+    private volatile long baseCents;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * OccupancyCounters Constructor; every unit starts free
+     *
+     * @param   columns     the location's unit columns
+     */
+    OccupancyCounters(UnitColumns columns) {
+        this.columns       = columns;
+        capacity           = new int[TYPES.length];
+        for (int unitIdx = 0; unitIdx < columns.size(); unitIdx++) {
+            capacity[columns.getType(unitIdx).ordinal()]++;
+        }
+        renters            = new AtomicReferenceArray<>(columns.size());
+        specificCents      = new long[columns.size()];
+        places             = new int[columns.size()];
+        renterTotals       = new ConcurrentHashMap<>();
+        occupied           = new LongAdder[TYPES.length];
+        for (int typeIdx = 0; typeIdx < TYPES.length; typeIdx++) {
+            occupied[typeIdx] = new LongAdder();
+        }
+        multiUnitCustomers = new LongAdder();
+        revenueCents       = new LongAdder();
+        pricingVersion     = new AtomicLong();
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the current totals, first working out the rent again of every renter
+     * not yet priced at the current prices
+     *
+     * @return      the totals; never null
+     */
+    Totals getTotals() {
+        long version = pricingVersion.get();
+        if (sweptVersion != version) {
+            for (RenterTotals renter : renterTotals.values()) {
+                synchronized (renter) {
+                    if (!renter.retired && renter.pricedAt != version) {
+                        reprice(renter, version);
+                    }
+                }
+            }
+            sweptVersion = version;
+        }
+        int[] counts = countOccupied();
+        return new Totals(counts, multiUnitCustomers.intValue(), revenueCents.sum());
+    }
+
+    /**
+     * Retrieves the number of rented units of a type, without building the totals
+     *
+     * @param   type    the unit type, or null for all types
+     * @return          the number of rented units
+     */
+    int getOccupied(UnitType type) {
+        if (type != null) {
+            return occupied[type.ordinal()].intValue();
+        }
+        long total = 0;
+        for (LongAdder count : occupied) {
+            total += count.sum();
+        }
+        return (int) total;
+    }
+
+    /**
+     * Retrieves the number of customers renting more than one unit, without building the totals
+     *
+     * @return      the number of customers
+     */
+    int getMultiUnitCustomers() {
+        return multiUnitCustomers.intValue();
+    }
+
+    /**
+     * Retrieves the number of units of a type
+     *
+     * @param   type    the unit type, or null for all types
+     * @return          the number of units
+     */
+    int getCapacity(UnitType type) {
+        if (type != null) {
+            return capacity[type.ordinal()];
+        }
+        return columns.size();
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Counts units rented to one customer, under that customer's lock only
+     *
+     * @param   customer    the customer renting the units
+     * @param   unitIdxs    the unit positions
+     * @return              true, if the rentals moved a type into another surge tier and prices changed
+     */
+    boolean rented(Customer customer, int... unitIdxs) {
+        int added = 0;
+        while (true) {
+            RenterTotals renter = renterTotals.computeIfAbsent(customer, c -> new RenterTotals());
+            synchronized (renter) {
+                if (renter.retired) {
+                    // the renter was just removed by its last release; count under a fresh entry
+                    continue;
+                }
+                catchUp(renter);
+                PriceTable prices = columns.getPrices();
+                int oldUnits = renter.units;
+                long cents = 0;
+                for (int unitIdx : unitIdxs) {
+                    if (renters.get(unitIdx) == null) {
+                        long unitCents = BalanceLedger.toCents(columns.calcUnitSpecificPrice(prices, unitIdx));
+                        renters.set(unitIdx, customer);
+                        specificCents[unitIdx] = unitCents;
+                        renter.add(unitIdx, places);
+                        occupied[columns.getType(unitIdx).ordinal()].increment();
+                        added++;
+                        cents += unitCents;
+                    }
+                }
+                updateRenter(renter, oldUnits, cents);
+                if (renter.units == 0) {
+                    retire(customer, renter);
+                }
+                break;
+            }
+        }
+        return added > 0 && applySurges();
+    }
+
+    /**
+     * Stops counting released units, under their renters' locks only
+     *
+     * @param   unitIdxs    the unit positions
+     * @return              true, if the releases moved a type into another surge tier and prices changed
+     */
+    boolean released(int... unitIdxs) {
+        int removed = 0;
+        for (int unitIdx : unitIdxs) {
+            Customer customer = renters.get(unitIdx);
+            if (customer == null) {
+                continue;
+            }
+            // the renter keeps its entry while it holds this unit
+            RenterTotals renter = renterTotals.get(customer);
+            synchronized (renter) {
+                catchUp(renter);
+                int oldUnits = renter.units;
+                renter.remove(unitIdx, places);
+                renters.set(unitIdx, null);
+                occupied[columns.getType(unitIdx).ordinal()].decrement();
+                updateRenter(renter, oldUnits, -specificCents[unitIdx]);
+                specificCents[unitIdx] = 0;
+                if (renter.units == 0) {
+                    retire(customer, renter);
+                }
+            }
+            removed++;
+        }
+        return removed > 0 && applySurges();
+    }
+
+    /**
+     * Picks up a unit's new specific price after its climate level changed
+     *
+     * @param   unitIdx     the unit position
+     */
+    void priceChanged(int unitIdx) {
+        Customer customer = renters.get(unitIdx);
+        if (customer == null) {
+            return;
+        }
+        RenterTotals renter = renterTotals.get(customer);
+        synchronized (renter) {
+            catchUp(renter);
+            long unitCents = BalanceLedger.toCents(columns.calcUnitSpecificPrice(unitIdx));
+            if (unitCents != specificCents[unitIdx]) {
+                updateRenter(renter, renter.units, unitCents - specificCents[unitIdx]);
+                specificCents[unitIdx] = unitCents;
+            }
+        }
+    }
+
+    /**
+     * Switches to a new base price; each renter's rent is worked out again on its next
+     * update or the next read of the totals
+     *
+     * @param   basePrice   the new base price of a unit
+     */
+    synchronized void basePriceChanged(double basePrice) {
+        baseCents = BalanceLedger.toCents(basePrice);
+        pricingVersion.incrementAndGet();
+    }
+
+    /**
+     * Switches to new pricing rules: prices them at the current occupancy and swaps
+     * the result into the columns. Each renter's rent is worked out again on its next
+     * update or the next read of the totals.
+     *
+     * @param   prices      the new rules, compiled for the location
+     */
+    synchronized void pricesChanged(PriceTable prices) {
+        PriceTable current;
+        do {
+            current = columns.getPrices();
+        } while (!columns.compareAndSetPrices(current, prices.atOccupancy(countOccupied(), capacity)));
+        pricingVersion.incrementAndGet();
+        // a rental counted while the table was being swapped may have checked its surge against the old table
+        applySurges();
+    }
+
+    /**
+     * Works out the monthly rent of one renter from prices in cents: the base price
+     * plus the specific price of each unit, less the multi-unit discount rounded to
+     * five cents for more than one unit. Billing applies the same steps to the exact
+     * prices, so the two can differ by up to a cent per unit and a nickel per renter
+     * of more than one unit.
+     *
+     * @param   units           the number of units rented
+     * @param   baseCents       the base price of a unit, in cents
+     * @param   specificCents   the specific prices of the units, in cents
+     * @param   discount        the multi-unit discount
+     * @return                  the monthly rent, in cents
+     */
+    static long calcRentCents(int units, long baseCents, long specificCents, double discount) {
+        long grossCents = units * baseCents + specificCents;
+        if (units <= 1) {
+            return grossCents;
+        }
+        double discounted = grossCents - grossCents * discount;
+        return Math.round(discounted / 5) * 5;
+    }
+
+    /**
+     * Moves the columns' price table to the surge tiers of the current occupancy, until
+     * the table in place matches the counts read after it
+     *
+     * @return      true, if this call swapped in a new table
+     */
+    private boolean applySurges() {
+        boolean surged = false;
+        while (true) {
+            PriceTable current = columns.getPrices();
+            if (!current.hasSurges()) {
+                return surged;
+            }
+            PriceTable next = current.atOccupancy(countOccupied(), capacity);
+            if (next == current) {
+                return surged;
+            }
+            if (columns.compareAndSetPrices(current, next)) {
+                pricingVersion.incrementAndGet();
+                surged = true;
+            }
+        }
+    }
+
+    /**
+     * Reads the rented units of each type
+     *
+     * @return      the rented units of each type, by ordinal
+     */
+    private int[] countOccupied() {
+        int[] counts = new int[TYPES.length];
+        for (int typeIdx = 0; typeIdx < TYPES.length; typeIdx++) {
+            counts[typeIdx] = occupied[typeIdx].intValue();
+        }
+        return counts;
+    }
+
+    /**
+     * Works out a renter's rent again if prices changed since it was last worked out.
+     * Must be called holding the renter's lock.
+     *
+     * @param   renter      the renter's totals
+     */
+    private void catchUp(RenterTotals renter) {
+        long version = pricingVersion.get();
+        if (renter.pricedAt != version) {
+            reprice(renter, version);
+        }
+    }
+
+    /**
+     * Works out the specific price of each of a renter's units and its rent again from
+     * the columns' current price table. Must be called holding the renter's lock.
+     *
+     * @param   renter      the renter's totals
+     * @param   version     the pricing version read before the price table
+     */
+    private void reprice(RenterTotals renter, long version) {
+        PriceTable prices = columns.getPrices();
+        long cents = 0;
+        for (int place = 0; place < renter.units; place++) {
+            int unitIdx = renter.unitIdxs[place];
+            long unitCents = BalanceLedger.toCents(columns.calcUnitSpecificPrice(prices, unitIdx));
+            specificCents[unitIdx] = unitCents;
+            cents += unitCents;
+        }
+        renter.pricedAt = version;
+        updateRenter(renter, renter.units, cents - renter.specificCents);
+    }
+
+    /**
+     * Moves a renter's specific prices along and the totals with them, after its units
+     * changed. Must be called holding the renter's lock.
+     *
+     * @param   renter          the renter's totals, already holding its new units
+     * @param   oldUnits        the number of units the renter held before
+     * @param   centsDelta      the change in the specific prices, in cents
+     */
+    private void updateRenter(RenterTotals renter, int oldUnits, long centsDelta) {
+        if (oldUnits > 1 != renter.units > 1) {
+            multiUnitCustomers.add(renter.units > 1 ? 1 : -1);
+        }
+        renter.specificCents += centsDelta;
+        long rentCents = calcRentCents(renter.units, baseCents, renter.specificCents,
+            columns.getPrices().getMultiUnitDiscount());
+        revenueCents.add(rentCents - renter.rentCents);
+        renter.rentCents = rentCents;
+    }
+
+    /**
+     * Removes a renter that holds no more units. Must be called holding the renter's
+     * lock; a rental that finds the entry retired starts a fresh one.
+     *
+     * @param   customer    the customer
+     * @param   renter      the renter's totals
+     */
+    private void retire(Customer customer, RenterTotals renter) {
+        renter.retired = true;
+        renterTotals.remove(customer, renter);
+    }
+
+    /**
+     * The running totals of one renter; its lock guards the renter's units and prices
+     */
+    private static final class RenterTotals {
+
+        /** the positions of the units rented, in the first units places */
+        private int[] unitIdxs = new int[2];
+        /** the number of units rented */
+        private int units;
+        /** the specific prices of the units, in cents */
+        private long specificCents;
+        /** the monthly rent last worked out, in cents */
+        private long rentCents;
+        /** the pricing version the rent was last worked out at */
+        private long pricedAt = -1;
+        /** whether the renter was removed after releasing its last unit */
+        private boolean retired;
+
+        /**
+         * Adds a unit to the renter's list
+         *
+         * @param   unitIdx     the unit position
+         * @param   places      the place of each unit in its renter's list
+         */
+        private void add(int unitIdx, int[] places) {
+            if (units == unitIdxs.length) {
+                unitIdxs = Arrays.copyOf(unitIdxs, units * 2);
+            }
+            places[unitIdx] = units;
+            unitIdxs[units++] = unitIdx;
+        }
+
+        /**
+         * Removes a unit from the renter's list, moving the last unit into its place
+         *
+         * @param   unitIdx     the unit position
+         * @param   places      the place of each unit in its renter's list
+         */
+        private void remove(int unitIdx, int[] places) {
+            int place = places[unitIdx];
+            int last = unitIdxs[--units];
+            unitIdxs[place] = last;
+            places[last] = place;
+        }
+    }
+
+    /**
+     * The totals of a location at one moment
+     */
+    static final class Totals {
+
+        /** the rented units of each type, by ordinal */
+        private final int[] occupied;
+        /** the number of customers renting more than one unit */
+        private final int multiUnitCustomers;
+        /** the monthly rent all renters owe, in cents */
+        private final long revenueCents;
+
+        /**
+         * Totals Constructor
+         *
+         * @param   occupied            the rented units of each type, by ordinal
+         * @param   multiUnitCustomers  the number of customers renting more than one unit
+         * @param   revenueCents        the monthly rent all renters owe, in cents
+         */
+        private Totals(int[] occupied, int multiUnitCustomers, long revenueCents) {
+            this.occupied           = occupied;
+            this.multiUnitCustomers = multiUnitCustomers;
+            this.revenueCents       = revenueCents;
+        }
+
+        /**
+         * Retrieves the number of rented units of a type
+         *
+         * @param   type    the unit type, or null for all types
+         * @return          the number of rented units
+         */
+        int getOccupied(UnitType type) {
+            if (type != null) {
+                return occupied[type.ordinal()];
+            }
+            int total = 0;
+            for (int count : occupied) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Retrieves the number of customers renting more than one unit
+         *
+         * @return      the number of customers
+         */
+        int getMultiUnitCustomers() {
+            return multiUnitCustomers;
+        }
+
+        /**
+         * Retrieves the monthly rent all renters owe
+         *
+         * @return      the rent, in cents
+         */
+        long getRevenueCents() {
+            return revenueCents;
+        }
+    }
+}
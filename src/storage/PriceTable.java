@@ -0,0 +1,325 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * A location's pricing rules compiled into lookup tables, so pricing a unit is a few
+ * array reads and one multiply-add with no branches and no rule walking. Per type it
+ * holds the flat price, the size rate, whether the height counts toward the size,
+ * the climate premium of every level the type allows, and the surge multiplier of
+ * the current occupancy tier; per unit it holds the row premium. A table compiled
+ * without a layout prices units that are not placed in any location.
+ *
+ * A table never changes once built. The location publishes a new one whenever the
+ * rules change or a type's occupancy crosses a surge threshold, and a scan that
+ * reads the table once prices every unit by the same rules.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class PriceTable {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the unit types, by ordinal */
+    private static final UnitType[] TYPES = UnitType.values();
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the rules this table was compiled from; a private copy */
+    private final PricingRules rules;
+    /** the flat price of each type, by ordinal */
+    private final double[] flatPrices;
+    /** the size rate of each type, by ordinal */
+    private final double[] sizeRates;
+    /** 1 for types sized by volume, 0 for types sized by floor area, by ordinal */
+    private final int[] byVolume;
+    /** the lowest level each type allows, by ordinal */
+    private final int[] minLevels;
+    /** the climate premium of each allowed level, by type ordinal and level less the lowest level */
+    private final double[][] premiums;
+    /** the occupancy thresholds of each type's surges, by ordinal */
+    private final double[][] surgeThresholds;
+    /** the surge tier each type is priced at, by ordinal: the number of thresholds reached */
+    private final int[] surgeTiers;
+    /** the surge multiplier each type is priced at, by ordinal */
+    private final double[] surges;
+    /** the row premium of each unit, by unit position */
+    private final double[] unitPremiums;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * PriceTable Constructor compiling rules for a layout, with no surge
+     *
+     * @param   rules       the rules; copied
+     * @param   layout      the rows of the location
+     */
+    PriceTable(PricingRules rules, StorageLayout layout) {
+        this(rules, unitPremiums(rules, layout));
+    }
+
+    /**
+     * PriceTable Constructor compiling rules for units not placed in any location,
+     * with no surge and no row premiums
+     *
+     * @param   rules       the rules; copied
+     */
+    PriceTable(PricingRules rules) {
+        this(rules, new double[0]);
+    }
+
+    /**
+     * PriceTable Constructor compiling rules with the row premium of every unit given,
+     * with no surge
+     *
+     * @param   rules           the rules; copied
+     * @param   unitPremiums    the row premium of each unit, by unit position
+     */
+    private PriceTable(PricingRules rules, double[] unitPremiums) {
+        this.rules = rules.copy();
+        flatPrices      = new double[TYPES.length];
+        sizeRates       = new double[TYPES.length];
+        byVolume        = new int[TYPES.length];
+        minLevels       = new int[TYPES.length];
+        premiums        = new double[TYPES.length][];
+        surgeThresholds = new double[TYPES.length][];
+        surgeTiers      = new int[TYPES.length];
+        surges          = new double[TYPES.length];
+        for (UnitType type : TYPES) {
+            int t = type.ordinal();
+            flatPrices[t] = rules.getFlatPrice(type);
+            sizeRates[t]  = rules.getSizeRate(type);
+            byVolume[t]   = type == UnitType.TEMPERATURE ? 1 : 0;
+            int maxLevel;
+            switch (type) {
+                case HUMIDITY:
+                    minLevels[t] = HumidStorageUnit.LOWER;
+                    maxLevel = HumidStorageUnit.UPPER;
+                    break;
+                case TEMPERATURE:
+                    minLevels[t] = TempStorageUnit.LOWER;
+                    maxLevel = TempStorageUnit.UPPER;
+                    break;
+                default:
+                    // standard units are stored at level 0 and pay no premium
+                    maxLevel = minLevels[t];
+            }
+            premiums[t] = new double[maxLevel - minLevels[t] + 1];
+            if (type != UnitType.STANDARD) {
+                for (int level = minLevels[t]; level <= maxLevel; level++) {
+                    premiums[t][level - minLevels[t]] = rules.getClimatePremium(type, level);
+                }
+            }
+            surgeThresholds[t] = rules.getSurgeThresholds(type);
+            surges[t] = 1.0;
+        }
+        this.unitPremiums = unitPremiums;
+    }
+
+    /**
+     * PriceTable Constructor for a table that differs from another only in its surge tiers
+     *
+     * @param   other       the table to copy
+     * @param   surgeTiers  the surge tier of each type, by ordinal
+     */
+    private PriceTable(PriceTable other, int[] surgeTiers) {
+        this.rules      = other.rules;
+        flatPrices      = other.flatPrices;
+        sizeRates       = other.sizeRates;
+        byVolume        = other.byVolume;
+        minLevels       = other.minLevels;
+        premiums        = other.premiums;
+        surgeThresholds = other.surgeThresholds;
+        unitPremiums    = other.unitPremiums;
+        this.surgeTiers = surgeTiers.clone();
+        surges          = new double[TYPES.length];
+        for (UnitType type : TYPES) {
+            int t = type.ordinal();
+            surges[t] = surgeTiers[t] == 0 ? 1.0 : rules.getSurgeMultipliers(type)[surgeTiers[t] - 1];
+        }
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the rules this table was compiled from
+     *
+     * @return      a copy of the rules
+     */
+    PricingRules getRules() {
+        return rules.copy();
+    }
+
+    /**
+     * Retrieves the discount for renters of more than one unit
+     *
+     * @return      the discount, as a share of the rent
+     */
+    double getMultiUnitDiscount() {
+        return rules.getMultiUnitDiscount();
+    }
+
+    /**
+     * Checks whether any type has surge multipliers
+     *
+     * @return      true, if occupancy can change prices
+     */
+    boolean hasSurges() {
+        for (double[] thresholds : surgeThresholds) {
+            if (thresholds.length != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the row premium of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the premium added to the unit's specific price
+     */
+    double getUnitPremium(int unitIdx) {
+        return unitPremiums[unitIdx];
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Works out the surge tier of every type at an occupancy and returns a table
+     * priced at those tiers
+     *
+     * @param   occupied    the rented units of each type, by ordinal
+     * @param   capacity    the units of each type, by ordinal
+     * @return              this table if no tier changed, otherwise a new table
+     */
+    PriceTable atOccupancy(int[] occupied, int[] capacity) {
+        int[] tiers = new int[TYPES.length];
+        boolean changed = false;
+        for (int t = 0; t < TYPES.length; t++) {
+            double share = capacity[t] == 0 ? 0.0 : (double) occupied[t] / capacity[t];
+            while (tiers[t] < surgeThresholds[t].length && share >= surgeThresholds[t][tiers[t]]) {
+                tiers[t]++;
+            }
+            changed |= tiers[t] != surgeTiers[t];
+        }
+        return changed ? new PriceTable(this, tiers) : this;
+    }
+
+    /**
+     * Works out the specific price of one unit
+     *
+     * @param   unitIdx     the unit position
+     * @param   type        the ordinal of the unit's type
+     * @param   width       the unit's width, in feet
+     * @param   length      the unit's length, in feet
+     * @param   height      the unit's height, in feet
+     * @param   level       the unit's climate level
+     * @return              the specific price
+     */
+    double calcSpecificPrice(int unitIdx, int type, int width, int length, int height, int level) {
+        double[] levelPremiums = premiums[type];
+        int size = width * length * (height * byVolume[type] + 1 - byVolume[type]);
+        int offset = Math.min(Math.max(level - minLevels[type], 0), levelPremiums.length - 1);
+        return (flatPrices[type] + sizeRates[type] * size + levelPremiums[offset]) * surges[type]
+            + unitPremiums[unitIdx];
+    }
+
+    /**
+     * Works out the specific prices of units of one type that are not placed in any
+     * location, so no row premium applies. The loop has no branches, so the JIT can
+     * unroll and vectorize it.
+     *
+     * @param   type        the units' type
+     * @param   widths      the unit widths, in feet
+     * @param   lengths     the unit lengths, in feet
+     * @param   heights     the unit heights, in feet; not read for types sized by floor area
+     * @param   levels      the climate levels; levels outside the type's range are
+     *                      priced as the nearest level in it, as for placed units
+     * @param   prices      receives the specific prices
+     * @param   from        the position of the first unit to price
+     * @param   to          the position after the last unit to price
+     */
+    void calcSpecificPrices(UnitType type, int[] widths, int[] lengths, int[] heights, int[] levels,
+                            double[] prices, int from, int to) {
+        int t = type.ordinal();
+        double flat = flatPrices[t];
+        double rate = sizeRates[t];
+        int volume = byVolume[t];
+        int minLevel = minLevels[t];
+        double[] levelPremiums = premiums[t];
+        int lastOffset = levelPremiums.length - 1;
+        double surge = surges[t];
+        for (int i = from; i < to; i++) {
+            int size = widths[i] * lengths[i] * (heights[i] * volume + 1 - volume);
+            int offset = Math.min(Math.max(levels[i] - minLevel, 0), lastOffset);
+            prices[i] = (flat + rate * size + levelPremiums[offset]) * surge;
+        }
+    }
+
+    /**
+     * Works out the specific prices of many units. The units are priced in runs of
+     * the same type, such as the rows of a location; within a run the loop has no
+     * branches, so the JIT can unroll and vectorize it.
+     *
+     * @param   types       the ordinal of each unit's UnitType
+     * @param   widths      the unit widths, in feet
+     * @param   lengths     the unit lengths, in feet
+     * @param   heights     the unit heights, in feet
+     * @param   levels      the climate levels; 0 for standard units
+     * @param   prices      receives the specific prices, at the units' positions
+     * @param   from        the position of the first unit to price
+     * @param   to          the position after the last unit to price
+     */
+    void calcSpecificPrices(byte[] types, int[] widths, int[] lengths, int[] heights, short[] levels,
+                            double[] prices, int from, int to) {
+        int runStart = from;
+        while (runStart < to) {
+            int type = types[runStart];
+            int runEnd = runStart + 1;
+            while (runEnd < to && types[runEnd] == type) {
+                runEnd++;
+            }
+            double flat = flatPrices[type];
+            double rate = sizeRates[type];
+            int volume = byVolume[type];
+            int minLevel = minLevels[type];
+            double[] levelPremiums = premiums[type];
+            int lastOffset = levelPremiums.length - 1;
+            double surge = surges[type];
+            for (int i = runStart; i < runEnd; i++) {
+                int size = widths[i] * lengths[i] * (heights[i] * volume + 1 - volume);
+                int offset = Math.min(Math.max(levels[i] - minLevel, 0), lastOffset);
+                prices[i] = (flat + rate * size + levelPremiums[offset]) * surge + unitPremiums[i];
+            }
+            runStart = runEnd;
+        }
+    }
+
+    /**
+     * Lays out the row premium of every unit of a layout
+     *
+     * @param   rules       the rules
+     * @param   layout      the rows of the location
+     * @return              the row premium of each unit, by unit position
+     */
+    private static double[] unitPremiums(PricingRules rules, StorageLayout layout) {
+        if (rules.getLastPremiumRow() >= layout.getRowCount()) {
+            throw new IllegalArgumentException("Row premium for a row the location does not have");
+        }
+        double[] unitPremiums = new double[layout.getUnitCount()];
+        int unitIdx = 0;
+        for (int rowIdx = 0; rowIdx < layout.getRowCount(); rowIdx++) {
+            int spaces = layout.getSpaces(rowIdx);
+            Arrays.fill(unitPremiums, unitIdx, unitIdx + spaces, rules.getRowPremium(rowIdx));
+            unitIdx += spaces;
+        }
+        return unitPremiums;
+    }
+}
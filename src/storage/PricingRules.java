@@ -0,0 +1,349 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The rules a location prices its units by. A unit's specific price is
+ * <pre>
+ *     (flat price + size rate x size + climate premium) x surge + row premium
+ * </pre>
+ * all by the unit's type, where the size is the floor area in square feet, or the
+ * volume in cubic feet for temperature units. A climate premium is paid by units
+ * whose level lies in one of the type's premium bands; a level in several bands pays
+ * the highest premium. A surge multiplier applies while the share of the type's
+ * units that are rented is at least its threshold; the highest threshold reached
+ * wins. Renters of more than one unit get the multi-unit discount off their rent.
+ *
+ * Rules are put together with the set and add methods, which return the rules so
+ * calls can be chained. A location compiles its own copy when the rules are set, so
+ * changing the rules afterwards does not affect it until they are set again.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class PricingRules {
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the flat price of a unit of each type, by ordinal */
+    private double[] flatPrices;
+    /** the price per square or cubic foot of each type, by ordinal */
+    private double[] sizeRates;
+    /** the climate premium bands of each type, by ordinal, as {low level, high level, premium} */
+    private List<List<double[]>> premiumBands;
+    /** the surge multipliers of each type, by ordinal, keyed by occupancy threshold */
+    private List<TreeMap<Double, Double>> surges;
+    /** the premium added to every unit of a row, by row */
+    private TreeMap<Integer, Double> rowPremiums;
+    /** the discount for renters of more than one unit */
+    private double multiUnitDiscount;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * PricingRules Constructor for rules that charge nothing; prices are added with
+     * the set and add methods
+     */
+    public PricingRules() {
+        int typeCount = UnitType.values().length;
+        flatPrices   = new double[typeCount];
+        sizeRates    = new double[typeCount];
+        premiumBands = new ArrayList<>();
+        surges       = new ArrayList<>();
+        for (int type = 0; type < typeCount; type++) {
+            premiumBands.add(new ArrayList<>());
+            surges.add(new TreeMap<>());
+        }
+        rowPremiums = new TreeMap<>();
+    }
+
+    /**
+     * Creates the standard rules, which price units the way the unit classes'
+     * constants do: a flat price for standard units, a price per square foot plus a
+     * premium for the dampest levels for humidity units, a price per cubic foot plus
+     * a premium for the coldest and warmest levels for temperature units, and the
+     * standard multi-unit discount
+     *
+     * @return      the standard rules
+     */
+    public static PricingRules standard() {
+        return new PricingRules()
+            .setFlatPrice(UnitType.STANDARD, StdStorageUnit.PRICE_FOR_STAND_STORAGE_UNIT)
+            .setSizeRate(UnitType.HUMIDITY, HumidStorageUnit.PRICE_PER_SQ_FT)
+            .addClimatePremium(UnitType.HUMIDITY, HumidStorageUnit.LOWER, HumidStorageUnit.UPPER_PAY,
+                HumidStorageUnit.PRICE_PAY_HUMID)
+            .setSizeRate(UnitType.TEMPERATURE, TempStorageUnit.PRICE_PER_CUB_FT)
+            .addClimatePremium(UnitType.TEMPERATURE, TempStorageUnit.LOWER, TempStorageUnit.UPPER_PAY,
+                TempStorageUnit.PRICE_PAY_TEMP)
+            .addClimatePremium(UnitType.TEMPERATURE, TempStorageUnit.LOWER_PAY, TempStorageUnit.UPPER,
+                TempStorageUnit.PRICE_PAY_TEMP)
+            .setMultiUnitDiscount(StorageLocation.DISCOUNT);
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the flat price of a unit of a type
+     *
+     * @param   type    the unit type; must not be null
+     * @return          the flat price
+     */
+    public double getFlatPrice(UnitType type) {
+        return flatPrices[checkType(type).ordinal()];
+    }
+
+    /**
+     * Retrieves the price per square foot, or per cubic foot for temperature units
+     *
+     * @param   type    the unit type; must not be null
+     * @return          the size rate
+     */
+    public double getSizeRate(UnitType type) {
+        return sizeRates[checkType(type).ordinal()];
+    }
+
+    /**
+     * Retrieves the climate premium a unit of a type pays at a level
+     *
+     * @param   type    the unit type; must not be null
+     * @param   level   the climate level
+     * @return          the highest premium of the bands holding the level, or 0 if none does
+     */
+    public double getClimatePremium(UnitType type, int level) {
+        double premium = 0.0;
+        for (double[] band : premiumBands.get(checkType(type).ordinal())) {
+            if (level >= band[0] && level <= band[1]) {
+                premium = Math.max(premium, band[2]);
+            }
+        }
+        return premium;
+    }
+
+    /**
+     * Retrieves the premium added to every unit of a row
+     *
+     * @param   rowIdx  the row
+     * @return          the premium, or 0 if the row has none
+     */
+    public double getRowPremium(int rowIdx) {
+        return rowPremiums.getOrDefault(rowIdx, 0.0);
+    }
+
+    /**
+     * Retrieves the discount for renters of more than one unit
+     *
+     * @return      the discount, as a share of the rent
+     */
+    public double getMultiUnitDiscount() {
+        return multiUnitDiscount;
+    }
+
+    /**
+     * Retrieves the occupancy thresholds of a type's surge multipliers
+     *
+     * @param   type    the unit type
+     * @return          the thresholds, lowest first
+     */
+    double[] getSurgeThresholds(UnitType type) {
+        double[] thresholds = new double[surges.get(type.ordinal()).size()];
+        int tier = 0;
+        for (double threshold : surges.get(type.ordinal()).keySet()) {
+            thresholds[tier++] = threshold;
+        }
+        return thresholds;
+    }
+
+    /**
+     * Retrieves the multipliers of a type's surges
+     *
+     * @param   type    the unit type
+     * @return          the multipliers, in threshold order
+     */
+    double[] getSurgeMultipliers(UnitType type) {
+        double[] multipliers = new double[surges.get(type.ordinal()).size()];
+        int tier = 0;
+        for (double multiplier : surges.get(type.ordinal()).values()) {
+            multipliers[tier++] = multiplier;
+        }
+        return multipliers;
+    }
+
+    /**
+     * Retrieves the highest row with a row premium
+     *
+     * @return      the row, or -1 if no row has a premium
+     */
+    int getLastPremiumRow() {
+        return rowPremiums.isEmpty() ? -1 : rowPremiums.lastKey();
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Sets the flat price of a unit of a type
+     *
+     * @param   type    the unit type; must not be null
+     * @param   price   the flat price; must not be negative
+     * @return          these rules
+     */
+    public PricingRules setFlatPrice(UnitType type, double price) {
+        flatPrices[checkType(type).ordinal()] = checkAmount(price);
+        return this;
+    }
+
+    /**
+     * Sets the price per square foot of floor area, or per cubic foot for temperature units
+     *
+     * @param   type    the unit type; must not be null
+     * @param   rate    the size rate; must not be negative
+     * @return          these rules
+     */
+    public PricingRules setSizeRate(UnitType type, double rate) {
+        sizeRates[checkType(type).ordinal()] = checkAmount(rate);
+        return this;
+    }
+
+    /**
+     * Adds a band of climate levels that pays a premium
+     *
+     * @param   type        a climate-controlled unit type; must not be null
+     * @param   lowLevel    the lowest level in the band; must suit the type
+     * @param   highLevel   the highest level in the band; must suit the type and not be below lowLevel
+     * @param   premium     the premium; must not be negative
+     * @return              these rules
+     */
+    public PricingRules addClimatePremium(UnitType type, int lowLevel, int highLevel, double premium) {
+        if (checkType(type) == UnitType.STANDARD) {
+            throw new IllegalArgumentException("Standard units have no climate level");
+        }
+        if (!type.acceptsLevel(lowLevel) || !type.acceptsLevel(highLevel) || highLevel < lowLevel) {
+            throw new IllegalArgumentException("Level is out of bound.");
+        }
+        premiumBands.get(type.ordinal()).add(new double[] {lowLevel, highLevel, checkAmount(premium)});
+        return this;
+    }
+
+    /**
+     * Adds a surge multiplier that applies while a share of a type's units is rented,
+     * replacing any multiplier with the same threshold
+     *
+     * @param   type        the unit type; must not be null
+     * @param   threshold   the share of the type's units rented at which the surge
+     *                      starts; must be over 0 and at most 1
+     * @param   multiplier  the multiplier; must be over 0
+     * @return              these rules
+     */
+    public PricingRules addSurge(UnitType type, double threshold, double multiplier) {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Threshold must be over 0 and at most 1");
+        }
+        if (!(multiplier > 0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("Multiplier must be over 0");
+        }
+        surges.get(checkType(type).ordinal()).put(threshold, multiplier);
+        return this;
+    }
+
+    /**
+     * Sets the premium added to every unit of a row
+     *
+     * @param   rowIdx      the row; must not be negative
+     * @param   premium     the premium; must not be negative
+     * @return              these rules
+     */
+    public PricingRules setRowPremium(int rowIdx, double premium) {
+        if (rowIdx < 0) {
+            throw new IllegalArgumentException("Row must not be negative");
+        }
+        rowPremiums.put(rowIdx, checkAmount(premium));
+        return this;
+    }
+
+    /**
+     * Sets the discount for renters of more than one unit
+     *
+     * @param   discount    the discount, as a share of the rent; must be at least 0 and below 1
+     * @return              these rules
+     */
+    public PricingRules setMultiUnitDiscount(double discount) {
+        if (!(discount >= 0 && discount < 1)) {
+            throw new IllegalArgumentException("Discount must be at least 0 and below 1");
+        }
+        multiUnitDiscount = discount;
+        return this;
+    }
+
+    /**
+     * Makes an independent copy of these rules, so later changes to either do not affect the other
+     *
+     * @return      the copy
+     */
+    PricingRules copy() {
+        PricingRules copy = new PricingRules();
+        copy.flatPrices = flatPrices.clone();
+        copy.sizeRates  = sizeRates.clone();
+        for (int type = 0; type < flatPrices.length; type++) {
+            for (double[] band : premiumBands.get(type)) {
+                copy.premiumBands.get(type).add(band.clone());
+            }
+            copy.surges.get(type).putAll(surges.get(type));
+        }
+        copy.rowPremiums.putAll(rowPremiums);
+        copy.multiUnitDiscount = multiUnitDiscount;
+        return copy;
+    }
+
+    /**
+     * Describes the rules
+     *
+     * @return      the rules as text
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (UnitType type : UnitType.values()) {
+            str.append(String.format("%s: flat %.2f, size rate %.2f", type, flatPrices[type.ordinal()],
+                sizeRates[type.ordinal()]));
+            for (double[] band : premiumBands.get(type.ordinal())) {
+                str.append(String.format(", levels %d-%d +%.2f", (int) band[0], (int) band[1], band[2]));
+            }
+            surges.get(type.ordinal()).forEach((threshold, multiplier) ->
+                str.append(String.format(", x%.2f from %.0f%% rented", multiplier, threshold * 100)));
+            str.append('\n');
+        }
+        rowPremiums.forEach((rowIdx, premium) -> str.append(String.format("row %d: +%.2f%n", rowIdx, premium)));
+        str.append(String.format("multi-unit discount %.0f%%%n", multiUnitDiscount * 100));
+        return str.toString();
+    }
+
+    /**
+     * Checks that a unit type is given
+     *
+     * @param   type    the unit type
+     * @return          the unit type
+     */
+    private static UnitType checkType(UnitType type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Unit type must be non-null");
+        }
+        return type;
+    }
+
+    /**
+     * Checks that an amount is a finite number that is not negative
+     *
+     * @param   amount  the amount
+     * @return          the amount
+     */
+    private static double checkAmount(double amount) {
+        if (!(amount >= 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amounts must be non-negative");
+        }
+        return amount;
+    }
+}
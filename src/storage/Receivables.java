@@ -0,0 +1,426 @@
+package storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The money a location's customers owe, kept up to date from the balance postings so
+ * the receivables report never reads or sorts every balance. Customers who owe
+ * money are kept ordered by balance, largest first, for top-debtor and over-amount
+ * queries. Each account also keeps its unpaid charges by billing date: a charge is
+ * dated by the first bill run after it, and credits pay off the oldest charges
+ * first. The debtors are counted by the date of their oldest unpaid charge, so the
+ * aging buckets are a sum over the handful of billing dates still owed on.
+ *
+ * A charge or credit locks only the customer's own account. The debtor order is a
+ * concurrent skip list of immutable balance keys, each replaced under its account's
+ * lock, so postings to different customers never wait for each other. Queries read
+ * the indexes without locking; a customer whose balance changes during a query is
+ * listed at one of its balances.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class Receivables {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the date of charges no bill run has covered yet */
+    static final long NOT_BILLED = Long.MAX_VALUE;
+    /** orders debtors by balance, largest first, then by customer ID */
+    private static final Comparator<DebtorKey> BY_BALANCE =
+        Comparator.comparingLong((DebtorKey key) -> -key.balance).thenComparingInt(key -> key.id);
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the account of each customer */
+    private final Map<Customer, Account> accounts;
+    /** the balance keys of the accounts with a positive balance, largest first */
+    private final ConcurrentSkipListSet<DebtorKey> debtors;
+    /** the number of accounts with a positive balance */
+    private final LongAdder debtorCount;
+    /** the number of debtors by the date of their oldest unpaid charge; dates no longer owed on count zero */
+    private final ConcurrentSkipListMap<Long, LongAdder> debtorsBySince;
+    /** the accounts with charges no bill run has covered yet */
+    private final Set<Account> unbilled;
+    /** the latest billing date as an epoch day, or NOT_BILLED; bill runs are serialized on this */
+    private volatile long lastBillingDay;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * Receivables Constructor with no accounts
+     */
+    Receivables() {
+        accounts       = new ConcurrentHashMap<>();
+        debtors        = new ConcurrentSkipListSet<>(BY_BALANCE);
+        debtorCount    = new LongAdder();
+        debtorsBySince = new ConcurrentSkipListMap<>();
+        unbilled       = ConcurrentHashMap.newKeySet();
+        lastBillingDay = NOT_BILLED;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the latest billing date
+     *
+     * @return      the latest billing date as an epoch day, or NOT_BILLED if there was no bill run yet
+     */
+    long getLastBillingDay() {
+        return lastBillingDay;
+    }
+
+    /**
+     * Retrieves the number of customers who owe money
+     *
+     * @return      the number of debtors
+     */
+    int getDebtorCount() {
+        return debtorCount.intValue();
+    }
+
+    /**
+     * Retrieves the date of a customer's oldest unpaid charge
+     *
+     * @param   customer    the customer
+     * @return              the billing date as an epoch day; NOT_BILLED if the charge was
+     *                      not billed yet; or -1 if the customer owes nothing here
+     */
+    long getOwedSinceDay(Customer customer) {
+        Account account = accounts.get(customer);
+        if (account == null) {
+            return -1;
+        }
+        synchronized (account) {
+            return account.debts.isEmpty() ? -1 : account.debts.peekFirst()[0];
+        }
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Opens an account for a customer added to the location. A balance owed from
+     * before counts as not yet billed.
+     *
+     * @param   customer    the customer
+     * @param   id          the customer's ID at the location
+     */
+    void opened(Customer customer, int id) {
+        Account account = new Account(customer, id);
+        // locked before it is shared, so no posting reaches the account before its opening balance
+        synchronized (account) {
+            if (accounts.putIfAbsent(customer, account) != null) {
+                return;
+            }
+            long balance = customer.getBalanceCents();
+            if (balance > 0) {
+                charge(account, balance);
+            } else {
+                account.prepaid = -balance;
+            }
+            account.balance = balance;
+            index(account);
+        }
+    }
+
+    /**
+     * Adds a charge to a customer's account. Customers without an account here are ignored.
+     *
+     * @param   customer    the customer charged
+     * @param   cents       the amount, in cents
+     */
+    void charged(Customer customer, long cents) {
+        Account account = accounts.get(customer);
+        if (account == null) {
+            return;
+        }
+        synchronized (account) {
+            unindex(account);
+            long absorbed = Math.min(cents, account.prepaid);
+            account.prepaid -= absorbed;
+            charge(account, cents - absorbed);
+            account.balance += cents;
+            index(account);
+        }
+    }
+
+    /**
+     * Applies a credit to a customer's account, paying off the oldest charges first.
+     * Customers without an account here are ignored.
+     *
+     * @param   customer    the customer credited
+     * @param   cents       the amount, in cents
+     */
+    void credited(Customer customer, long cents) {
+        Account account = accounts.get(customer);
+        if (account == null) {
+            return;
+        }
+        synchronized (account) {
+            unindex(account);
+            long left = cents;
+            while (left > 0 && !account.debts.isEmpty()) {
+                long[] debt = account.debts.peekFirst();
+                long paid = Math.min(left, debt[1]);
+                debt[1] -= paid;
+                left -= paid;
+                if (debt[1] == 0) {
+                    account.debts.pollFirst();
+                }
+            }
+            if (account.debts.isEmpty() || account.debts.peekLast()[0] != NOT_BILLED) {
+                unbilled.remove(account);
+            }
+            account.prepaid += left;
+            account.balance -= cents;
+            index(account);
+        }
+    }
+
+    /**
+     * Records a bill run: every charge not billed yet is dated with the billing date.
+     * Each account is locked in turn; a charge posted during the run may be dated by
+     * this run or the next one.
+     *
+     * @param   day     the billing date as an epoch day; must not be before the latest one
+     */
+    synchronized void billed(long day) {
+        if (lastBillingDay != NOT_BILLED && day < lastBillingDay) {
+            throw new IllegalArgumentException("Billing date must not be before the last billing date");
+        }
+        lastBillingDay = day;
+        for (Account account : unbilled) {
+            synchronized (account) {
+                unbilled.remove(account);
+                long[] newest = account.debts.peekLast();
+                if (newest == null || newest[0] != NOT_BILLED) {
+                    continue;
+                }
+                unindex(account);
+                long[] debt = account.debts.pollLast();
+                debt[0] = day;
+                long[] last = account.debts.peekLast();
+                if (last != null && last[0] == day) {
+                    last[1] += debt[1];
+                } else {
+                    account.debts.addLast(debt);
+                }
+                index(account);
+            }
+        }
+    }
+
+    /**
+     * Finds the customers owing the most
+     *
+     * @param   count       the most customers to return
+     * @return              the customers, largest balance first and then by ID
+     */
+    Customer[] getTopDebtors(int count) {
+        Set<Customer> found = new LinkedHashSet<>();
+        for (DebtorKey key : debtors) {
+            if (found.size() >= count) {
+                break;
+            }
+            found.add(key.customer);
+        }
+        return found.toArray(new Customer[found.size()]);
+    }
+
+    /**
+     * Finds the customers owing more than an amount
+     *
+     * @param   cents       the amount, in cents
+     * @return              the customers, largest balance first and then by ID
+     */
+    Customer[] getDebtorsOver(long cents) {
+        Set<Customer> found = new LinkedHashSet<>();
+        for (DebtorKey key : debtors) {
+            if (key.balance <= cents) {
+                break;
+            }
+            found.add(key.customer);
+        }
+        return found.toArray(new Customer[found.size()]);
+    }
+
+    /**
+     * Counts the debtors by how long their oldest unpaid charge has been owed
+     *
+     * @param   asOfDay     the day ages are measured on, as an epoch day
+     * @param   bucketDays  the width of each age bucket, in days
+     * @param   buckets     the number of buckets; the last one is open-ended
+     * @return              the number of debtors in each bucket, youngest first; charges
+     *                      not billed yet and billed after the day count as age 0
+     */
+    int[] countDebtorsByAge(long asOfDay, int bucketDays, int buckets) {
+        int[] counts = new int[buckets];
+        for (Map.Entry<Long, LongAdder> entry : debtorsBySince.entrySet()) {
+            long age = Math.max(0, asOfDay - entry.getKey());
+            counts[(int) Math.min(buckets - 1, age / bucketDays)] += entry.getValue().intValue();
+        }
+        return counts;
+    }
+
+    /**
+     * Compares the accounts against the customers' balances and the indexes against
+     * the accounts. Only meaningful while no balance is changing.
+     *
+     * @return      true, if everything matches
+     */
+    synchronized boolean verify() {
+        Map<Long, Integer> bySince = new HashMap<>();
+        List<DebtorKey> keys = new ArrayList<>();
+        for (Account account : accounts.values()) {
+            synchronized (account) {
+                long owed = 0;
+                for (long[] debt : account.debts) {
+                    owed += debt[1];
+                }
+                if (account.balance != account.customer.getBalanceCents()
+                        || owed - account.prepaid != account.balance || owed > 0 && account.prepaid > 0) {
+                    return false;
+                }
+                if (account.balance > 0) {
+                    bySince.merge(account.debts.peekFirst()[0], 1, Integer::sum);
+                    if (account.key == null || account.key.balance != account.balance
+                            || !debtors.contains(account.key)) {
+                        return false;
+                    }
+                    keys.add(account.key);
+                }
+            }
+        }
+        for (Map.Entry<Long, LongAdder> entry : debtorsBySince.entrySet()) {
+            if (entry.getValue().intValue() != bySince.getOrDefault(entry.getKey(), 0)) {
+                return false;
+            }
+            bySince.remove(entry.getKey());
+        }
+        return bySince.isEmpty() && keys.size() == debtors.size() && keys.size() == getDebtorCount();
+    }
+
+    /**
+     * Adds an amount to the newest unpaid charge if it is not billed yet, or starts
+     * a new one. Must be called holding the account's lock.
+     *
+     * @param   account     the account
+     * @param   cents       the amount, in cents
+     */
+    private void charge(Account account, long cents) {
+        if (cents == 0) {
+            return;
+        }
+        long[] last = account.debts.peekLast();
+        if (last != null && last[0] == NOT_BILLED) {
+            last[1] += cents;
+        } else {
+            account.debts.addLast(new long[] {NOT_BILLED, cents});
+            unbilled.add(account);
+        }
+    }
+
+    /**
+     * Takes an account out of the debtor indexes before it changes. Must be called
+     * holding the account's lock.
+     *
+     * @param   account     the account
+     */
+    private void unindex(Account account) {
+        if (account.key != null) {
+            debtors.remove(account.key);
+            account.key = null;
+            debtorCount.decrement();
+            debtorsBySince.get(account.debts.peekFirst()[0]).decrement();
+        }
+    }
+
+    /**
+     * Puts an account back in the debtor indexes after it changed. Must be called
+     * holding the account's lock.
+     *
+     * @param   account     the account
+     */
+    private void index(Account account) {
+        if (account.balance > 0) {
+            account.key = new DebtorKey(account.customer, account.id, account.balance);
+            debtors.add(account.key);
+            debtorCount.increment();
+            debtorsBySince.computeIfAbsent(account.debts.peekFirst()[0], day -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * A debtor's place in the balance order; replaced whenever the balance changes
+     */
+    private static final class DebtorKey {
+
+        /** the customer */
+        private final Customer customer;
+        /** the customer's ID at the location, breaking balance ties */
+        private final int id;
+        /** the balance when the key was made, in cents */
+        private final long balance;
+
+        /**
+         * DebtorKey Constructor
+         *
+         * @param   customer    the customer
+         * @param   id          the customer's ID at the location
+         * @param   balance     the balance, in cents
+         */
+        private DebtorKey(Customer customer, int id, long balance) {
+            this.customer = customer;
+            this.id       = id;
+            this.balance  = balance;
+        }
+    }
+
+    /**
+     * One customer's account: the balance, the unpaid charges by billing date, and
+     * any credit left over; its lock guards all of them
+     */
+    private static final class Account {
+
+        /** the customer */
+        private final Customer customer;
+        /** the customer's ID at the location, breaking balance ties */
+        private final int id;
+        /** the unpaid charges as {billing day, cents}, oldest first */
+        private final ArrayDeque<long[]> debts;
+        /** the balance, in cents */
+        private long balance;
+        /** the credit not used up by charges, in cents */
+        private long prepaid;
+        /** the account's key in the debtor order, or null if it owes nothing */
+        private DebtorKey key;
+
+        /**
+         * Account Constructor for an empty account
+         *
+         * @param   customer    the customer
+         * @param   id          the customer's ID at the location
+         */
+        private Account(Customer customer, int id) {
+            this.customer = customer;
+            this.id       = id;
+            this.debts    = new ArrayDeque<>();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package storage;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * One bill run over a location's unit columns, on the calling thread or split across
+ * a fork-join pool. Each customer's rent is worked out exactly as the per-customer
+ * search does it: the full prices of the customer's units added up in grid order,
+ * then the multi-unit discount rounded to the nearest nickel.
+ *
+ * Adding up doubles depends on their order, so the chunks never add across their
+ * boundaries. The run goes in steps that each split the work:
+ * <ol>
+ *     <li>The grid is split into chunks of whole rows. Each chunk prices its units
+ *     from the shared price table, notes each unit's renter, and counts the units
+ *     each customer rents in the chunk.</li>
+ *     <li>The counts give every unit a place in one array holding each customer's
+ *     prices in turn, in grid order, and each chunk copies its prices there.</li>
+ *     <li>The customers are split into chunks, and each customer's prices are added
+ *     up in order.</li>
+ * </ol>
+ * So every rent, and the total of the run, is the same on one thread as on any
+ * number of threads, and the same as the per-customer search gives. The customers
+ * are charged in chunks too, each customer entry by exactly one task.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class RentBilling {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the fewest units worth a task of their own */
+    static final int MIN_CHUNK_UNITS = 4096;
+    /** the fewest customers worth a task of their own */
+    static final int MIN_CHUNK_CUSTOMERS = 1024;
+    /** the chunks to make for each pool thread, so a slow chunk does not hold up the run */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the location's unit columns */
+    private final UnitColumns columns;
+    /** the price table the whole run prices by */
+    private final PriceTable prices;
+    /** the base price of a unit */
+    private final double basePrice;
+    /** the position of the first unit of each row */
+    private final int[] rowStarts;
+    /** the specific price of every unit, filled in by the chunks; each chunk writes only its own rows */
+    private final double[] specificPrices;
+    /** the customer ID each unit is billed to, or -1, as read once by its chunk */
+    private final int[] billedTo;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * RentBilling Constructor
+     *
+     * @param   columns     the location's unit columns
+     * @param   prices      the price table to price every unit by
+     * @param   basePrice   the base price of a unit
+     * @param   rowStarts   the position of the first unit of each row
+     */
+    RentBilling(UnitColumns columns, PriceTable prices, double basePrice, int[] rowStarts) {
+        this.columns   = columns;
+        this.prices    = prices;
+        this.basePrice = basePrice;
+        this.rowStarts = rowStarts;
+        specificPrices = new double[columns.size()];
+        billedTo       = new int[columns.size()];
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Works out the monthly rent of every customer entry: the base price plus the
+     * specific price of each unit, less the multi-unit discount rounded to the nearest
+     * nickel for more than one unit
+     *
+     * @param   slots       for each customer entry, the ID the customer's units are
+     *                      rented under; an entry for a customer added twice carries
+     *                      the ID of the first entry
+     * @param   pool        the pool to split the run across, or null to run on the calling thread
+     * @return              the rent due from each customer entry
+     */
+    double[] calcRentDue(int[] slots, ForkJoinPool pool) {
+        int customerCount = slots.length;
+        int[] chunkStarts = chunkRows(pool);
+        int chunkCount = chunkStarts.length - 1;
+
+        // step 1: price and count; each chunk's counts become its places in step 2
+        int[][] places = new int[chunkCount][];
+        spread(pool, chunkCount, chunk -> places[chunk] = priceChunk(chunkStarts[chunk], chunkStarts[chunk + 1],
+            customerCount));
+        int[] firsts = new int[customerCount + 1];
+        int next = 0;
+        for (int slot = 0; slot < customerCount; slot++) {
+            firsts[slot] = next;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int count = places[chunk][slot];
+                places[chunk][slot] = next;
+                next += count;
+            }
+        }
+        firsts[customerCount] = next;
+
+        // step 2: each customer's prices in grid order
+        double[] ordered = new double[next];
+        spread(pool, chunkCount, chunk -> placeChunk(chunkStarts[chunk], chunkStarts[chunk + 1], places[chunk],
+            ordered));
+
+        // step 3: each customer's rent, added up in that order
+        double discount = prices.getMultiUnitDiscount();
+        double[] rentBySlot = new double[customerCount];
+        int chunkCustomers = customerChunk(pool, customerCount);
+        spread(pool, (customerCount + chunkCustomers - 1) / chunkCustomers, chunk -> {
+            int end = Math.min(customerCount, (chunk + 1) * chunkCustomers);
+            for (int slot = chunk * chunkCustomers; slot < end; slot++) {
+                double unitsRent = 0.0;
+                for (int pos = firsts[slot]; pos < firsts[slot + 1]; pos++) {
+                    unitsRent += ordered[pos];
+                }
+                if (firsts[slot + 1] - firsts[slot] > 1) {
+                    unitsRent = StorageLocation.applyMultiUnitDiscount(unitsRent, discount);
+                }
+                rentBySlot[slot] = unitsRent;
+            }
+        });
+        double[] rentDue = new double[customerCount];
+        for (int idxCust = 0; idxCust < customerCount; idxCust++) {
+            rentDue[idxCust] = rentBySlot[slots[idxCust]];
+        }
+        return rentDue;
+    }
+
+    /**
+     * Charges every customer entry its rent. The journal is not synced; the caller
+     * syncs it once for the whole run.
+     *
+     * @param   billed      the customers, indexed like the rents
+     * @param   rentDue     the rent due from each customer entry
+     * @param   pool        the pool to split the charges across, or null to charge on the calling thread
+     */
+    static void charge(Customer[] billed, double[] rentDue, ForkJoinPool pool) {
+        int chunkCustomers = customerChunk(pool, rentDue.length);
+        spread(pool, (rentDue.length + chunkCustomers - 1) / chunkCustomers, chunk -> {
+            int end = Math.min(rentDue.length, (chunk + 1) * chunkCustomers);
+            for (int idxCust = chunk * chunkCustomers; idxCust < end; idxCust++) {
+                billed[idxCust].post(StorageJournal.CHARGE, BalanceLedger.toCents(rentDue[idxCust]), false);
+            }
+        });
+    }
+
+    /**
+     * Splits the grid into chunks of whole rows, about the same number of units each
+     *
+     * @param   pool    the pool the run is split across, or null for a single chunk
+     * @return          the position of the first unit of each chunk, then the unit count
+     */
+    private int[] chunkRows(ForkJoinPool pool) {
+        int chunkUnits = pool == null ? Integer.MAX_VALUE
+            : Math.max(MIN_CHUNK_UNITS, columns.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        int[] starts = new int[rowStarts.length + 1];
+        int chunkCount = 0;
+        for (int rowIdx = 0; rowIdx < rowStarts.length; rowIdx++) {
+            if (chunkCount == 0 || rowStarts[rowIdx] - starts[chunkCount - 1] >= chunkUnits) {
+                starts[chunkCount++] = rowStarts[rowIdx];
+            }
+        }
+        starts[chunkCount++] = columns.size();
+        int[] chunkStarts = new int[chunkCount];
+        System.arraycopy(starts, 0, chunkStarts, 0, chunkCount);
+        return chunkStarts;
+    }
+
+    /**
+     * Prices a chunk's units, notes their renters and counts each customer's units
+     *
+     * @param   from            the position of the chunk's first unit
+     * @param   to              the position after the chunk's last unit
+     * @param   customerCount   the number of customer IDs; units rented under higher IDs are not billed
+     * @return                  the number of units each customer rents in the chunk, by customer ID
+     */
+    private int[] priceChunk(int from, int to, int customerCount) {
+        int[] counts = new int[customerCount];
+        columns.calcUnitSpecificPrices(prices, specificPrices, from, to);
+        for (int unitIdx = from; unitIdx < to; unitIdx++) {
+            int slot = columns.getRenter(unitIdx);
+            if (slot >= 0 && slot < customerCount) {
+                counts[slot]++;
+                billedTo[unitIdx] = slot;
+            } else {
+                billedTo[unitIdx] = -1;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Copies a chunk's full unit prices to their places among their renters' prices
+     *
+     * @param   from        the position of the chunk's first unit
+     * @param   to          the position after the chunk's last unit
+     * @param   places      the next place of each customer's prices from this chunk, by customer ID
+     * @param   ordered     receives every customer's prices in turn
+     */
+    private void placeChunk(int from, int to, int[] places, double[] ordered) {
+        for (int unitIdx = from; unitIdx < to; unitIdx++) {
+            int slot = billedTo[unitIdx];
+            if (slot >= 0) {
+                ordered[places[slot]++] = basePrice + specificPrices[unitIdx];
+            }
+        }
+    }
+
+    /**
+     * Works out how many customers to give each task
+     *
+     * @param   pool            the pool the run is split across, or null for a single chunk
+     * @param   customerCount   the number of customers
+     * @return                  the customers per chunk; at least 1
+     */
+    private static int customerChunk(ForkJoinPool pool, int customerCount) {
+        if (pool == null) {
+            return Math.max(1, customerCount);
+        }
+        return Math.max(MIN_CHUNK_CUSTOMERS, customerCount / (pool.getParallelism() * CHUNKS_PER_THREAD));
+    }
+
+    /**
+     * Does some work for every chunk, on the calling thread or across a pool
+     *
+     * @param   pool        the pool, or null to work on the calling thread
+     * @param   chunkCount  the number of chunks
+     * @param   work        the work for one chunk, given its number
+     */
+    private static void spread(ForkJoinPool pool, int chunkCount, IntConsumer work) {
+        if (pool == null) {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                work.accept(chunk);
+            }
+        } else if (chunkCount > 0) {
+            pool.invoke(new Chunks(work, 0, chunkCount));
+        }
+    }
+
+    /**
+     * Does the work of a run of chunks, splitting it in two until each task has one chunk
+     */
+    private static final class Chunks extends RecursiveAction {
+
+        /** tasks are never serialized; declared to keep the compiler quiet */
+        private static final long serialVersionUID = 1L;
+
+        /** the work for one chunk */
+        private final IntConsumer work;
+        /** the first chunk of the run */
+        private final int from;
+        /** the chunk after the last chunk of the run */
+        private final int to;
+
+        /**
+         * Chunks Constructor
+         *
+         * @param   work    the work for one chunk, given its number
+         * @param   from    the first chunk of the run
+         * @param   to      the chunk after the last chunk of the run
+         */
+        private Chunks(IntConsumer work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to   = to;
+        }
+
+        /**
+         * Does the run's one chunk, or its two halves in parallel
+         */
+        protected void compute() {
+            if (to - from == 1) {
+                work.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunks(work, from, mid), new Chunks(work, mid, to));
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Every rental a location has seen, kept after the units are released. Two views are
+ * kept, both updated from the location's rent and release hooks:
+ *
+ * Occupancy over time is kept as the number of rentals starting and ending on each
+ * day. The days are split into partitions of PARTITION_DAYS days, created as rentals
+ * reach them, and each partition keeps its counts in two Fenwick trees. The units
+ * rented on a day are the rentals started by that day less the rentals ended by it.
+ * A third Fenwick tree keeps each partition's starts less its ends, by partition key,
+ * so that takes one prefix sum over the partitions before the day's and one in each
+ * of its own trees, and the cost grows with neither the number of rentals nor the
+ * number of partitions. The partition tree spans every key a day can have; it is
+ * stored in pages made the first time a count reaches them, and a missing page
+ * reads as zeros.
+ *
+ * The trees are atomic counters, so rentals starting and ending on any threads add
+ * to them without a lock; a count read while rentals are being recorded may miss the
+ * ones in progress. Each unit keeps its ended rentals sorted by start, with the
+ * latest end seen so far at each position, so the rentals overlapping a period are
+ * found by a binary search and a walk back over just the overlapping ones. A unit's
+ * log is locked on its own.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class RentalHistory {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the number of days in a partition; a power of 2 */
+    static final int PARTITION_DAYS = 512;
+    /** turns a day into its partition key */
+    private static final int PARTITION_SHIFT = Integer.numberOfTrailingZeros(PARTITION_DAYS);
+    /** turns a day into its offset within its partition */
+    private static final int PARTITION_MASK = PARTITION_DAYS - 1;
+    /** the number of partition keys an int day can have */
+    private static final int KEY_SPAN = 1 << (Integer.SIZE - PARTITION_SHIFT);
+    /** added to a partition key to give its position in the partition tree */
+    private static final int KEY_BIAS = KEY_SPAN >>> 1;
+    /** turns a partition tree node into its page */
+    private static final int PAGE_SHIFT = 10;
+    /** turns a partition tree node into its place within its page */
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the day partitions by key, created as rentals reach them */
+    private final ConcurrentHashMap<Integer, Partition> partitions;
+    /** the rentals started less the rentals ended in each partition, by key plus KEY_BIAS, as a paged Fenwick tree */
+    private final AtomicReferenceArray<AtomicIntegerArray> partitionTree;
+    /** the ended rentals of each unit by position, created at the first release */
+    private final AtomicReferenceArray<UnitLog> logs;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * RentalHistory Constructor with no rentals
+     *
+     * @param   unitCount   the number of units at the location
+     */
+    RentalHistory(int unitCount) {
+        partitions    = new ConcurrentHashMap<>();
+        partitionTree = new AtomicReferenceArray<>((KEY_SPAN >> PAGE_SHIFT) + 1);
+        logs          = new AtomicReferenceArray<>(unitCount);
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Records the start of a rental
+     *
+     * @param   startDay    the first day of the rental, as an epoch day
+     */
+    void started(int startDay) {
+        int key = startDay >> PARTITION_SHIFT;
+        add(partition(key).startTree, startDay & PARTITION_MASK, 1);
+        addToPartitionTree(key, 1);
+    }
+
+    /**
+     * Records the end of a rental
+     *
+     * @param   unitIdx     the unit's position
+     * @param   customer    the customer who rented it
+     * @param   startDay    the first day of the rental, as an epoch day
+     * @param   endDay      the day the unit was free again, as an epoch day; after the start day
+     */
+    void ended(int unitIdx, Customer customer, int startDay, int endDay) {
+        int key = endDay >> PARTITION_SHIFT;
+        add(partition(key).endTree, endDay & PARTITION_MASK, 1);
+        addToPartitionTree(key, -1);
+        UnitLog log = logs.get(unitIdx);
+        if (log == null) {
+            logs.compareAndSet(unitIdx, null, new UnitLog());
+            log = logs.get(unitIdx);
+        }
+        synchronized (log) {
+            log.add(customer, startDay, endDay);
+        }
+    }
+
+    /**
+     * Counts the units rented on a day: those whose rental started on or before the
+     * day and had not ended by it
+     *
+     * @param   day     the day, as an epoch day
+     * @return          the number of rented units
+     */
+    int countRentedOn(long day) {
+        if (day < Integer.MIN_VALUE) {
+            return 0;
+        }
+        int clamped = (int) Math.min(day, Integer.MAX_VALUE);
+        int key = clamped >> PARTITION_SHIFT;
+        int offset = clamped & PARTITION_MASK;
+        // the partitions before the day's
+        int rented = prefixOfPartitionTree(key + KEY_BIAS - 1);
+        Partition partition = partitions.get(key);
+        if (partition != null) {
+            rented += prefix(partition.startTree, offset) - prefix(partition.endTree, offset);
+        }
+        return rented;
+    }
+
+    /**
+     * Finds a unit's ended rentals that overlap a period
+     *
+     * @param   unit        the unit
+     * @param   fromDay     the first day of the period, as an epoch day
+     * @param   toDay       the last day of the period, as an epoch day
+     * @return              the rentals, in start order
+     */
+    List<RentalInterval> findEnded(StorageUnit unit, long fromDay, long toDay) {
+        UnitLog log = logs.get(unit.getUnitIdx());
+        List<RentalInterval> found = new ArrayList<>();
+        if (log == null) {
+            return found;
+        }
+        synchronized (log) {
+            // the rentals starting after the period cannot overlap it
+            int pos = upperBound(log.startDays, log.size, toDay);
+            while (--pos >= 0 && log.maxEndDays[pos] > fromDay) {
+                if (log.endDays[pos] > fromDay) {
+                    found.add(new RentalInterval(unit, log.customers[pos], log.startDays[pos], log.endDays[pos]));
+                }
+            }
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * Counts the rentals started and ended so far
+     *
+     * @return      {rentals started, rentals ended}
+     */
+    long[] countRentals() {
+        long[] counts = new long[2];
+        for (Partition partition : partitions.values()) {
+            counts[0] += prefix(partition.startTree, PARTITION_MASK);
+            counts[1] += prefix(partition.endTree, PARTITION_MASK);
+        }
+        return counts;
+    }
+
+    /**
+     * Finds a partition, creating it the first time a rental reaches it
+     *
+     * @param   key     the partition key
+     * @return          the partition
+     */
+    private Partition partition(int key) {
+        Partition partition = partitions.get(key);
+        if (partition == null) {
+            partition = partitions.computeIfAbsent(key, k -> new Partition());
+        }
+        return partition;
+    }
+
+    /**
+     * Adds to a partition's count in the partition tree, making the pages on the way
+     *
+     * @param   key         the partition key
+     * @param   delta       the amount to add
+     */
+    private void addToPartitionTree(int key, int delta) {
+        for (int node = key + KEY_BIAS + 1; node <= KEY_SPAN; node += node & -node) {
+            AtomicIntegerArray page = partitionTree.get(node >> PAGE_SHIFT);
+            if (page == null) {
+                partitionTree.compareAndSet(node >> PAGE_SHIFT, null, new AtomicIntegerArray(PAGE_MASK + 1));
+                page = partitionTree.get(node >> PAGE_SHIFT);
+            }
+            page.addAndGet(node & PAGE_MASK, delta);
+        }
+    }
+
+    /**
+     * Sums the partition tree up to and including a position
+     *
+     * @param   position    the position: a partition key plus KEY_BIAS; below 0 for none
+     * @return              the sum of the counts up to the position
+     */
+    private int prefixOfPartitionTree(int position) {
+        int sum = 0;
+        for (int node = position + 1; node > 0; node -= node & -node) {
+            AtomicIntegerArray page = partitionTree.get(node >> PAGE_SHIFT);
+            if (page != null) {
+                sum += page.get(node & PAGE_MASK);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Adds to a count in a partition's Fenwick tree
+     *
+     * @param   tree        the tree
+     * @param   offset      the count's position: a day's offset within its partition
+     * @param   delta       the amount to add
+     */
+    private static void add(AtomicIntegerArray tree, int offset, int delta) {
+        for (int node = offset + 1; node < tree.length(); node += node & -node) {
+            tree.addAndGet(node, delta);
+        }
+    }
+
+    /**
+     * Sums the counts of a partition's Fenwick tree up to and including a position
+     *
+     * @param   tree        the tree
+     * @param   offset      the position: a day's offset within its partition
+     * @return              the sum of the counts up to the offset
+     */
+    private static int prefix(AtomicIntegerArray tree, int offset) {
+        int sum = 0;
+        for (int node = offset + 1; node > 0; node -= node & -node) {
+            sum += tree.get(node);
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the first position in a sorted range whose day is after a day
+     *
+     * @param   days        the days, sorted
+     * @param   size        the number of days in use
+     * @param   day         the day
+     * @return              the position, or size if no day is after it
+     */
+    private static int upperBound(int[] days, int size, long day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The rentals starting and ending on each day of one partition
+     */
+    private static final class Partition {
+
+        /** the rentals starting on each day, as a Fenwick tree */
+        private final AtomicIntegerArray startTree = new AtomicIntegerArray(PARTITION_DAYS + 1);
+        /** the rentals ending on each day, as a Fenwick tree */
+        private final AtomicIntegerArray endTree = new AtomicIntegerArray(PARTITION_DAYS + 1);
+    }
+
+    /**
+     * The ended rentals of one unit, sorted by start, as parallel arrays; its lock
+     * guards all of them
+     */
+    private static final class UnitLog {
+
+        /** the customer of each rental */
+        private Customer[] customers = new Customer[2];
+        /** the first day of each rental, as an epoch day */
+        private int[] startDays = new int[2];
+        /** the day each rental ended, as an epoch day */
+        private int[] endDays = new int[2];
+        /** the latest end day of the rentals up to each position */
+        private int[] maxEndDays = new int[2];
+        /** the number of rentals */
+        private int size;
+
+        /**
+         * Adds a rental in start order; usually it goes at the end
+         *
+         * @param   customer    the customer
+         * @param   startDay    the first day of the rental
+         * @param   endDay      the day the rental ended
+         */
+        private void add(Customer customer, int startDay, int endDay) {
+            if (size == startDays.length) {
+                customers  = Arrays.copyOf(customers, size * 2);
+                startDays  = Arrays.copyOf(startDays, size * 2);
+                endDays    = Arrays.copyOf(endDays, size * 2);
+                maxEndDays = Arrays.copyOf(maxEndDays, size * 2);
+            }
+            int pos = upperBound(startDays, size, startDay);
+            System.arraycopy(customers, pos, customers, pos + 1, size - pos);
+            System.arraycopy(startDays, pos, startDays, pos + 1, size - pos);
+            System.arraycopy(endDays, pos, endDays, pos + 1, size - pos);
+            customers[pos] = customer;
+            startDays[pos] = startDay;
+            endDays[pos]   = endDay;
+            size++;
+            for (int i = pos; i < size; i++) {
+                maxEndDays[i] = i == 0 ? endDays[i] : Math.max(maxEndDays[i - 1], endDays[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package storage;
+
+import java.time.LocalDate;
+
+/**
+ * One rental of a unit as kept in the location's rental history: who rented it, the
+ * first day of the rental and the day the unit was free again. The unit is rented
+ * from the start day up to, but not including, the end day. A current rental has
+ * no end yet.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class RentalInterval {
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the unit rented */
+    private final StorageUnit unit;
+    /** the customer who rented it */
+    private final Customer customer;
+    /** the first day of the rental, as an epoch day */
+    private final int startDay;
+    /** the day the unit was free again as an epoch day, or Integer.MAX_VALUE while rented */
+    private final int endDay;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * RentalInterval Constructor
+     *
+     * @param   unit        the unit rented
+     * @param   customer    the customer who rented it
+     * @param   startDay    the first day of the rental, as an epoch day
+     * @param   endDay      the day the unit was free again, or Integer.MAX_VALUE while rented
+     */
+    RentalInterval(StorageUnit unit, Customer customer, int startDay, int endDay) {
+        this.unit     = unit;
+        this.customer = customer;
+        this.startDay = startDay;
+        this.endDay   = endDay;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the unit rented
+     *
+     * @return      the unit
+     */
+    public StorageUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Retrieves the customer who rented the unit
+     *
+     * @return      the customer
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Retrieves the first day of the rental
+     *
+     * @return      the rental start
+     */
+    public LocalDate getStart() {
+        return LocalDate.ofEpochDay(startDay);
+    }
+
+    /**
+     * Retrieves the day the unit was free again
+     *
+     * @return      the rental end, or null if the unit is still rented
+     */
+    public LocalDate getEnd() {
+        return isCurrent() ? null : LocalDate.ofEpochDay(endDay);
+    }
+
+    /**
+     * Checks whether the rental is still going on
+     *
+     * @return      true, if the unit has not been released from this rental
+     */
+    public boolean isCurrent() {
+        return endDay == Integer.MAX_VALUE;
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Describes the rental
+     *
+     * @return      the rental as text
+     */
+    public String toString() {
+        return String.format("unit %d/%d rented to %s from %s to %s", unit.getRowIdx(), unit.getSpaceIdx(),
+            customer.getName(), getStart(), isCurrent() ? "now" : getEnd());
+    }
+}
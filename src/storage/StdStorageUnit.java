@@ -34,11 +34,15 @@ public class StdStorageUnit extends StorageUnit
     
     /**
      * Method calculates specific unit price of Standart Storage Unit. This method trears
-     * like an abstract in StorageUnit Class.
+     * like an abstract in StorageUnit Class. A unit placed in its location's grid is
+     * priced by the location's pricing rules; any other unit by the standard prices.
      * 
      * @return     specific unit price of Standart Storage Unit
      */
     public double calcUnitSpecificPrice(){
+        if (getUnitIdx() >= 0) {
+            return getStorageLocation().calcUnitSpecificPrice(this);
+        }
         return PRICE_FOR_STAND_STORAGE_UNIT;
     }
 }
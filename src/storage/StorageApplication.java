@@ -25,7 +25,7 @@ public class StorageApplication {
         System.out.print('\u000c');
         System.out.printf("Storage Location : %s\n",  loc1.getDesignation());
         System.out.printf("Customer count   : %3d\n", loc1.getCustomerCount());
-        System.out.printf("Empty unit count : %3d\n", loc1.getEmptyUnits().length);
+        System.out.printf("Empty unit count : %3d\n", loc1.countEmptyUnits());
         
         // Rent some units and display some unit info
         System.out.println("\nRenting three units to Pat Perkins");        
@@ -41,12 +41,12 @@ public class StorageApplication {
         loc1.getStorageUnit(11, 5).rent(chris, LocalDate.now());
         System.out.println();
         
-        System.out.printf("Empty count                  : %3d\n", loc1.getEmptyUnits().length);
+        System.out.printf("Empty count                  : %3d\n", loc1.countEmptyUnits());
         System.out.printf("Pat's unit count             : %3d\n", loc1.getCustomerUnits(loc1.getCustomer(0)).length);
         System.out.printf("Chris's unit count           : %3d\n", loc1.getCustomerUnits(loc1.getCustomer(1)).length);
-        System.out.printf("Empty standard unit count    : %3d\n", loc1.getEmptyUnits(StdStorageUnit.class).length);
-        System.out.printf("Empty humidity unit count    : %3d\n", loc1.getEmptyUnits(HumidStorageUnit.class).length);
-        System.out.printf("Empty temperature unit count : %3d\n", loc1.getEmptyUnits(TempStorageUnit.class).length);
+        System.out.printf("Empty standard unit count    : %3d\n", loc1.countEmptyUnits(StdStorageUnit.class));
+        System.out.printf("Empty humidity unit count    : %3d\n", loc1.countEmptyUnits(HumidStorageUnit.class));
+        System.out.printf("Empty temperature unit count : %3d\n", loc1.countEmptyUnits(TempStorageUnit.class));
         
         System.out.println("\nShowing storage units, rented and unrented");        
         System.out.println(loc1.getStorageUnit(1, 5));
@@ -0,0 +1,532 @@
+package storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rough timings for the hot paths of a large storage location. Each scenario is
+ * warmed up first and then timed over several rounds; the figures are meant for
+ * comparing two implementations on the same machine, not as absolute numbers.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class StorageBenchmark {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** copies of the standard row layout; 95 copies make 10,070 units */
+    public static final int LAYOUT_COPIES = 95;
+    /** the number of customers at the benchmark location */
+    public static final int CUSTOMERS = 5000;
+    /** the share of units that are rented */
+    public static final double OCCUPANCY = 0.8;
+    /** the seed for the random rentals, so every run sees the same location */
+    public static final long SEED = 20171120L;
+
+    public static void main(String[] args) {
+        StorageLocation loc = buildLocation(repeatedLayout(LAYOUT_COPIES), CUSTOMERS, OCCUPANCY);
+        System.out.printf("Location with %,d units, %,d customers, %,d rented%n",
+            loc.countEmptyUnits() + countRented(loc), loc.getCustomerCount(), countRented(loc));
+
+        // Billing: the original per-customer search against the single-pass engine
+        double[] byScan = loc.calcMonthlyRentByScan();
+        double[] singlePass = loc.calcMonthlyRent();
+        System.out.printf("%-30s : %s%n", "Billing results identical", Arrays.equals(byScan, singlePass));
+        time("calcMonthlyRentByScan", 2, 5, () -> loc.calcMonthlyRentByScan());
+        time("calcMonthlyRent", 20, 50, () -> loc.calcMonthlyRent());
+
+        // Dashboard: occupancy and revenue by listing the empty units and billing, and from the counters
+        double billed = 0.0;
+        for (double rentDue : singlePass) {
+            billed += rentDue;
+        }
+        System.out.printf("%-30s : %,.2f billed, %,.2f projected%n", "Monthly revenue", billed,
+            loc.getProjectedMonthlyRevenue());
+        time("dashboard by scan", 20, 100, () -> {
+            int empty = loc.getEmptyUnits().length + loc.getEmptyUnits(StdStorageUnit.class).length
+                + loc.getEmptyUnits(HumidStorageUnit.class).length + loc.getEmptyUnits(TempStorageUnit.class).length;
+            double revenue = 0.0;
+            for (double rentDue : loc.calcMonthlyRent()) {
+                revenue += rentDue;
+            }
+            if (empty < 0 || revenue < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        time("dashboard from counters", 20, 100, () -> {
+            int empty = loc.countEmptyUnits() + loc.countEmptyUnits(StdStorageUnit.class)
+                + loc.countEmptyUnits(HumidStorageUnit.class) + loc.countEmptyUnits(TempStorageUnit.class);
+            if (empty < 0 || loc.getProjectedMonthlyRevenue() < 0 || loc.getMultiUnitCustomerCount() < 0) {
+                throw new IllegalStateException();
+            }
+        });
+
+        // Allocation: the tightest free temperature unit at levels 65-70, filtered by hand and from the fit index
+        UnitRequest request = new UnitRequest(UnitType.TEMPERATURE, 4, 8, 8, 65, 70, UnitRequest.Fit.TIGHTEST);
+        time("allocate by filtering by hand", 20, 100, () -> {
+            StorageUnit best = null;
+            for (StorageUnit unit : loc.getEmptyUnits(TempStorageUnit.class)) {
+                int level = ((TempStorageUnit) unit).getTempLevel();
+                if (unit.getWidth() >= 4 && unit.getLength() >= 8 && unit.getHeight() >= 8 && level >= 65
+                        && (best == null || unit.getWidth() * unit.getLength() * unit.getHeight()
+                            < best.getWidth() * best.getLength() * best.getHeight())) {
+                    best = unit;
+                }
+            }
+            if (best != null && best.getStorageLocation() != loc) {
+                throw new IllegalStateException();
+            }
+        });
+        time("allocate from fit index", 20, 100, () -> loc.allocate(request));
+
+        // Pricing: every rented unit's price, served from the unit price caches
+        StorageUnit[] rented = new StorageUnit[countRented(loc)];
+        int filled = 0;
+        for (int idx = 0; idx < loc.getCustomerCount(); idx++) {
+            for (StorageUnit unit : loc.getCustomerUnits(loc.getCustomer(idx))) {
+                rented[filled++] = unit;
+            }
+        }
+        time("getPrice x rented units", 20, 100, () -> {
+            double sum = 0;
+            for (StorageUnit unit : rented) {
+                sum += unit.getPrice();
+            }
+            if (sum < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        System.out.printf("%-30s : %.4f%n", "Price cache hit rate", loc.getPriceCacheHitRate());
+
+        // Repricing: every unit's price one virtual call at a time, and in one batch from the columns
+        StorageUnit[] everyUnit = new StorageUnit[loc.getUnitCount()];
+        for (int unitIdx = 0; unitIdx < everyUnit.length; unitIdx++) {
+            everyUnit[unitIdx] = loc.getUnitByIndex(unitIdx);
+        }
+        time("reprice units one by one", 20, 100, () -> {
+            double[] prices = new double[everyUnit.length];
+            for (int unitIdx = 0; unitIdx < everyUnit.length; unitIdx++) {
+                prices[unitIdx] = 110.0 + everyUnit[unitIdx].calcUnitSpecificPrice();
+            }
+        });
+        time("reprice units in a batch", 20, 100, () -> loc.calcUnitPrices(110.0));
+
+        // Rental dates: tenure and date-range queries, by scanning every unit and from the index
+        LocalDate asOf = LocalDate.of(2025, 6, 1);
+        time("tenure > 1,500 days by scan", 5, 20, () -> {
+            int found = 0;
+            for (StorageUnit unit : rented) {
+                LocalDate start = unit.getRentalStart();
+                if (start != null && start.plusDays(1500).isBefore(asOf)) {
+                    found++;
+                }
+            }
+            if (found < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        time("tenure > 1,500 days by index", 20, 100, () -> loc.getUnitsWithTenureOver(1500, asOf));
+        time("rented in one month by index", 20, 100,
+            () -> loc.countUnitsRentedBetween(LocalDate.of(2022, 3, 1), LocalDate.of(2022, 3, 31)));
+
+        // Unit map: the whole map as a String, streamed to a writer, and one 50-row page
+        System.out.printf("%-30s : %,d chars%n", "Unit map size", loc.unitMap().length());
+        time("unitMap", 5, 20, () -> loc.unitMap());
+        time("renderUnitMap to writer", 5, 20, () -> {
+            try {
+                loc.renderUnitMap(Writer.nullWriter());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        time("renderUnitMap 50-row page", 20, 200, () -> {
+            try {
+                loc.renderUnitMap(Writer.nullWriter(), 500, 550);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Startup: a 50,000-unit site read from its layout text
+        String largeSite = "S 3000 10 4x8x8 0\nH 1000 12 4x8x8 30\nT 800 10 4x8x8 50\n";
+        System.out.printf("%-30s : %,d%n", "Large site units", StorageLayout.parse(largeSite).getUnitCount());
+        time("parse layout + build location", 5, 20,
+            () -> new StorageLocation("WA23Issaquah", 100.0, StorageLayout.parse(largeSite)));
+
+        // Fleet: 300 locations of 1,060 units, billed one after another and through the registry
+        StorageRegistry registry = new StorageRegistry();
+        StorageLayout siteLayout = repeatedLayout(10);
+        for (int site = 0; site < 300; site++) {
+            String designation = String.format("WA%02dSite%c", site % 100, (char) ('A' + site / 100));
+            registry.register(buildLocation(designation, siteLayout, 500, OCCUPANCY));
+        }
+        time("bill 300 locations serially", 3, 10, () -> {
+            for (String designation : registry.getDesignations()) {
+                registry.getLocation(designation).chargeMonthlyRent();
+            }
+        });
+        time("bill 300 locations in parallel", 3, 10, () -> registry.chargeMonthlyRent());
+        FleetReport billing = registry.chargeMonthlyRent();
+        long slowest = 0;
+        for (FleetReport.LocationResult result : billing.getResults()) {
+            slowest = Math.max(slowest, result.getNanos());
+        }
+        System.out.printf("%-30s : %,12.3f ms%n", "slowest single location", slowest / 1e6);
+
+        // Journal: rent + release with every operation synced to disk, one thread against many
+        for (int threads = 1; threads <= 16; threads *= 4) {
+            journalThroughput(threads, 2000);
+        }
+
+        // Snapshot: a 100,000-unit site written, mapped and queried, then restored
+        StorageLocation bigSite = buildLocation(repeatedLayout(944), 20000, OCCUPANCY);
+        try {
+            Path snapshotFile = Files.createTempFile("storage-snapshot", ".bin");
+            try {
+                time("write 100k-unit snapshot", 2, 5, () -> {
+                    try {
+                        StorageSnapshot.write(bigSite, snapshotFile);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                System.out.printf("%-30s : %,d bytes%n", "Snapshot size", Files.size(snapshotFile));
+                time("open snapshot + first query", 0, 1, () -> {
+                    try {
+                        StorageSnapshot snapshot = StorageSnapshot.open(snapshotFile);
+                        if (snapshot.getOccupant(snapshot.getUnitCount() / 2) < StorageSnapshot.NO_OCCUPANT) {
+                            throw new IllegalStateException();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                StorageSnapshot snapshot = StorageSnapshot.open(snapshotFile);
+                time("count empty units in snapshot", 5, 20, () -> snapshot.countEmptyUnits());
+                time("restore location from snapshot", 1, 3, () -> snapshot.restore());
+            } finally {
+                Files.delete(snapshotFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Customers: 40,000 sign-ups, then lookups by ID, by phone and by name prefix
+        Customer[] signUps = new Customer[40000];
+        String[] dialled = new String[signUps.length];
+        for (int idx = 0; idx < signUps.length; idx++) {
+            signUps[idx] = new Customer("Customer " + idx, String.format("206-%03d-%04d", idx / 10000, idx % 10000));
+            dialled[idx] = String.format("(206) %03d %04d", idx / 10000, idx % 10000);
+        }
+        StorageLocation busy = new StorageLocation("WA23Issaquah", 100.0);
+        time("add 40,000 customers", 0, 1, () -> {
+            for (Customer customer : signUps) {
+                busy.addCustomer(customer);
+            }
+        });
+        time("getCustomer x 40,000", 5, 20, () -> {
+            for (int idx = 0; idx < busy.getCustomerCount(); idx++) {
+                busy.getCustomer(idx);
+            }
+        });
+        time("findCustomerByPhone x 40,000", 5, 20, () -> {
+            for (String phone : dialled) {
+                busy.findCustomerByPhone(phone);
+            }
+        });
+        String[] typed = new String[signUps.length];
+        for (int idx = 0; idx < typed.length; idx++) {
+            typed[idx] = "customer " + idx;
+        }
+        time("findCustomersByName x 40,000", 5, 20, () -> {
+            for (String prefix : typed) {
+                busy.findCustomersByName(prefix, 10);
+            }
+        });
+        time("name scan x 100", 1, 5, () -> {
+            for (int query = 0; query < 100; query++) {
+                List<Customer> found = new ArrayList<>();
+                for (int idx = 0; idx < busy.getCustomerCount() && found.size() < 10; idx++) {
+                    Customer customer = busy.getCustomer(idx);
+                    if (customer.getName().toLowerCase().startsWith(typed[query * 400])) {
+                        found.add(customer);
+                    }
+                }
+            }
+        });
+
+        // Receivables: three months of charges and payments, then the nightly report
+        // by sorting every balance and from the receivables kept in order
+        Random payments = new Random(SEED);
+        LocalDate billingDate = LocalDate.of(2026, 7, 1);
+        for (int month = 0; month < 3; month++) {
+            for (Customer customer : signUps) {
+                customer.chargeCents(5000 + payments.nextInt(20000));
+                if (payments.nextInt(4) != 0) {
+                    customer.creditCents(payments.nextInt(25000));
+                }
+            }
+            busy.chargeMonthlyRent(billingDate.plusMonths(month));
+        }
+        LocalDate reportDate = billingDate.plusMonths(3);
+        time("debtor report by sorting", 5, 20, () -> {
+            List<Customer> owing = new ArrayList<>();
+            for (int idx = 0; idx < busy.getCustomerCount(); idx++) {
+                if (busy.getCustomer(idx).getBalanceCents() > 100_00) {
+                    owing.add(busy.getCustomer(idx));
+                }
+            }
+            owing.sort((a, b) -> Long.compare(b.getBalanceCents(), a.getBalanceCents()));
+            if (owing.size() < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        time("debtor report from receivables", 5, 20, () -> {
+            Customer[] top = busy.getTopDebtors(20);
+            int[] aging = busy.countDebtorsByAge(reportDate);
+            if (top.length + aging[0] < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        System.out.printf("%-30s : %s%n", "Debtors 0-30/30-60/60+ days", Arrays.toString(busy.countDebtorsByAge(reportDate)));
+
+        // History: fifteen years of back-to-back rentals of every unit, then occupancy
+        // on a past day by walking the rental log and from the rental history
+        StorageLocation archive = new StorageLocation("WA24Redmond", 100.0, repeatedLayout(10));
+        Customer tenant = new Customer("Tenant", "425-555-0000");
+        archive.addCustomer(tenant);
+        Random tenures = new Random(SEED);
+        List<long[]> rentalLog = new ArrayList<>();
+        long firstDay = LocalDate.of(2010, 1, 1).toEpochDay();
+        long lastDay = LocalDate.of(2025, 1, 1).toEpochDay();
+        for (int unitIdx = 0; unitIdx < archive.countEmptyUnits(); unitIdx++) {
+            StorageUnit unit = archive.getUnitByIndex(unitIdx);
+            for (long day = firstDay + tenures.nextInt(60); day < lastDay; ) {
+                long end = day + 30 + tenures.nextInt(365);
+                unit.rent(tenant, LocalDate.ofEpochDay(day));
+                unit.release(LocalDate.ofEpochDay(end));
+                rentalLog.add(new long[] {day, end});
+                day = end + tenures.nextInt(30);
+            }
+        }
+        LocalDate pastDay = LocalDate.of(2018, 3, 1);
+        System.out.printf("%-30s : %,d rentals, %,d units rented on %s%n", "Rental history", rentalLog.size(),
+            archive.countOccupiedUnitsAsOf(pastDay), pastDay);
+        time("occupancy as of by log scan", 5, 20, () -> {
+            long day = pastDay.toEpochDay();
+            int rentedOn = 0;
+            for (long[] rental : rentalLog) {
+                if (rental[0] <= day && day < rental[1]) {
+                    rentedOn++;
+                }
+            }
+            if (rentedOn < 0) {
+                throw new IllegalStateException();
+            }
+        });
+        time("countOccupiedUnitsAsOf", 20, 100, () -> archive.countOccupiedUnitsAsOf(pastDay));
+
+        // Pricing rules: billing under the standard rules and under surge and row rules,
+        // and the cost of publishing new rules to a busy location
+        time("calcMonthlyRent, std rules", 20, 50, () -> loc.calcMonthlyRent());
+        PricingRules surging = PricingRules.standard()
+            .addSurge(UnitType.STANDARD, 0.25, 1.10).addSurge(UnitType.HUMIDITY, 0.25, 1.15)
+            .addSurge(UnitType.TEMPERATURE, 0.25, 1.20).setRowPremium(0, 15.0).setRowPremium(1, 10.0);
+        loc.setPricingRules(surging);
+        System.out.printf("%-30s : %,.2f projected%n", "Revenue with surge rules", loc.getProjectedMonthlyRevenue());
+        time("calcMonthlyRent, surge rules", 20, 50, () -> loc.calcMonthlyRent());
+        PricingRules standard = PricingRules.standard();
+        boolean[] flip = new boolean[1];
+        time("setPricingRules", 5, 20, () -> {
+            flip[0] = !flip[0];
+            loc.setPricingRules(flip[0] ? standard : surging);
+        });
+
+        // What-if repricing: a fleet's worth of temperature units priced one at a time
+        // and in batches, under the standard rules and under a candidate set
+        int fleetUnits = 100_000;
+        Random random = new Random(SEED);
+        int[] widths = new int[fleetUnits];
+        int[] lengths = new int[fleetUnits];
+        int[] heights = new int[fleetUnits];
+        int[] levels = new int[fleetUnits];
+        for (int i = 0; i < fleetUnits; i++) {
+            widths[i]  = StorageUnit.MULT_FOR_WIDTH_LENGTH * (1 + random.nextInt(8));
+            lengths[i] = StorageUnit.MULT_FOR_WIDTH_LENGTH * (1 + random.nextInt(8));
+            heights[i] = StorageUnit.MULT_FOR_HEIGHT * (1 + random.nextInt(6));
+            levels[i]  = TempStorageUnit.LOWER + random.nextInt(TempStorageUnit.UPPER - TempStorageUnit.LOWER + 1);
+        }
+        double[] whatIf = new double[fleetUnits];
+        time("what-if prices one by one", 20, 100, () -> {
+            for (int i = 0; i < fleetUnits; i++) {
+                whatIf[i] = TempStorageUnit.calcUnitSpecificPrice(widths[i], lengths[i], heights[i], levels[i]);
+            }
+        });
+        time("what-if prices, std batch", 20, 100,
+            () -> UnitPricing.calcTempPrices(widths, lengths, heights, levels, whatIf, fleetUnits));
+        UnitPricing candidate = new UnitPricing(PricingRules.standard().setSizeRate(UnitType.TEMPERATURE, 1.15));
+        time("what-if prices, candidate", 20, 100, () -> candidate.calcSpecificPrices(UnitType.TEMPERATURE, widths,
+            lengths, heights, levels, whatIf, fleetUnits));
+
+        // Parallel billing: every customer's rent at a location ten times larger, on this
+        // thread and split by rows across the common pool, which must agree exactly
+        StorageLocation large = buildLocation(repeatedLayout(LAYOUT_COPIES * 10), CUSTOMERS, OCCUPANCY);
+        Customer[] renters = new Customer[large.getCustomerCount()];
+        for (int idx = 0; idx < renters.length; idx++) {
+            renters[idx] = large.getCustomer(idx);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.printf("%-30s : %s on %d threads%n", "Parallel rent identical",
+            Arrays.equals(large.calcMonthlyRent(renters, renters.length, null),
+                large.calcMonthlyRent(renters, renters.length, pool)), pool.getParallelism());
+        time("rent, one thread", 20, 50, () -> large.calcMonthlyRent(renters, renters.length, null));
+        time("rent, fork-join", 20, 50, () -> large.calcMonthlyRent(renters, renters.length, pool));
+    }
+
+    /**
+     * Has threads rent and release their own units at a journaled location that syncs
+     * every operation, and prints the operation rate and how many records shared each sync
+     *
+     * @param   threadCount     the number of threads
+     * @param   operations      the rent + release pairs made by each thread
+     */
+    static void journalThroughput(int threadCount, int operations) {
+        try {
+            Path file = Files.createTempFile("storage-journal", ".bin");
+            try (StorageJournal journal = StorageJournal.open(file, true)) {
+                StorageLocation loc = new StorageLocation("WA23Issaquah", 100.0, repeatedLayout(1));
+                Customer renter = new Customer("Journal Renter", "425-555-0000");
+                loc.addCustomer(renter);
+                loc.setJournal(journal);
+                Thread[] workers = new Thread[threadCount];
+                for (int t = 0; t < threadCount; t++) {
+                    StorageUnit unit = loc.getStorageUnit(t % loc.getRowCount(), t / loc.getRowCount());
+                    workers[t] = new Thread(() -> {
+                        for (int op = 0; op < operations; op++) {
+                            unit.rent(renter, LocalDate.of(2026, 10, 1));
+                            unit.release();
+                        }
+                    });
+                }
+                long start = System.nanoTime();
+                for (Thread worker : workers) {
+                    worker.start();
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-30s : %2d threads, %,10.0f records/s, %6.1f records/sync%n", "Journal, sync each operation",
+                    threadCount, journal.getRecordCount() / seconds, (double) journal.getRecordCount() / journal.getSyncCount());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builds a layout from repeated copies of the standard rows
+     *
+     * @param   copies      the number of copies
+     * @return              the repeated layout
+     */
+    static StorageLayout repeatedLayout(int copies) {
+        StorageLayout standard = StorageLayout.standard();
+        StorageLayout layout = new StorageLayout();
+        for (int copy = 0; copy < copies; copy++) {
+            for (int rowIdx = 0; rowIdx < standard.getRowCount(); rowIdx++) {
+                layout.addRows(standard.getType(rowIdx), 1, standard.getSpaces(rowIdx), standard.getWidth(rowIdx),
+                    standard.getLength(rowIdx), standard.getHeight(rowIdx), standard.getLevel(rowIdx));
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Builds a location with randomly rented units
+     *
+     * @param   layout          the rows of the location
+     * @param   customerCount   the number of customers to add
+     * @param   occupancy       the share of units to rent, between 0 and 1
+     * @return                  the populated location
+     */
+    static StorageLocation buildLocation(StorageLayout layout, int customerCount, double occupancy) {
+        return buildLocation("WA23Issaquah", layout, customerCount, occupancy);
+    }
+
+    /**
+     * Builds a location with randomly rented units
+     *
+     * @param   designation     the designation of the location
+     * @param   layout          the rows of the location
+     * @param   customerCount   the number of customers to add
+     * @param   occupancy       the share of units to rent, between 0 and 1
+     * @return                  the populated location
+     */
+    static StorageLocation buildLocation(String designation, StorageLayout layout, int customerCount, double occupancy) {
+        StorageLocation loc = new StorageLocation(designation, 100.0, layout);
+        for (int idx = 0; idx < customerCount; idx++) {
+            loc.addCustomer(new Customer("Customer " + idx, String.format("425-555-%04d", idx)));
+        }
+        Random random = new Random(SEED);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int rowIdx = 0; rowIdx < loc.getRowCount(); rowIdx++) {
+            for (int spaceIdx = 0; spaceIdx < loc.getUnitsPerRowCount(rowIdx); spaceIdx++) {
+                if (customerCount > 0 && random.nextDouble() < occupancy) {
+                    Customer renter = loc.getCustomer(random.nextInt(customerCount));
+                    loc.getStorageUnit(rowIdx, spaceIdx).rent(renter, start.plusDays(random.nextInt(2000)));
+                }
+            }
+        }
+        return loc;
+    }
+
+    /**
+     * Counts the rented units of a location
+     *
+     * @param   loc     the location
+     * @return          the number of rented units
+     */
+    static int countRented(StorageLocation loc) {
+        int rented = 0;
+        for (int idx = 0; idx < loc.getCustomerCount(); idx++) {
+            rented += loc.getCustomerUnits(loc.getCustomer(idx)).length;
+        }
+        return rented;
+    }
+
+    /**
+     * Times an operation and prints the average time per call
+     *
+     * @param   label       the name to print
+     * @param   warmups     the number of untimed calls made first
+     * @param   rounds      the number of timed calls
+     * @param   operation   the operation to time
+     */
+    static void time(String label, int warmups, int rounds, Runnable operation) {
+        for (int i = 0; i < warmups; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            operation.run();
+        }
+        double perCall = (System.nanoTime() - start) / 1e6 / rounds;
+        System.out.printf("%-30s : %,12.3f ms/op%n", label, perCall);
+    }
+}
@@ -0,0 +1,146 @@
+package storage;
+
+import java.time.LocalDate;
+
+/**
+ * A change at a storage location, as delivered to event subscribers: a unit was
+ * rented or released, a unit's climate level changed, or a customer's balance was
+ * charged or credited.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class StorageEvent {
+
+    /**
+     * What happened
+     */
+    public enum Kind {
+        /** a unit was rented; the value is the rental start as an epoch day */
+        RENTED,
+        /** a unit was released; the value is the rental end as an epoch day */
+        RELEASED,
+        /** a unit's climate level changed; the value is the new level */
+        LEVEL_CHANGED,
+        /** a customer's balance was charged; the value is the amount in cents */
+        CHARGED,
+        /** a customer's balance was credited; the value is the amount in cents */
+        CREDITED
+    }
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** what happened */
+    private final Kind kind;
+    /** the location where it happened */
+    private final StorageLocation location;
+    /** the unit involved, or null for balance events */
+    private final StorageUnit unit;
+    /** the customer involved, or null for level changes */
+    private final Customer customer;
+    /** the start day, level or amount, depending on the kind */
+    private final long value;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageEvent Constructor
+     *
+     * @param   kind        what happened
+     * @param   location    the location where it happened
+     * @param   unit        the unit involved, or null
+     * @param   customer    the customer involved, or null
+     * @param   value       the start day, level or amount, depending on the kind
+     */
+    StorageEvent(Kind kind, StorageLocation location, StorageUnit unit, Customer customer, long value) {
+        this.kind     = kind;
+        this.location = location;
+        this.unit     = unit;
+        this.customer = customer;
+        this.value    = value;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves what happened
+     *
+     * @return      the kind of event
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Retrieves the location where it happened
+     *
+     * @return      the location
+     */
+    public StorageLocation getLocation() {
+        return location;
+    }
+
+    /**
+     * Retrieves the unit involved
+     *
+     * @return      the unit, or null for balance events
+     */
+    public StorageUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Retrieves the customer involved
+     *
+     * @return      the customer, or null for level changes
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Retrieves the event's value: the rental start as an epoch day for RENTED, the
+     * rental end as an epoch day for RELEASED, the new level for LEVEL_CHANGED, and
+     * the amount in cents for CHARGED and CREDITED
+     *
+     * @return      the value
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Retrieves the rental start of a RENTED event
+     *
+     * @return      the rental start, or null for other kinds of event
+     */
+    public LocalDate getRentalStart() {
+        return kind == Kind.RENTED ? LocalDate.ofEpochDay(value) : null;
+    }
+
+    /**
+     * Retrieves the rental end of a RELEASED event: the day the unit is free again
+     *
+     * @return      the rental end, or null for other kinds of event
+     */
+    public LocalDate getRentalEnd() {
+        return kind == Kind.RELEASED ? LocalDate.ofEpochDay(value) : null;
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Describes the event
+     *
+     * @return      the event as text
+     */
+    public String toString() {
+        String unitText = unit == null ? "" : String.format(" unit %d/%d", unit.getRowIdx(), unit.getSpaceIdx());
+        String customerText = customer == null ? "" : " " + customer.getName();
+        return String.format("%s %s%s%s %d", location.getDesignation(), kind, unitText, customerText, value);
+    }
+}
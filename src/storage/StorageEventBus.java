@@ -0,0 +1,283 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands a location's events to its subscribers without slowing down the thread that
+ * caused them. Each subscription has its own bounded ring buffer and delivery thread.
+ * Publishing offers the event to every ring with one compare-and-swap each and never
+ * waits or wakes anyone; the delivery thread drains its ring in batches and sleeps
+ * briefly when there is nothing to deliver. A subscriber that falls behind fills its
+ * own ring, and further events are dropped for that subscriber only and counted. It
+ * is told how many were dropped before its next batch.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class StorageEventBus {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the ring buffer size of a subscription by default */
+    public static final int DEFAULT_CAPACITY = 8192;
+    /** the most events delivered in one batch by default */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    /** how long an idle delivery thread sleeps before looking again, in nanoseconds */
+    public static final long IDLE_NANOS = 1_000_000;
+    /** numbers the delivery threads */
+    private static final AtomicLong THREAD_IDS = new AtomicLong();
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the name the delivery threads are given, after the location */
+    private final String name;
+    /** the current subscriptions, replaced copy-on-write */
+    private volatile Subscription[] subscriptions;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageEventBus Constructor
+     *
+     * @param   name    the name the delivery threads are given, after the location
+     */
+    StorageEventBus(String name) {
+        this.name          = name;
+        this.subscriptions = new Subscription[0];
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the number of current subscriptions
+     *
+     * @return      the number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * Checks whether anyone is listening, so callers can skip building events
+     *
+     * @return      true, if there is at least one subscription
+     */
+    boolean hasSubscribers() {
+        return subscriptions.length != 0;
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Subscribes a listener with the default buffer and batch sizes
+     *
+     * @param   listener    the listener; must not be null
+     * @return              the subscription, to be closed when no longer needed
+     */
+    public Subscription subscribe(StorageEventListener listener) {
+        return subscribe(listener, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Subscribes a listener. Its delivery thread starts at once.
+     *
+     * @param   listener    the listener; must not be null
+     * @param   capacity    the number of undelivered events the subscription holds
+     *                      before it drops events; must be a power of 2
+     * @param   batchSize   the most events delivered in one batch; must be over 0
+     * @return              the subscription, to be closed when no longer needed
+     */
+    public synchronized Subscription subscribe(StorageEventListener listener, int capacity, int batchSize) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must be non-null");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be > 0");
+        }
+        Subscription subscription = new Subscription(this, listener, capacity, batchSize);
+        Subscription[] more = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        more[more.length - 1] = subscription;
+        subscriptions = more;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Offers an event to every subscription without waiting
+     *
+     * @param   event   the event
+     */
+    void publish(StorageEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Removes a subscription from the bus
+     *
+     * @param   subscription    the subscription
+     */
+    private synchronized void unsubscribe(Subscription subscription) {
+        List<Subscription> rest = new ArrayList<>(Arrays.asList(subscriptions));
+        rest.remove(subscription);
+        subscriptions = rest.toArray(new Subscription[0]);
+    }
+
+    /**
+     * One listener's subscription: its ring buffer, delivery thread and counters
+     */
+    public static final class Subscription implements AutoCloseable {
+
+        /** the bus this subscription belongs to */
+        private final StorageEventBus bus;
+        /** the listener events are delivered to */
+        private final StorageEventListener listener;
+        /** the events not yet delivered */
+        private final EventRing<StorageEvent> ring;
+        /** the most events delivered in one batch */
+        private final int batchSize;
+        /** the thread that delivers the events */
+        private final Thread thread;
+        /** the events dropped because the ring was full */
+        private final LongAdder dropped;
+        /** the publishers between checking closed and adding their event */
+        private final AtomicInteger offering;
+        /** the events delivered so far */
+        private volatile long delivered;
+        /** the batches whose delivery threw */
+        private volatile long failures;
+        /** true, once the subscription is closed */
+        private volatile boolean closed;
+
+        /**
+         * Subscription Constructor; the delivery thread is started by the bus
+         *
+         * @param   bus         the bus this subscription belongs to
+         * @param   listener    the listener events are delivered to
+         * @param   capacity    the ring buffer size; must be a power of 2
+         * @param   batchSize   the most events delivered in one batch
+         */
+        private Subscription(StorageEventBus bus, StorageEventListener listener, int capacity, int batchSize) {
+            this.bus       = bus;
+            this.listener  = listener;
+            this.ring      = new EventRing<>(capacity);
+            this.batchSize = batchSize;
+            this.dropped   = new LongAdder();
+            this.offering  = new AtomicInteger();
+            this.thread    = new Thread(this::deliver, "storage-events-" + bus.name + "-" + THREAD_IDS.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Retrieves the number of events dropped because the listener fell behind
+         *
+         * @return      the number of dropped events
+         */
+        public long getDroppedCount() {
+            return dropped.sum();
+        }
+
+        /**
+         * Retrieves the number of events delivered to the listener
+         *
+         * @return      the number of delivered events
+         */
+        public long getDeliveredCount() {
+            return delivered;
+        }
+
+        /**
+         * Retrieves the number of batches whose delivery threw an exception. The
+         * events of such a batch count as delivered.
+         *
+         * @return      the number of failed batches
+         */
+        public long getFailureCount() {
+            return failures;
+        }
+
+        /**
+         * Checks whether the subscription is closed
+         *
+         * @return      true, if no more events are accepted
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Stops accepting events, delivers the ones already accepted, including those
+         * of publishers still adding theirs, and waits for the delivery thread to
+         * finish, unless called from that thread
+         */
+        public void close() {
+            closed = true;
+            bus.unsubscribe(this);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Adds an event to the ring, or counts it as dropped if the ring is full
+         *
+         * @param   event   the event
+         */
+        private void offer(StorageEvent event) {
+            // counted before checking closed, so the delivery thread cannot finish in between
+            offering.incrementAndGet();
+            try {
+                if (!closed && !ring.offer(event)) {
+                    dropped.increment();
+                }
+            } finally {
+                offering.decrementAndGet();
+            }
+        }
+
+        /**
+         * Delivers events in batches until the subscription is closed, no publisher is
+         * still adding an event and the ring is empty
+         */
+        private void deliver() {
+            List<StorageEvent> batch = new ArrayList<>(batchSize);
+            List<StorageEvent> view = Collections.unmodifiableList(batch);
+            long reportedDrops = 0;
+            while (!closed || offering.get() != 0 || !ring.isEmpty()) {
+                if (ring.drain(batch, batchSize) == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                try {
+                    long drops = dropped.sum();
+                    if (drops != reportedDrops) {
+                        listener.onDropped(drops - reportedDrops);
+                        reportedDrops = drops;
+                    }
+                    listener.onEvents(view);
+                } catch (RuntimeException e) {
+                    failures++;
+                }
+                delivered += batch.size();
+                batch.clear();
+            }
+        }
+    }
+}
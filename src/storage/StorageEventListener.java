@@ -0,0 +1,31 @@
+package storage;
+
+import java.util.List;
+
+/**
+ * Receives the events of a storage location in batches, on the subscription's own
+ * delivery thread
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+@FunctionalInterface
+public interface StorageEventListener {
+
+    /**
+     * Handles a batch of events
+     *
+     * @param   events      the events, in the order they happened; not to be kept
+     *                      after the call returns
+     */
+    public void onEvents(List<StorageEvent> events);
+
+    /**
+     * Learns that events were dropped because this listener fell behind and its
+     * buffer was full. Called before the next batch is delivered.
+     *
+     * @param   count       the number of events dropped since the last batch
+     */
+    public default void onDropped(long count) {
+    }
+}
@@ -0,0 +1,521 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of everything that changes a location's state: rentals,
+ * releases, charges, credits and bill runs. Each event is one fixed-size binary record:
+ * <pre>
+ *     offset  size  field
+ *      0       1    kind (RENT, RELEASE, CHARGE, CREDIT or BILL)
+ *      4       4    unit position, or -1
+ *      8       4    customer ID, or -1
+ *     12       4    rental start (RENT), end (RELEASE) or billing date (BILL) as an epoch day, or 0
+ *     16       8    amount in cents, or 0
+ *     24       4    CRC-32 of bytes 0 to 23
+ * </pre>
+ * Records are written by a background thread in batches: everything appended while
+ * one batch is being written and synced to disk goes out together in the next, so
+ * many operations share each disk sync (group commit).
+ *
+ * A location is recovered by building it again with the same layout and customers,
+ * added in the same order, and replaying its journal into it before attaching the
+ * journal for new events.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class StorageJournal implements Closeable {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the size of every record, in bytes */
+    public static final int RECORD_SIZE = 32;
+    /** a unit was rented */
+    public static final byte RENT = 1;
+    /** a unit was released */
+    public static final byte RELEASE = 2;
+    /** a customer was charged */
+    public static final byte CHARGE = 3;
+    /** a customer was credited */
+    public static final byte CREDIT = 4;
+    /** the charges not billed yet were billed */
+    public static final byte BILL = 5;
+    /** the number of bytes covered by a record's checksum */
+    private static final int CHECKED_BYTES = 24;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the journal file */
+    private final FileChannel channel;
+    /** whether every operation waits until its record is on disk */
+    private final boolean syncEachOperation;
+    /** guards the buffers and counters below */
+    private final ReentrantLock lock;
+    /** signalled when records are waiting to be written, or the journal closes */
+    private final Condition recordsWaiting;
+    /** signalled when a batch is on disk, or writing failed */
+    private final Condition batchSynced;
+    /** the records appended since the last batch was taken */
+    private ByteBuffer pending;
+    /** the buffer the writer thread fills the file from */
+    private ByteBuffer writing;
+    /** the number of records appended */
+    private long appended;
+    /** the number of records on disk */
+    private long durable;
+    /** the number of disk syncs made */
+    private long syncs;
+    /** why writing stopped, or null while it works */
+    private IOException failure;
+    /** whether the journal is closed to new records */
+    private boolean closed;
+    /** the thread writing batches to disk */
+    private final Thread writer;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageJournal Constructor
+     *
+     * @param   channel             the journal file, positioned after its last valid record
+     * @param   syncEachOperation   whether every operation waits until its record is on disk
+     */
+    private StorageJournal(FileChannel channel, boolean syncEachOperation) {
+        this.channel           = channel;
+        this.syncEachOperation = syncEachOperation;
+        this.lock              = new ReentrantLock();
+        this.recordsWaiting    = lock.newCondition();
+        this.batchSynced       = lock.newCondition();
+        this.pending           = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        this.writing           = ByteBuffer.allocate(RECORD_SIZE * 1024);
+        this.writer            = new Thread(this::writeBatches, "storage-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a journal for appending, creating the file if needed. A partly written
+     * record left at the end by a crash is cut off first.
+     *
+     * @param   file                the journal file
+     * @param   syncEachOperation   true to have every operation wait until its record is
+     *                              on disk; false to let records reach the disk in the
+     *                              background, with sync() as the durability point
+     * @return                      the open journal
+     * @throws  IOException         if the file cannot be opened
+     */
+    public static StorageJournal open(Path file, boolean syncEachOperation) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            long validLength = validLength(channel);
+            channel.truncate(validLength);
+            channel.position(validLength);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new StorageJournal(channel, syncEachOperation);
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Checks whether every operation waits until its record is on disk
+     *
+     * @return      true, if operations wait for their records
+     */
+    public boolean isSyncEachOperation() {
+        return syncEachOperation;
+    }
+
+    /**
+     * Retrieves the number of records appended since the journal was opened
+     *
+     * @return      the number of records
+     */
+    public long getRecordCount() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of disk syncs made since the journal was opened
+     *
+     * @return      the number of syncs
+     */
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Appends a record. The record reaches the disk with the next batch.
+     *
+     * @param   kind        RENT, RELEASE, CHARGE, CREDIT or BILL
+     * @param   unitIdx     the unit position, or -1
+     * @param   customerId  the customer ID, or -1
+     * @param   epochDay    the rental start or end or the billing date as an epoch day, or 0
+     * @param   cents       the amount in cents, or 0
+     * @return              the record's sequence number, for awaitDurable
+     */
+    long append(byte kind, int unitIdx, int customerId, int epochDay, long cents) {
+        lock.lock();
+        try {
+            checkWritable(RECORD_SIZE);
+            encode(pending, kind, unitIdx, customerId, epochDay, cents);
+            long sequence = ++appended;
+            recordsWaiting.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends one record per unit for a batch of units of one customer, all under a
+     * single lock so they reach the disk in the same batch
+     *
+     * @param   kind        RENT or RELEASE
+     * @param   unitIdxs    the unit positions
+     * @param   customerId  the customer ID
+     * @param   epochDay    the rental start or end as an epoch day, or 0
+     * @return              the sequence number of the last record, for awaitDurable
+     */
+    long appendUnits(byte kind, int[] unitIdxs, int customerId, int epochDay) {
+        lock.lock();
+        try {
+            checkWritable(unitIdxs.length * RECORD_SIZE);
+            for (int unitIdx : unitIdxs) {
+                encode(pending, kind, unitIdx, customerId, epochDay, 0);
+            }
+            appended += unitIdxs.length;
+            recordsWaiting.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure records can be appended, growing the pending buffer when needed.
+     * Called with the lock held.
+     *
+     * @param   bytes   the number of bytes about to be appended
+     */
+    private void checkWritable(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal writing failed", failure);
+        }
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * Waits until a record is on disk
+     *
+     * @param   sequence    the record's sequence number, as returned by append
+     */
+    void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            while (durable < sequence && failure == null) {
+                batchSynced.awaitUninterruptibly();
+            }
+            if (durable < sequence) {
+                throw new UncheckedIOException("Journal writing failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a record if this journal syncs each operation
+     *
+     * @param   sequence    the record's sequence number, as returned by append
+     */
+    void commit(long sequence) {
+        if (syncEachOperation) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk
+     */
+    public void sync() {
+        long last;
+        lock.lock();
+        try {
+            last = appended;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(last);
+    }
+
+    /**
+     * Writes out the remaining records and closes the file. Appending afterwards fails.
+     *
+     * @throws  IOException     if the remaining records cannot be written
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            recordsWaiting.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays a journal into a location, restoring its rentals, its customers'
+     * balances and the billing dates of their charges. The location must have the layout and customers it had when the journal
+     * was written, with the customers added in the same order, and no journal attached
+     * yet. Replay stops at a partly written record left at the end by a crash.
+     *
+     * @param   file        the journal file
+     * @param   location    the location to restore
+     * @return              the number of records replayed
+     * @throws  IOException     if the file cannot be read
+     */
+    public static long replay(Path file, StorageLocation location) throws IOException {
+        if (location == null) {
+            throw new IllegalArgumentException("Location must be non-null");
+        }
+        if (location.getJournal() != null) {
+            throw new IllegalArgumentException("Replay before attaching a journal to the location");
+        }
+        long replayed = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            CRC32 crc = new CRC32();
+            while (channel.read(chunk) > 0 || chunk.position() >= RECORD_SIZE) {
+                chunk.flip();
+                while (chunk.remaining() >= RECORD_SIZE) {
+                    int start = chunk.position();
+                    if (!validRecord(chunk, start, crc)) {
+                        return replayed;
+                    }
+                    apply(location, chunk.get(start), chunk.getInt(start + 4), chunk.getInt(start + 8),
+                        chunk.getInt(start + 12), chunk.getLong(start + 16), replayed);
+                    chunk.position(start + RECORD_SIZE);
+                    replayed++;
+                }
+                chunk.compact();
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Applies one journal record to a location
+     *
+     * @param   location    the location to restore
+     * @param   kind        the record kind
+     * @param   unitIdx     the unit position
+     * @param   customerId  the customer ID
+     * @param   epochDay    the rental start or end or the billing date as an epoch day
+     * @param   cents       the amount in cents
+     * @param   recordIdx   the record's position in the journal, for error messages
+     */
+    private static void apply(StorageLocation location, byte kind, int unitIdx, int customerId, int epochDay,
+                              long cents, long recordIdx) {
+        if (kind == BILL) {
+            location.billed(epochDay);
+            return;
+        }
+        if (customerId < 0 || customerId >= location.getCustomerCount()) {
+            throw new IllegalStateException("Record " + recordIdx + ": unknown customer " + customerId);
+        }
+        Customer customer = location.getCustomer(customerId);
+        boolean applied;
+        switch (kind) {
+            case RENT:
+                applied = location.getUnitByIndex(unitIdx).rent(customer, LocalDate.ofEpochDay(epochDay));
+                break;
+            case RELEASE:
+                applied = location.getUnitByIndex(unitIdx).release(LocalDate.ofEpochDay(epochDay));
+                break;
+            case CHARGE:
+                customer.getLedger().charge(cents);
+                location.postToReceivables(customer, CHARGE, cents);
+                applied = true;
+                break;
+            case CREDIT:
+                customer.getLedger().credit(cents);
+                location.postToReceivables(customer, CREDIT, cents);
+                applied = true;
+                break;
+            default:
+                throw new IllegalStateException("Record " + recordIdx + ": unknown kind " + kind);
+        }
+        if (!applied) {
+            throw new IllegalStateException("Record " + recordIdx + " does not fit the location's state");
+        }
+    }
+
+    /**
+     * Writes batches of records to disk until the journal is closed
+     */
+    private void writeBatches() {
+        while (true) {
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    recordsWaiting.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                batchEnd = appended;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                writing.clear();
+                channel.force(false);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    batchSynced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                durable = batchEnd;
+                syncs++;
+                batchSynced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes one record into a buffer
+     *
+     * @param   out         the buffer, with room for a record
+     * @param   kind        the record kind
+     * @param   unitIdx     the unit position
+     * @param   customerId  the customer ID
+     * @param   epochDay    the rental start or end as an epoch day
+     * @param   cents       the amount in cents
+     */
+    private static void encode(ByteBuffer out, byte kind, int unitIdx, int customerId, int epochDay, long cents) {
+        int start = out.position();
+        out.put(kind).put((byte) 0).putShort((short) 0);
+        out.putInt(unitIdx).putInt(customerId).putInt(epochDay).putLong(cents);
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), out.arrayOffset() + start, CHECKED_BYTES);
+        out.putInt((int) crc.getValue()).putInt(0);
+    }
+
+    /**
+     * Checks the kind and checksum of the record at a buffer position
+     *
+     * @param   in      the buffer, with a whole record at the position
+     * @param   start   the position of the record
+     * @param   crc     a checksum calculator to reuse
+     * @return          true, if the record is intact
+     */
+    private static boolean validRecord(ByteBuffer in, int start, CRC32 crc) {
+        byte kind = in.get(start);
+        if (kind < RENT || kind > BILL) {
+            return false;
+        }
+        crc.reset();
+        crc.update(in.array(), in.arrayOffset() + start, CHECKED_BYTES);
+        return in.getInt(start + CHECKED_BYTES) == (int) crc.getValue();
+    }
+
+    /**
+     * Works out how much of a journal file holds intact records
+     *
+     * @param   channel     the journal file
+     * @return              the length of the intact records, in bytes
+     * @throws  IOException     if the file cannot be read
+     */
+    private static long validLength(FileChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        CRC32 crc = new CRC32();
+        long length = 0;
+        channel.position(0);
+        while (channel.read(chunk) > 0 || chunk.position() >= RECORD_SIZE) {
+            chunk.flip();
+            while (chunk.remaining() >= RECORD_SIZE) {
+                if (!validRecord(chunk, chunk.position(), crc)) {
+                    return length;
+                }
+                chunk.position(chunk.position() + RECORD_SIZE);
+                length += RECORD_SIZE;
+            }
+            chunk.compact();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,352 @@
+package storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Describes the rows of a storage location: how many units each row holds, their
+ * type, dimensions and climate level. A location is built from a layout; its units
+ * are only created when they are first needed.
+ *
+ * Layouts can be written as text, one group of identical rows per line:
+ * <pre>
+ *     # type  rows  spaces  width x length x height  level
+ *     S       7     10      4x8x8                    0
+ *     H       3     8       4x8x8                    30
+ *     T       2     6       4x8x8                    50
+ * </pre>
+ * Blank lines and anything after a '#' are ignored.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class StorageLayout {
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the number of rows described */
+    private int rowCount;
+    /** the unit type of each row */
+    private UnitType[] types;
+    /** the number of units in each row */
+    private int[] spaces;
+    /** the width of the units in each row */
+    private int[] widths;
+    /** the length of the units in each row */
+    private int[] lengths;
+    /** the height of the units in each row */
+    private int[] heights;
+    /** the climate level of the units in each row */
+    private int[] levels;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageLayout Constructor for an empty layout; rows are added with addRows
+     */
+    public StorageLayout() {
+        rowCount = 0;
+        types    = new UnitType[16];
+        spaces   = new int[16];
+        widths   = new int[16];
+        lengths  = new int[16];
+        heights  = new int[16];
+        levels   = new int[16];
+    }
+
+    /**
+     * Creates the standard layout of 7 standard, 3 humidity and 2 temperature rows
+     *
+     * @return      the standard layout
+     */
+    public static StorageLayout standard() {
+        StorageLayout layout = new StorageLayout();
+        layout.addRows(UnitType.STANDARD, StorageLocation.ROW_START_HUM - StorageLocation.ROW_START_STD,
+            StorageLocation.SPACES_IN_STD_ROW, StorageLocation.WIDTH, StorageLocation.LENGTH, StorageLocation.HEIGHT, 0);
+        layout.addRows(UnitType.HUMIDITY, StorageLocation.ROW_START_TMP - StorageLocation.ROW_START_HUM,
+            StorageLocation.SPACES_IN_HUM_ROW, StorageLocation.WIDTH, StorageLocation.LENGTH, StorageLocation.HEIGHT,
+            StorageLocation.LEVEL_HUMID);
+        layout.addRows(UnitType.TEMPERATURE, StorageLocation.NUM_ROWS - StorageLocation.ROW_START_TMP,
+            StorageLocation.SPACES_IN_TEMP_ROW, StorageLocation.WIDTH, StorageLocation.LENGTH, StorageLocation.HEIGHT,
+            StorageLocation.LEVEL_TEMP);
+        return layout;
+    }
+
+    /**
+     * Reads a layout from a text file
+     *
+     * @param   file    the layout file
+     * @return          the layout described by the file
+     * @throws  IOException     if the file cannot be read
+     */
+    public static StorageLayout load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Reads a layout from its text form
+     *
+     * @param   text    the layout text
+     * @return          the layout described by the text
+     */
+    public static StorageLayout parse(String text) {
+        try {
+            return parse(new BufferedReader(new StringReader(text)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Reading from a string failed", e);
+        }
+    }
+
+    /**
+     * Reads a layout from its text form
+     *
+     * @param   reader  the source of the layout text
+     * @return          the layout described by the text
+     * @throws  IOException     if the text cannot be read
+     */
+    public static StorageLayout parse(BufferedReader reader) throws IOException {
+        StorageLayout layout = new StorageLayout();
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            String[] dims = fields.length == 5 ? fields[3].split("x") : new String[0];
+            if (fields.length != 5 || fields[0].length() != 1 || dims.length != 3) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected 'type rows spaces WxLxH level'");
+            }
+            try {
+                layout.addRows(UnitType.fromSymbol(fields[0].charAt(0)), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), Integer.parseInt(dims[0]), Integer.parseInt(dims[1]),
+                    Integer.parseInt(dims[2]), Integer.parseInt(fields[4]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return layout;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the number of rows in this layout
+     *
+     * @return      the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Counts the units in all rows of this layout
+     *
+     * @return      the number of units
+     */
+    public int getUnitCount() {
+        int unitCount = 0;
+        for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+            unitCount += spaces[rowIdx];
+        }
+        return unitCount;
+    }
+
+    /**
+     * Retrieves the unit type of a row
+     *
+     * @param   rowIdx  the row
+     * @return          the type of the units in that row
+     */
+    public UnitType getType(int rowIdx) {
+        checkRow(rowIdx);
+        return types[rowIdx];
+    }
+
+    /**
+     * Retrieves the number of units in a row
+     *
+     * @param   rowIdx  the row
+     * @return          the number of units in that row
+     */
+    public int getSpaces(int rowIdx) {
+        checkRow(rowIdx);
+        return spaces[rowIdx];
+    }
+
+    /**
+     * Retrieves the width of the units in a row
+     *
+     * @param   rowIdx  the row
+     * @return          the unit width, in feet
+     */
+    public int getWidth(int rowIdx) {
+        checkRow(rowIdx);
+        return widths[rowIdx];
+    }
+
+    /**
+     * Retrieves the length of the units in a row
+     *
+     * @param   rowIdx  the row
+     * @return          the unit length, in feet
+     */
+    public int getLength(int rowIdx) {
+        checkRow(rowIdx);
+        return lengths[rowIdx];
+    }
+
+    /**
+     * Retrieves the height of the units in a row
+     *
+     * @param   rowIdx  the row
+     * @return          the unit height, in feet
+     */
+    public int getHeight(int rowIdx) {
+        checkRow(rowIdx);
+        return heights[rowIdx];
+    }
+
+    /**
+     * Retrieves the climate level of the units in a row
+     *
+     * @param   rowIdx  the row
+     * @return          the climate level; 0 for standard rows
+     */
+    public int getLevel(int rowIdx) {
+        checkRow(rowIdx);
+        return levels[rowIdx];
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Appends a group of identical rows to the layout
+     *
+     * @param   type        the type of the units in the rows; must not be null
+     * @param   rows        the number of rows to add; must not be negative
+     * @param   spacesInRow the number of units in each row; must not be negative
+     * @param   width       the unit width, in feet; must be over 0 and evenly divisible by 4
+     * @param   length      the unit length, in feet; must be over 0 and evenly divisible by 4
+     * @param   height      the unit height, in feet; must be over 0 and evenly divisible by 2
+     * @param   level       the climate level; must suit the unit type, ignored for standard units
+     * @return              this layout
+     */
+    public StorageLayout addRows(UnitType type, int rows, int spacesInRow, int width, int length, int height, int level) {
+        if (type == null) {
+            throw new IllegalArgumentException("Unit type must be non-null");
+        }
+        if (rows < 0 || spacesInRow < 0) {
+            throw new IllegalArgumentException("Row and space counts must not be negative");
+        }
+        if (width <= 0 || length <= 0 || height <= 0) {
+            throw new IllegalArgumentException("All dimensions must be > 0");
+        }
+        if (width % StorageUnit.MULT_FOR_WIDTH_LENGTH != 0 || length % StorageUnit.MULT_FOR_WIDTH_LENGTH != 0) {
+            throw new IllegalArgumentException("width and length must be a multiple of 4");
+        }
+        if (height % StorageUnit.MULT_FOR_HEIGHT != 0) {
+            throw new IllegalArgumentException("height must be a multiple of 2");
+        }
+        if (!type.acceptsLevel(level)) {
+            throw new IllegalArgumentException("Level is out of bound.");
+        }
+        if (rowCount + rows > types.length) {
+            int capacity = Math.max(types.length * 2, rowCount + rows);
+            types   = Arrays.copyOf(types, capacity);
+            spaces  = Arrays.copyOf(spaces, capacity);
+            widths  = Arrays.copyOf(widths, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            levels  = Arrays.copyOf(levels, capacity);
+        }
+        int storedLevel = type == UnitType.STANDARD ? 0 : level;
+        Arrays.fill(types, rowCount, rowCount + rows, type);
+        Arrays.fill(spaces, rowCount, rowCount + rows, spacesInRow);
+        Arrays.fill(widths, rowCount, rowCount + rows, width);
+        Arrays.fill(lengths, rowCount, rowCount + rows, length);
+        Arrays.fill(heights, rowCount, rowCount + rows, height);
+        Arrays.fill(levels, rowCount, rowCount + rows, storedLevel);
+        rowCount += rows;
+        return this;
+    }
+
+    /**
+     * Makes an independent copy of this layout, so later changes to either do not affect the other
+     *
+     * @return      the copy
+     */
+    StorageLayout copy() {
+        StorageLayout copy = new StorageLayout();
+        copy.rowCount = rowCount;
+        copy.types    = Arrays.copyOf(types, rowCount);
+        copy.spaces   = Arrays.copyOf(spaces, rowCount);
+        copy.widths   = Arrays.copyOf(widths, rowCount);
+        copy.lengths  = Arrays.copyOf(lengths, rowCount);
+        copy.heights  = Arrays.copyOf(heights, rowCount);
+        copy.levels   = Arrays.copyOf(levels, rowCount);
+        return copy;
+    }
+
+    /**
+     * Writes this layout in its text form, one line per group of identical rows
+     *
+     * @return      the layout text
+     */
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        int rowIdx = 0;
+        while (rowIdx < rowCount) {
+            int groupEnd = rowIdx + 1;
+            while (groupEnd < rowCount && sameRow(rowIdx, groupEnd)) {
+                groupEnd++;
+            }
+            text.append(types[rowIdx].getSymbol()).append(' ')
+                .append(groupEnd - rowIdx).append(' ')
+                .append(spaces[rowIdx]).append(' ')
+                .append(widths[rowIdx]).append('x').append(lengths[rowIdx]).append('x').append(heights[rowIdx]).append(' ')
+                .append(levels[rowIdx]).append('\n');
+            rowIdx = groupEnd;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Checks whether two rows are described identically
+     *
+     * @param   first   the first row
+     * @param   second  the second row
+     * @return          true, if both rows hold the same units
+     */
+    private boolean sameRow(int first, int second) {
+        return types[first] == types[second] && spaces[first] == spaces[second] && widths[first] == widths[second]
+            && lengths[first] == lengths[second] && heights[first] == heights[second] && levels[first] == levels[second];
+    }
+
+    /**
+     * Checks that a row index lies within this layout
+     *
+     * @param   rowIdx  the row
+     */
+    private void checkRow(int rowIdx) {
+        if (rowIdx < 0 || rowIdx >= rowCount) {
+            throw new IllegalArgumentException("Index is out of bound.");
+        }
+    }
+}
@@ -1,8 +1,34 @@
 package storage;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Represents a storage location for Stanley's Storage Spots
  *
+ * Units may be rented and released from many threads at once. The indexes kept for
+ * rented and free units are updated without a location-wide lock; adding customers
+ * is serialized.
+ *
  * @author      Bill Barry
  * @version     2017-11-20
  * @author      Viktoryia Simakova
@@ -43,26 +69,70 @@ public class StorageLocation implements StorageLocationInterface  {
     public static final int LEVEL_TEMP = 50;
     /** the level of humidity of storage unit */
     public static final int LEVEL_HUMID = 30;
+    /** the width of each receivables aging bucket, in days past due */
+    public static final int AGING_BUCKET_DAYS = 30;
+    /** the number of receivables aging buckets: 0-30, 30-60 and 60 or more days past due */
+    public static final int AGING_BUCKETS = 3;
 
     //---------------------------------------------------------------------
     //          INSTANCE DATA
     //---------------------------------------------------------------------
     /** this unit's designation per company guidelines */
     private String locationDesignation;
-    /** stores all units managed by this location */
-    private StorageUnit[][] units;
+    /** the rows of this location */
+    private StorageLayout layout;
+    /** stores all units managed by this location in row-major order; a unit is created when first needed */
+    private AtomicReferenceArray<StorageUnit> units;
     /** maintains the customers for this location */
-    private Customer[] customers;
+    private volatile Customer[] customers;
     /** the number of customers at this location (may be less than array size) */
-    private int customerCount;
+    private volatile int customerCount;
+    /** the ID (array index) of each customer; a customer added twice keeps its first ID */
+    private Map<Customer, Integer> customerIds;
+    /** the customers with each phone number, keyed by the number's digits, in ID order */
+    private Map<String, Customer[]> customersByPhone;
+    /** the customers under each name index key, in ID order; see nameKeys */
+    private ConcurrentSkipListMap<String, Customer[]> customersByName;
     /**the base price of storage unit */
-    private double basePrice;
+    private volatile double basePrice;
+    /** moves on whenever a change affects the price of every unit, making cached unit prices stale */
+    private AtomicLong priceStamp;
+    /** the number of unit prices served from cache */
+    private LongAdder priceCacheHits;
+    /** the number of unit prices that had to be worked out */
+    private LongAdder priceCacheMisses;
+    /** the units rented by each customer, kept in grid order by rent and release */
+    private Map<Customer, StorageUnit[]> unitsByCustomer;
+    /** the position of the first unit of each row, so row-major positions map back to rows */
+    private int[] rowStarts;
+    /** the free units of the whole location, one bit per row-major position */
+    private UnitBitmap freeUnits;
+    /** the free units of each unit type, one bit per row-major position */
+    private Map<UnitType, UnitBitmap> freeUnitsByType;
+    /** whether index lookups are verified against a full scan of the grid */
+    private boolean consistencyChecks;
+    /** the rented units ordered by rental start, each packed as start day and position */
+    private final ConcurrentSkipListSet<Long> rentalsByStart;
+    /** every unit's type, dimensions, level and rental, as primitive arrays for scans */
+    private final UnitColumns columns;
+    /** where rentals, releases and balance postings are recorded, or null */
+    private volatile StorageJournal journal;
+    /** the rented units of each type, the multi-unit customers and the projected rent */
+    private final OccupancyCounters occupancy;
+    /** the units grouped by type, size and climate level, for best-fit searches */
+    private final UnitFitIndex fitIndex;
+    /** hands rentals, releases, level changes and balance postings to subscribers */
+    private final StorageEventBus eventBus;
+    /** the customers' balances ordered by amount, with their unpaid charges by billing date */
+    private final Receivables receivables;
+    /** every rental seen here, kept after release, for occupancy and rental queries over time */
+    private final RentalHistory history;
 
     //---------------------------------------------------------------------
     //          CONSTRUCTORS
     //---------------------------------------------------------------------
     /**
-     * StorageLocation Constructor
+     * StorageLocation Constructor for a location with the standard layout
      *
      * @param   locationDesignation     the company's designation (name) for this location;
      *                                  must not be null or empty; must match the required
@@ -71,39 +141,65 @@ public class StorageLocation implements StorageLocationInterface  {
      * @param basePrice                 the base price of storage unit
      */
     public StorageLocation(String locationDesignation, double basePrice) {
+        this(locationDesignation, basePrice, StorageLayout.standard());
+    }
+
+    /**
+     * StorageLocation Constructor for a location built from a layout. Units are not
+     * created here; each one is created the first time it is needed.
+     *
+     * @param   locationDesignation     the company's designation (name) for this location;
+     *                                  same requirements as for the standard constructor
+     * @param   basePrice               the base price of storage unit
+     * @param   layout                  the rows of the location; must not be null
+     */
+    public StorageLocation(String locationDesignation, double basePrice, StorageLayout layout) {
         if (locationDesignation == null || locationDesignation.isEmpty()) {
             throw new IllegalArgumentException("The location designation can't be empty or null");
         }
         if (!locationDesignation.matches("[A-Z]{2}[0-9]{2}[A-Za-z ]+")) {
             throw new IllegalArgumentException("Designation doesn't match required pattern");
         }
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout must be non-null");
+        }
         this.locationDesignation = locationDesignation;
-        setUnitBasePrice(basePrice);
+        priceStamp = new AtomicLong();
+        priceCacheHits = new LongAdder();
+        priceCacheMisses = new LongAdder();
         customers = new Customer[NUM_CUSTOMERS];
         customerCount = 0;
+        customerIds = new ConcurrentHashMap<>();
+        customersByPhone = new ConcurrentHashMap<>();
+        customersByName = new ConcurrentSkipListMap<>();
+        unitsByCustomer = new ConcurrentHashMap<>();
+        consistencyChecks = false;
 
-        units = new StorageUnit[NUM_ROWS][];        
-        for (int rowIdx = 0; rowIdx < units.length; rowIdx++) {
-            if (rowIdx >= ROW_START_TMP) {
-                TempStorageUnit [] tempUnit = new TempStorageUnit[SPACES_IN_TEMP_ROW];
-                units[rowIdx] = tempUnit;
-                for (int idx = 0; idx < tempUnit.length; idx++) {
-                    units[rowIdx][idx] = new TempStorageUnit(WIDTH, LENGTH, HEIGHT, LEVEL_TEMP, this);
-                }
-            } else if (rowIdx >= ROW_START_HUM) {
-                HumidStorageUnit [] humidUnit = new HumidStorageUnit[SPACES_IN_HUM_ROW];
-                units[rowIdx] = humidUnit;
-                for (int idx = 0; idx < humidUnit.length; idx++) {
-                    units[rowIdx][idx] = new HumidStorageUnit(WIDTH, LENGTH, HEIGHT, LEVEL_HUMID, this);
-                }
-            } else {
-                StdStorageUnit [] stdUnit = new StdStorageUnit[SPACES_IN_STD_ROW];
-                units[rowIdx] = stdUnit;
-                for (int idx = 0; idx < stdUnit.length; idx++) {
-                    units[rowIdx][idx] = new StdStorageUnit(WIDTH, LENGTH, HEIGHT, this);
-                }
-            }
+        this.layout = layout.copy();
+        int unitCount = this.layout.getUnitCount();
+        units = new AtomicReferenceArray<>(unitCount);
+        columns = new UnitColumns(this.layout);
+        occupancy = new OccupancyCounters(columns);
+        fitIndex = new UnitFitIndex(columns);
+        eventBus = new StorageEventBus(locationDesignation);
+        receivables = new Receivables();
+        history = new RentalHistory(unitCount);
+        rentalsByStart = new ConcurrentSkipListSet<>();
+        rowStarts = new int[this.layout.getRowCount()];
+        freeUnits = new UnitBitmap(unitCount);
+        freeUnitsByType = new EnumMap<>(UnitType.class);
+        for (UnitType type : UnitType.values()) {
+            freeUnitsByType.put(type, new UnitBitmap(unitCount));
         }
+        int unitIdx = 0;
+        for (int rowIdx = 0; rowIdx < rowStarts.length; rowIdx++) {
+            int spaces = this.layout.getSpaces(rowIdx);
+            rowStarts[rowIdx] = unitIdx;
+            freeUnits.set(unitIdx, unitIdx + spaces);
+            freeUnitsByType.get(this.layout.getType(rowIdx)).set(unitIdx, unitIdx + spaces);
+            unitIdx += spaces;
+        }
+        setUnitBasePrice(basePrice);
     }
 
     //---------------------------------------------------------------------
@@ -125,7 +221,7 @@ public class StorageLocation implements StorageLocationInterface  {
      * @return      the number of rows
      */
     public int getRowCount() {
-        return units.length;
+        return rowStarts.length;
     }
 
     /**
@@ -135,10 +231,10 @@ public class StorageLocation implements StorageLocationInterface  {
      * @return              the number of units in a row
      */
     public int getUnitsPerRowCount(int rowIdx) {
-        if (rowIdx < 0 || rowIdx >= units.length) {
+        if (rowIdx < 0 || rowIdx >= rowStarts.length) {
             throw new IllegalArgumentException("Index is out of bound.");
         }
-        return units[rowIdx].length;
+        return layout.getSpaces(rowIdx);
     }
 
     /**
@@ -149,10 +245,10 @@ public class StorageLocation implements StorageLocationInterface  {
      * @return              the requested unit
      */
     public StorageUnit getStorageUnit(int rowIdx, int spaceIdx) {
-        if (rowIdx < 0 || rowIdx >= units.length || spaceIdx < 0 || spaceIdx >= units[rowIdx].length) {
+        if (rowIdx < 0 || rowIdx >= rowStarts.length || spaceIdx < 0 || spaceIdx >= layout.getSpaces(rowIdx)) {
             throw new IllegalArgumentException("Index is out of bound.");
         }
-        return units[rowIdx][spaceIdx];
+        return unitAt(rowStarts[rowIdx] + spaceIdx);
     }
 
     /**
@@ -181,17 +277,108 @@ public class StorageLocation implements StorageLocationInterface  {
     //          OTHER METHODS
     //---------------------------------------------------------------------
     /**
-     * Adds a customer to the customer array
+     * Retrieves the ID of a customer at this location. IDs are the indexes used by
+     * getCustomer and never change once assigned.
+     *
+     * @param   customer    the customer of interest
+     * @return              the customer's ID, or -1 if the customer was never added here
+     */
+    public int getCustomerId(Customer customer) {
+        Integer custIdx = customerIds.get(customer);
+        return custIdx == null ? -1 : custIdx;
+    }
+
+    /**
+     * Finds a customer by phone number. Only the digits of the number are compared,
+     * so "425-555-1314" and "(425) 555 1314" find the same customer.
+     *
+     * @param   phone       the phone number to look up
+     * @return              the customer with the lowest ID having that number, or null if there is none
+     */
+    public Customer findCustomerByPhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        Customer[] found = customersByPhone.get(Customer.phoneDigits(phone));
+        return found == null ? null : found[0];
+    }
+
+    /**
+     * Finds every customer with a phone number. Only the digits of the number are
+     * compared.
+     *
+     * @param   phone       the phone number to look up
+     * @return              the customers with that number, in ID order; empty if there are none
+     */
+    public Customer[] findCustomersByPhone(String phone) {
+        if (phone == null) {
+            return new Customer[0];
+        }
+        Customer[] found = customersByPhone.get(Customer.phoneDigits(phone));
+        return found == null ? new Customer[0] : found.clone();
+    }
+
+    /**
+     * Finds customers whose name, or any word of it onward, starts with a prefix.
+     * Case and runs of spaces are ignored, so "perk" finds Pat Perkins and "pat p"
+     * finds Pat Perkins and Pat Parker.
+     *
+     * @param   prefix      the start of the name or of a later word; must not be null
+     * @param   limit       the most customers to return; must be over 0
+     * @return              the matching customers, ordered by the matching part of
+     *                      their names and then by ID, each listed once
+     */
+    public Customer[] findCustomersByName(String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must be non-null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be > 0");
+        }
+        String from = Customer.normalizedName(prefix);
+        Set<Customer> found = new LinkedHashSet<>();
+        for (Customer[] named : customersByName.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            for (Customer customer : named) {
+                found.add(customer);
+                if (found.size() == limit) {
+                    return found.toArray(new Customer[limit]);
+                }
+            }
+        }
+        return found.toArray(new Customer[found.size()]);
+    }
+
+    /**
+     * Adds a customer to the customer array, growing the array when it is full
      *
      * @param   customer    the customer to add; must not be null
-     * @return              the index at which the customer was added
+     * @return              the index at which the customer was added, which is also its ID
      */
-    public int addCustomer(Customer customer) {
+    public synchronized int addCustomer(Customer customer) {
         if (customer == null) {
             throw new IllegalArgumentException("Customer reference must not be null");
         }
-        customers[customerCount] = customer;
-        return customerCount++;
+        int custIdx = customerCount;
+        if (custIdx == customers.length) {
+            customers = Arrays.copyOf(customers, customers.length * 2);
+        }
+        customers[custIdx] = customer;
+        if (customerIds.putIfAbsent(customer, custIdx) == null) {
+            addToIndex(customersByPhone, Customer.phoneDigits(customer.getPhone()), customer);
+            addToNameIndex(customer, customer.getName());
+            receivables.opened(customer, custIdx);
+            customer.addLocation(this);
+            // units rented before the renter became a customer here are now billed to them
+            StorageUnit[] rented = unitsByCustomer.get(customer);
+            if (rented != null) {
+                for (StorageUnit unit : rented) {
+                    columns.renterJoined(unit.getUnitIdx(), custIdx);
+                }
+            }
+        }
+        // publishing the count last makes the customer visible to readers all at once
+        customerCount = custIdx + 1;
+        return custIdx;
     }
 
     /**
@@ -204,30 +391,10 @@ public class StorageLocation implements StorageLocationInterface  {
         if (customer == null) {
             return null;
         }
-
-        // Count the units
-        int unitCount = 0;
-        for (int rowIdx = 0; rowIdx < units.length; rowIdx++) {
-            for (int spaceIdx = 0; spaceIdx < units[rowIdx].length; spaceIdx++) {
-                if (units[rowIdx][spaceIdx].getCustomer() != null && units[rowIdx][spaceIdx].getCustomer() == customer) {
-                    unitCount++;
-                }
-            }
-        }
-
-        // Create the array
-        StorageUnit[] custUnits = new StorageUnit[unitCount];
-        if (unitCount > 0) {
-            // Fill the array
-            int unitIdx = 0;
-            for (int rowIdx = 0; rowIdx < units.length; rowIdx++) {
-                for (int spaceIdx = 0; spaceIdx < units[rowIdx].length; spaceIdx++) {
-                    if (units[rowIdx][spaceIdx].getCustomer() != null && units[rowIdx][spaceIdx].getCustomer() == customer) {
-                        custUnits[unitIdx] = units[rowIdx][spaceIdx];
-                        unitIdx++;
-                    }
-                }
-            }
+        StorageUnit[] rented = unitsByCustomer.get(customer);
+        StorageUnit[] custUnits = rented == null ? new StorageUnit[0] : rented.clone();
+        if (consistencyChecks && !sameUnits(custUnits, scanCustomerUnits(customer))) {
+            throw new IllegalStateException("Unit index is out of sync for customer " + customer.getName());
         }
         return custUnits;
     }
@@ -248,75 +415,562 @@ public class StorageLocation implements StorageLocationInterface  {
      * @return              an array of available storage units of the specified type
      */
     public StorageUnit[] getEmptyUnits(Class<? extends StorageUnit> soughtClass) {
-        // count the units
+        StorageUnit[] emptyUnits = getEmptyUnitsUnchecked(soughtClass);
+        if (consistencyChecks && !sameUnits(emptyUnits, scanEmptyUnits(soughtClass))) {
+            throw new IllegalStateException("Free unit index is out of sync");
+        }
+        return emptyUnits;
+    }
+
+    /**
+     * Counts all available storage units
+     *
+     * @return      the number of available storage units
+     */
+    public int countEmptyUnits() {
+        return countEmptyUnits(null);
+    }
+
+    /**
+     * Counts the available storage units of the specified type, without building an array of them
+     *
+     * @param   soughtClass     the type of units to count; pass null for wildcard (any type of unit)
+     * @return                  the number of available storage units of the specified type
+     */
+    public int countEmptyUnits(Class<? extends StorageUnit> soughtClass) {
         int unitCount = 0;
-        for (int rowIdx = 0; rowIdx < units.length; rowIdx++) {
-            for (int spaceIdx = 0; spaceIdx < units[rowIdx].length; spaceIdx++) {
-                if (soughtClass != null) {
-                    // looking for a specific type of unit
-                    if (units[rowIdx][spaceIdx].getClass() == soughtClass && units[rowIdx][spaceIdx].getCustomer() == null) {
-                        unitCount++;
-                    }
-                } else {
-                    // no type of unit sought
-                    if (units[rowIdx][spaceIdx].getCustomer() == null) {
-                        unitCount++;
-                    }
-                }
+        UnitType unitType = soughtClass == null ? null : UnitType.of(soughtClass);
+        if (soughtClass == null || unitType != null) {
+            unitCount = occupancy.getCapacity(unitType) - occupancy.getOccupied(unitType);
+        }
+        if (consistencyChecks && unitCount != scanEmptyUnits(soughtClass).length) {
+            throw new IllegalStateException("Free unit index is out of sync");
+        }
+        return unitCount;
+    }
+
+    /**
+     * Counts all rented storage units
+     *
+     * @return      the number of rented storage units
+     */
+    public int countOccupiedUnits() {
+        return countOccupiedUnits(null);
+    }
+
+    /**
+     * Counts the rented storage units of the specified type from a running count
+     *
+     * @param   soughtClass     the type of units to count; pass null for wildcard (any type of unit)
+     * @return                  the number of rented storage units of the specified type
+     */
+    public int countOccupiedUnits(Class<? extends StorageUnit> soughtClass) {
+        if (soughtClass == null) {
+            return occupancy.getOccupied(null);
+        }
+        UnitType unitType = UnitType.of(soughtClass);
+        return unitType == null ? 0 : occupancy.getOccupied(unitType);
+    }
+
+    /**
+     * Retrieves the number of customers renting more than one unit, from a running count
+     *
+     * @return      the number of multi-unit customers
+     */
+    public int getMultiUnitCustomerCount() {
+        return occupancy.getMultiUnitCustomers();
+    }
+
+    /**
+     * Retrieves the monthly rent all current renters owe at current prices, from a
+     * running total. The total is kept in cents, from the base and specific price of
+     * each unit rounded to the cent, while billing adds up the exact prices and
+     * rounds only each renter's rent. So the projection can differ from what a bill
+     * run charges by up to a cent per rented unit, and a nickel more per renter of
+     * more than one unit.
+     *
+     * @return      the projected monthly revenue, in dollars
+     */
+    public double getProjectedMonthlyRevenue() {
+        return BalanceLedger.toDollars(occupancy.getTotals().getRevenueCents());
+    }
+
+    /**
+     * Retrieves the date of the latest monthly bill run
+     *
+     * @return      the latest billing date, or null if rent was never charged here
+     */
+    public LocalDate getLastBillingDate() {
+        long day = receivables.getLastBillingDay();
+        return day == Receivables.NOT_BILLED ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Finds the customers who owe the most, from balances kept in order as they are
+     * charged and credited
+     *
+     * @param   count       the most customers to return; must not be negative
+     * @return              the customers with a positive balance, largest first and then by ID
+     */
+    public Customer[] getTopDebtors(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        return receivables.getTopDebtors(count);
+    }
+
+    /**
+     * Finds the customers who owe more than an amount, from balances kept in order as
+     * they are charged and credited
+     *
+     * @param   amount      the amount in dollars, rounded to the cent; must not be negative
+     * @return              the customers, largest balance first and then by ID
+     */
+    public Customer[] getCustomersOwingOver(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amounts must be non-negative");
+        }
+        return receivables.getDebtorsOver(BalanceLedger.toCents(amount));
+    }
+
+    /**
+     * Counts the customers who owe money by how long they have owed it: the days from
+     * the billing date of their oldest unpaid charge. Credits pay off the oldest
+     * charges first. Charges not billed yet count as current.
+     *
+     * @param   asOf        the day the ages are measured on; must not be null
+     * @return              the number of debtors 0-30, 30-60 and 60 or more days past due
+     */
+    public int[] countDebtorsByAge(LocalDate asOf) {
+        if (asOf == null) {
+            throw new IllegalArgumentException("Date must be non-null");
+        }
+        return receivables.countDebtorsByAge(asOf.toEpochDay(), AGING_BUCKET_DAYS, AGING_BUCKETS);
+    }
+
+    /**
+     * Finds the first available storage unit of the specified type, in grid order
+     *
+     * @param   soughtClass     the type of unit sought; pass null for wildcard (any type of unit)
+     * @return                  the first available unit of that type, or null if none is available
+     */
+    public StorageUnit findEmptyUnit(Class<? extends StorageUnit> soughtClass) {
+        int bit = freeUnitsOf(soughtClass).nextSetBit(0);
+        return bit < 0 ? null : unitAt(bit);
+    }
+
+    /**
+     * Rents several units to one customer, all or nothing: either every unit is rented
+     * or none is. The indexes, counters and journal are updated once for the whole
+     * batch, and its journal records reach the disk together. A unit claimed by a batch
+     * that then fails may look rented to other threads for a moment.
+     *
+     * @param   customer        the customer renting the units; must not be null
+     * @param   rentalStart     the first day of the rentals; must not be null
+     * @param   batch           the units to rent; each must be a unit of this location,
+     *                          listed once
+     * @return                  true, if every unit was rented; false, if any of them was
+     *                          not available, in which case none was rented
+     */
+    public boolean rentUnits(Customer customer, LocalDate rentalStart, StorageUnit... batch) {
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer reference must not be null");
+        }
+        if (rentalStart == null) {
+            throw new IllegalArgumentException("rentalStart must not be null");
+        }
+        long epochDay = rentalStart.toEpochDay();
+        if (epochDay < Integer.MIN_VALUE || epochDay > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("rentalStart is out of range");
+        }
+        checkBatch(batch);
+        if (batch.length == 0) {
+            return true;
+        }
+        int startDay = (int) epochDay;
+        StorageUnit.Rental[] claims = new StorageUnit.Rental[batch.length];
+        int waits = 0;
+        while (true) {
+            int claimed = 0;
+            while (claimed < batch.length && (claims[claimed] = batch[claimed].tryClaim(customer, startDay)) != null) {
+                claimed++;
+            }
+            if (claimed == batch.length) {
+                break;
+            }
+            // never wait while holding claims; another batch may be waiting on them
+            boolean busy = batch[claimed].isBeingReleased();
+            for (int i = 0; i < claimed; i++) {
+                batch[i].unclaim(claims[i]);
+            }
+            if (!busy) {
+                return false;
+            }
+            waits = StorageUnit.waitForRecording(waits);
+        }
+        try {
+            unitsRented(batch, customer, startDay);
+        } finally {
+            for (StorageUnit.Rental claim : claims) {
+                claim.settled = true;
             }
         }
+        return true;
+    }
 
-        // create the array
-        StorageUnit[] emptyUnits = new StorageUnit[unitCount];
-
-        if (unitCount > 0) {
-            int unitIdx = 0;
-            for (int rowIdx = 0; rowIdx < units.length; rowIdx++) {
-                for (int spaceIdx = 0; spaceIdx < units[rowIdx].length; spaceIdx++) {
-                    if (soughtClass != null) {
-                        // looking for a specific type of unit
-                        if (units[rowIdx][spaceIdx].getClass() == soughtClass && units[rowIdx][spaceIdx].getCustomer() == null) {
-                            emptyUnits[unitIdx] = units[rowIdx][spaceIdx];
-                            unitIdx++;
-                        }
-                    } else {
-                        // no type of unit sought
-                        if (units[rowIdx][spaceIdx].getCustomer() == null) {
-                            emptyUnits[unitIdx] = units[rowIdx][spaceIdx];
-                            unitIdx++;
-                        }
-                    }
-                }
+    /**
+     * Releases several units as of today, all or nothing: either every unit is released
+     * or none is. The indexes, counters and journal are updated once for the whole
+     * batch, and its journal records reach the disk together.
+     *
+     * @param   batch       the units to release; each must be a unit of this location,
+     *                      listed once
+     * @return              true, if every unit was released; false, if any of them was
+     *                      not rented, in which case none was released
+     */
+    public boolean releaseUnits(StorageUnit... batch) {
+        return releaseUnits(null, batch);
+    }
+
+    /**
+     * Releases several units, all or nothing, ending their rentals on a given day. See
+     * StorageUnit.release(LocalDate) for how the end day is worked out.
+     *
+     * @param   rentalEnd   the day the units are free again; must not be before any of
+     *                      their rental starts; pass null for today
+     * @param   batch       the units to release; each must be a unit of this location,
+     *                      listed once
+     * @return              true, if every unit was released; false, if any of them was
+     *                      not rented, in which case none was released
+     */
+    public boolean releaseUnits(LocalDate rentalEnd, StorageUnit... batch) {
+        checkBatch(batch);
+        if (batch.length == 0) {
+            return true;
+        }
+        StorageUnit.Rental[] ended = new StorageUnit.Rental[batch.length];
+        int waits = 0;
+        while (true) {
+            int begun = 0;
+            while (begun < batch.length && (ended[begun] = batch[begun].tryBeginRelease()) != null) {
+                begun++;
+            }
+            if (begun == batch.length) {
+                break;
+            }
+            boolean busy = batch[begun].isBeingRented();
+            for (int i = 0; i < begun; i++) {
+                batch[i].cancelRelease(ended[i]);
+            }
+            if (!busy) {
+                return false;
+            }
+            waits = StorageUnit.waitForRecording(waits);
+        }
+        int[] endDays = new int[batch.length];
+        try {
+            for (int i = 0; i < batch.length; i++) {
+                endDays[i] = StorageUnit.endDay(ended[i], rentalEnd);
+            }
+        } catch (IllegalArgumentException e) {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i].cancelRelease(ended[i]);
+            }
+            throw e;
+        }
+        try {
+            unitsReleased(batch, ended, endDays);
+        } finally {
+            for (StorageUnit unit : batch) {
+                unit.finishRelease();
             }
         }
+        return true;
+    }
 
-        // return the array
-        return emptyUnits;
+    /**
+     * Finds the best available unit for a request: the cheapest or the tightest fitting
+     * unit of the requested type that is at least as large as asked and, for a request
+     * with a climate band, whose level lies within the band. Ties go to the unit
+     * earliest in grid order. The unit is not rented; another thread may rent it first.
+     *
+     * @param   request     what the customer asks for; must not be null
+     * @return              the best available unit, or null if none meets the request
+     */
+    public StorageUnit allocate(UnitRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request must be non-null");
+        }
+        int unitIdx = fitIndex.find(request, freeUnits);
+        StorageUnit unit = unitIdx < 0 ? null : unitAt(unitIdx);
+        if (consistencyChecks && unit != scanAllocate(request)) {
+            throw new IllegalStateException("Unit fit index is out of sync");
+        }
+        return unit;
+    }
+
+    /**
+     * Finds the units whose current rental started within a range of dates
+     *
+     * @param   from        the first start date of interest; must not be null
+     * @param   to          the last start date of interest; must not be null or before from
+     * @return              the units, ordered by rental start and then grid position
+     */
+    public StorageUnit[] getUnitsRentedBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates must be non-null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The range must not end before it starts");
+        }
+        StorageUnit[] found = toUnits(rentalsByStart.subSet(firstKey(from.toEpochDay()), true,
+            lastKey(to.toEpochDay()), true));
+        if (consistencyChecks && !Arrays.equals(found, scanUnitsRentedBetween(from.toEpochDay(), to.toEpochDay()))) {
+            throw new IllegalStateException("Rental date index is out of sync");
+        }
+        return found;
+    }
+
+    /**
+     * Counts the units whose current rental started within a range of dates
+     *
+     * @param   from        the first start date of interest; must not be null
+     * @param   to          the last start date of interest; must not be null or before from
+     * @return              the number of units
+     */
+    public int countUnitsRentedBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates must be non-null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The range must not end before it starts");
+        }
+        return rentalsByStart.subSet(firstKey(from.toEpochDay()), true, lastKey(to.toEpochDay()), true).size();
+    }
+
+    /**
+     * Finds the units that have been rented to their current customer for more than a
+     * number of days
+     *
+     * @param   days        the tenure to exceed, in days; must not be negative
+     * @param   asOf        the day the tenure is measured on; must not be null
+     * @return              the units, ordered by rental start and then grid position
+     */
+    public StorageUnit[] getUnitsWithTenureOver(int days, LocalDate asOf) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Days must not be negative");
+        }
+        if (asOf == null) {
+            throw new IllegalArgumentException("Date must be non-null");
+        }
+        long lastStart = asOf.toEpochDay() - days - 1;
+        StorageUnit[] found = toUnits(rentalsByStart.headSet(lastKey(lastStart), true));
+        if (consistencyChecks && !Arrays.equals(found, scanUnitsRentedBetween(Long.MIN_VALUE, lastStart))) {
+            throw new IllegalStateException("Rental date index is out of sync");
+        }
+        return found;
+    }
+
+    /**
+     * Counts the units that were rented on a day, from the rental history: those whose
+     * rental had started by the day and was not released by it. Rentals started for
+     * later days count from their start day.
+     *
+     * @param   date        the day; must not be null
+     * @return              the number of units rented on that day
+     */
+    public int countOccupiedUnitsAsOf(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date must be non-null");
+        }
+        return history.countRentedOn(date.toEpochDay());
     }
 
     /**
-     * Charges all customers their monthly rent
+     * Finds who rented a unit during a period, from the rental history
+     *
+     * @param   unit        a unit of this location; must not be null
+     * @param   from        the first day of the period; must not be null
+     * @param   to          the last day of the period; must not be null or before from
+     * @return              the rentals that covered at least one day of the period, in
+     *                      start order; the current rental, if any, comes last
+     */
+    public RentalInterval[] getRentalHistory(StorageUnit unit, LocalDate from, LocalDate to) {
+        if (unit == null || unit.getStorageLocation() != this || unit.getUnitIdx() < 0) {
+            throw new IllegalArgumentException("Unit must be a unit of this location");
+        }
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates must be non-null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The range must not end before it starts");
+        }
+        List<RentalInterval> found = history.findEnded(unit, from.toEpochDay(), to.toEpochDay());
+        StorageUnit.Rental current = unit.getRental();
+        if (current != null && current.startDay <= to.toEpochDay()) {
+            found.add(new RentalInterval(unit, current.customer, current.startDay, Integer.MAX_VALUE));
+        }
+        return found.toArray(new RentalInterval[found.size()]);
+    }
+
+    /**
+     * Works out what every unit would cost per month at a given base price, rented or
+     * not, without changing the location. Meant for what-if repricing.
+     *
+     * @param   basePrice   the base price to try; must not be negative
+     * @return              each unit's monthly price, indexed by row-major position
+     */
+    public double[] calcUnitPrices(double basePrice) {
+        if (basePrice < 0) {
+            throw new IllegalArgumentException("Price cannot be negative.");
+        }
+        double[] prices = new double[columns.size()];
+        columns.calcUnitSpecificPrices(columns.getPrices(), prices);
+        for (int unitIdx = 0; unitIdx < prices.length; unitIdx++) {
+            prices[unitIdx] = basePrice + prices[unitIdx];
+        }
+        return prices;
+    }
+
+    /**
+     * Charges all customers their monthly rent, billed as of today, or as of the last
+     * billing date if that is later, say after the clock was set back
      *
      * @return      the total amount of rent charged to all customers
      */
     public double chargeMonthlyRent() {
+        LocalDate billingDate = LocalDate.now();
+        LocalDate lastBillingDate = getLastBillingDate();
+        if (lastBillingDate != null && lastBillingDate.isAfter(billingDate)) {
+            billingDate = lastBillingDate;
+        }
+        return chargeMonthlyRent(billingDate);
+    }
+
+    /**
+     * Charges all customers their monthly rent. The rent, and anything else charged
+     * since the previous bill run, is dated with the billing date for the receivables
+     * aging.
+     *
+     * @param   billingDate the date of this bill run; must not be null or before the
+     *                      previous billing date
+     * @return              the total amount of rent charged to all customers
+     */
+    public double chargeMonthlyRent(LocalDate billingDate) {
+        return billMonthlyRent(billingDate, null);
+    }
+
+    /**
+     * Charges all customers their monthly rent, splitting the run across a fork-join
+     * pool. Every customer is charged exactly once, and the amounts and the total are
+     * exactly those of a run on one thread, however many threads the pool has.
+     *
+     * @param   billingDate the date of this bill run; must not be null or before the
+     *                      previous billing date
+     * @param   pool        the pool to run on; must be non-null
+     * @return              the total amount of rent charged to all customers
+     */
+    public double chargeMonthlyRent(LocalDate billingDate, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must be non-null");
+        }
+        return billMonthlyRent(billingDate, pool);
+    }
+
+    /**
+     * Charges all customers their monthly rent, on the calling thread or on a pool
+     *
+     * @param   billingDate the date of this bill run
+     * @param   pool        the pool to run on, or null to run on the calling thread
+     * @return              the total amount of rent charged to all customers
+     */
+    private double billMonthlyRent(LocalDate billingDate, ForkJoinPool pool) {
+        if (billingDate == null) {
+            throw new IllegalArgumentException("Date must be non-null");
+        }
+        LocalDate lastBillingDate = getLastBillingDate();
+        if (lastBillingDate != null && billingDate.isBefore(lastBillingDate)) {
+            throw new IllegalArgumentException("Billing date must not be before the last billing date");
+        }
+        int billedCount = customerCount;
+        Customer[] billed = customers;
+        double[] rentDue = calcMonthlyRent(billed, billedCount, pool);
+        if (consistencyChecks && !Arrays.equals(rentDue, calcMonthlyRentByScan())) {
+            throw new IllegalStateException("Monthly rent differs from the per-customer scan");
+        }
+        // one journal sync for the whole run rather than one per customer
+        RentBilling.charge(billed, rentDue, pool);
         double totalRentCharged = 0.00;
-        for( int idxCust = 0; idxCust < customerCount; idxCust++) {
-            StorageUnit [] storCustUnits = getCustomerUnits(customers[idxCust]);
-            Double unitsRent = 0.0;
-            for(int i = 0; i < storCustUnits.length; i++){
+        for (int idxCust = 0; idxCust < rentDue.length; idxCust++) {
+            totalRentCharged += rentDue[idxCust];
+        }
+        receivables.billed(billingDate.toEpochDay());
+        StorageJournal current = journal;
+        if (current != null) {
+            // after the charges, so replay dates them with this bill run
+            current.append(StorageJournal.BILL, -1, -1, (int) billingDate.toEpochDay(), 0);
+            current.sync();
+        }
+        return totalRentCharged;
+    }
+
+    /**
+     * Works out every customer's monthly rent in a single pass over the unit columns,
+     * without charging anyone or touching a unit object. Each customer's unit prices
+     * are added up in grid order, so the sums come out exactly as a per-customer
+     * search would produce them.
+     *
+     * @return      the rent due from each customer, indexed like the customer array
+     */
+    double[] calcMonthlyRent() {
+        return calcMonthlyRent(customers, customerCount, null);
+    }
+
+    /**
+     * Works out every customer's monthly rent from the unit columns, on the calling
+     * thread or split across a pool by rows. The rents are the same either way.
+     *
+     * @param   billed      the customers
+     * @param   billedCount the number of customers to bill, from the start of the array
+     * @param   pool        the pool to run on, or null to run on the calling thread
+     * @return              the rent due from each customer, indexed like the customer array
+     */
+    double[] calcMonthlyRent(Customer[] billed, int billedCount, ForkJoinPool pool) {
+        int[] slots = new int[billedCount];
+        for (int idxCust = 0; idxCust < billedCount; idxCust++) {
+            // a customer added twice is billed under its first ID for both entries
+            slots[idxCust] = customerIds.get(billed[idxCust]);
+        }
+        // one table for the whole run, so a price change mid-run cannot mix two sets of prices
+        RentBilling run = new RentBilling(columns, columns.getPrices(), basePrice, rowStarts);
+        return run.calcRentDue(slots, pool);
+    }
+
+    /**
+     * Works out every customer's monthly rent by searching the grid once per customer.
+     * This is the original billing algorithm, kept as a reference for consistency
+     * checks and benchmarks.
+     *
+     * @return      the rent due from each customer, indexed like the customer array
+     */
+    double[] calcMonthlyRentByScan() {
+        int billedCount = customerCount;
+        Customer[] billed = customers;
+        double[] rentDue = new double[billedCount];
+        for (int idxCust = 0; idxCust < billedCount; idxCust++) {
+            StorageUnit[] storCustUnits = scanCustomerUnits(billed[idxCust]);
+            double unitsRent = 0.0;
+            for (int i = 0; i < storCustUnits.length; i++) {
                 unitsRent += storCustUnits[i].getPrice();
             }
             if (storCustUnits.length > 1) {
-                unitsRent = unitsRent - (unitsRent * getMultiUnitDiscount());
-                unitsRent = Math.round(unitsRent * 20) / 20.0;
+                unitsRent = applyMultiUnitDiscount(unitsRent, getMultiUnitDiscount());
             }
-            getCustomer(idxCust).charge(unitsRent);
-            totalRentCharged += unitsRent;
+            rentDue[idxCust] = unitsRent;
         }
-        return totalRentCharged;
+        return rentDue;
     }
-    
+
     /**
      * Retrieves    base unit storage price per month
      *
@@ -336,84 +990,1224 @@ public class StorageLocation implements StorageLocationInterface  {
             throw new IllegalArgumentException("Price cannot be negative.");
         }
         this.basePrice = basePrice;
+        // stamp after storing the price; see StorageUnit.getPrice
+        priceStamp.incrementAndGet();
+        occupancy.basePriceChanged(basePrice);
     }
-    
+
     /**
-     * Shows table of rented and not rented units, with symbols for Standart{"S"), 
-     * Humidity("H"), Temperature("T"). 
+     * Retrieves the number of unit prices served from the units' price caches
+     *
+     * @return      the number of cache hits
+     */
+    public long getPriceCacheHits() {
+        return priceCacheHits.sum();
+    }
+
+    /**
+     * Retrieves the number of unit prices that had to be worked out
+     *
+     * @return      the number of cache misses
+     */
+    public long getPriceCacheMisses() {
+        return priceCacheMisses.sum();
+    }
+
+    /**
+     * Retrieves the share of unit prices served from the units' price caches
+     *
+     * @return      the hit rate between 0 and 1, or 0 if no price was asked for yet
+     */
+    public double getPriceCacheHitRate() {
+        long hits = priceCacheHits.sum();
+        long total = hits + priceCacheMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    /**
+     * Shows table of rented and not rented units, with symbols for Standart{"S"), 
+     * Humidity("H"), Temperature("T"). 
      *
      * @return      changed base unit storage price per month
      */
     public String unitMap() {
-        String str = "";
-        //creating the header with title of the table
-        for (int i = 0; i < SCREEN_WIDTH; i++) {
-            str += "-";
+        StringBuilder str = new StringBuilder(SCREEN_WIDTH * 4 + rowStarts.length * 8 + units.length() * 5);
+        try {
+            renderUnitMap(str, 0, rowStarts.length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Appending to a StringBuilder failed", e);
         }
-        str += "\n";
-        String title = "Unit Map for Location " + locationDesignation;
-        int lenOfTitle = title.length();
-        //make title be presented centered in the header
-        int space = (SCREEN_WIDTH - lenOfTitle) / 2;
-        for (int i = 0; i < space; i++){
-            str += " ";
+        return str.toString();
+    }
+
+    /**
+     * Writes the unit map straight to a destination, without building it as a String first
+     *
+     * @param   out     where to write the map
+     * @throws  IOException     if the destination cannot be written
+     */
+    public void renderUnitMap(Appendable out) throws IOException {
+        renderUnitMap(out, 0, rowStarts.length);
+    }
+
+    /**
+     * Writes one page of the unit map: the header followed by a range of rows. Pages
+     * of a large location can be written one at a time as they are needed.
+     *
+     * @param   out     where to write the map
+     * @param   fromRow the first row to write
+     * @param   toRow   the row after the last one to write
+     * @throws  IOException     if the destination cannot be written
+     */
+    public void renderUnitMap(Appendable out, int fromRow, int toRow) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("Destination must be non-null");
         }
-        str += title + "\n";
-        for (int i = 0; i < SCREEN_WIDTH; i++) {
-            str += "-";
+        if (fromRow < 0 || toRow > rowStarts.length || fromRow > toRow) {
+            throw new IllegalArgumentException("Index is out of bound.");
+        }
+        //creating the header with title of the table
+        appendRepeated(out, '-', SCREEN_WIDTH);
+        out.append('\n');
+        int lenOfTitle = "Unit Map for Location ".length() + locationDesignation.length();
+        //make title be presented centered in the header
+        appendRepeated(out, ' ', (SCREEN_WIDTH - lenOfTitle) / 2);
+        out.append("Unit Map for Location ").append(locationDesignation).append('\n');
+        appendRepeated(out, '-', SCREEN_WIDTH);
+        out.append("\n\n     ");
+        int widestRow = 0;
+        for (int idxRow = 0; idxRow < rowStarts.length; idxRow++) {
+            widestRow = Math.max(widestRow, layout.getSpaces(idxRow));
         }
-        str += "\n\n     ";
-        for (int i = 0; i < SPACES_IN_STD_ROW; i++){
-            str += i + "    ";
+        for (int i = 0; i < widestRow; i++){
+            appendNumber(out, i);
+            out.append("    ");
         }
-        str += "\n\n";
+        out.append("\n\n");
         //creating the table for Standart{"S"), Humidity("H"), Temperature("T"). 
-        for (int idxRow = 0; idxRow < units.length; idxRow++) {
-            str += String.format("%02d:  ", idxRow);
-            String sign = "";
-            if (idxRow >= ROW_START_TMP) {
-                sign = "T";
-                for (int idxSpace = 0; idxSpace < units [idxRow].length; idxSpace++){
-                    if (units [idxRow][idxSpace].isRented()) {
-                        TempStorageUnit unit = (TempStorageUnit)units[idxRow][idxSpace];
-                        str += sign + unit.getTempLevel() + "  ";
-                    }else{
-                        str += sign + "__  ";
-                    }
+        for (int idxRow = fromRow; idxRow < toRow; idxRow++) {
+            if (idxRow < 10) {
+                out.append('0');
+            }
+            appendNumber(out, idxRow);
+            out.append(":  ");
+            UnitType type = layout.getType(idxRow);
+            char sign = type.getSymbol();
+            for (int idxSpace = 0; idxSpace < layout.getSpaces(idxRow); idxSpace++){
+                int unitIdx = rowStarts[idxRow] + idxSpace;
+                out.append(sign);
+                if (columns.getRenter(unitIdx) == UnitColumns.FREE) {
+                    out.append("__  ");
+                } else if (type != UnitType.STANDARD) {
+                    appendNumber(out, columns.getLevel(unitIdx));
+                    out.append("  ");
+                } else {
+                    out.append("*   ");
                 }
-                str += "\n";
-            } else if (idxRow >= ROW_START_HUM) {
-                sign = "H";
-                for (int idxSpace = 0; idxSpace < units [idxRow].length; idxSpace++){
-                    if (units [idxRow][idxSpace].isRented()) {
-                        HumidStorageUnit unit = (HumidStorageUnit)units[idxRow][idxSpace];
-                        str += sign + unit.getHumLevel() + "  ";
-                    }else{
-                        str += sign + "__  ";
-                    }
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Retrieves    the discount for multi-renters under the current pricing rules
+     *
+     * @return      the discount for multi-renters
+     */
+    public double getMultiUnitDiscount(){
+        return columns.getPrices().getMultiUnitDiscount();
+    }
+
+    /**
+     * Retrieves the rules the units are priced by
+     *
+     * @return      a copy of the pricing rules
+     */
+    public PricingRules getPricingRules() {
+        return columns.getPrices().getRules();
+    }
+
+    /**
+     * Changes the rules the units are priced by. The rules are compiled into a price
+     * table and swapped in whole: billing and price lookups already under way finish
+     * on the old prices, later ones see only the new prices, and no unit is locked.
+     *
+     * @param   rules   the new rules; must be non-null and have row premiums only for
+     *                  rows the location has
+     */
+    public void setPricingRules(PricingRules rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Pricing rules must be non-null");
+        }
+        PriceTable prices = new PriceTable(rules, layout);
+        occupancy.pricesChanged(prices);
+        // new rules may move row premiums, so the fit classes are regrouped, not just repriced
+        fitIndex.rulesChanged();
+        pricesChanged();
+    }
+
+    /**
+     * Turns verification of index lookups on or off. While on, every indexed lookup is
+     * compared against a full scan of the grid and an IllegalStateException is thrown
+     * on any difference. Meant for tests; it makes lookups as slow as a scan.
+     *
+     * @param   consistencyChecks   true to verify lookups, false to trust the indexes
+     */
+    public void setConsistencyChecks(boolean consistencyChecks) {
+        this.consistencyChecks = consistencyChecks;
+    }
+
+    /**
+     * Retrieves the bus that hands this location's rentals, releases, climate level
+     * changes and balance postings to subscribers
+     *
+     * @return      the event bus
+     */
+    public StorageEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Retrieves the journal this location records its changes in
+     *
+     * @return      the journal, or null if changes are not recorded
+     */
+    public StorageJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Starts recording rentals, releases and balance postings in a journal. To recover
+     * a location, replay its journal into it first and attach the journal afterwards.
+     *
+     * @param   journal     the journal, or null to stop recording
+     */
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Compares the customer-to-units index against a full scan of the grid
+     *
+     * @return      true, if every customer's indexed units match the units found by the scan
+     */
+    public boolean verifyOwnerIndex() {
+        Map<Customer, List<StorageUnit>> scanned = new HashMap<>();
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = units.get(unitIdx);
+            Customer owner = unit == null ? null : unit.getCustomer();
+            if (owner != null) {
+                scanned.computeIfAbsent(owner, c -> new ArrayList<>()).add(unit);
+            }
+        }
+        if (scanned.size() != unitsByCustomer.size()) {
+            return false;
+        }
+        for (Map.Entry<Customer, List<StorageUnit>> entry : scanned.entrySet()) {
+            StorageUnit[] indexed = unitsByCustomer.get(entry.getKey());
+            if (indexed == null || !sameUnits(indexed, entry.getValue().toArray(new StorageUnit[0]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the unit columns against the units themselves
+     *
+     * @return      true, if every unit's renter, rental start and level match its columns
+     */
+    public boolean verifyUnitColumns() {
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = units.get(unitIdx);
+            Customer owner = unit == null ? null : unit.getCustomer();
+            int renter = columns.getRenter(unitIdx);
+            if (owner == null) {
+                if (renter != UnitColumns.FREE) {
+                    return false;
                 }
-                str += "\n";
-            } else {
-                sign = "S";
-                for (int idxSpace = 0; idxSpace < units [idxRow].length; idxSpace++){
-                    if (units [idxRow][idxSpace].isRented()) {
-                        str += sign + "*   ";
-                    }else{
-                        str += sign + "__  ";
-                    }
+                continue;
+            }
+            Integer customerId = customerIds.get(owner);
+            if (renter != (customerId == null ? UnitColumns.OUTSIDER : customerId)
+                    || columns.getRentalStartDay(unitIdx) != unit.getRentalStart().toEpochDay()) {
+                return false;
+            }
+        }
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = units.get(unitIdx);
+            if (unit != null && levelOf(unit) != columns.getLevel(unitIdx)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the rental history against the rented units: every rental started and
+     * not yet ended must be a current rental. Only meaningful while no unit is changing.
+     *
+     * @return      true, if the history accounts for exactly the rented units
+     */
+    public boolean verifyRentalHistory() {
+        long[] rentals = history.countRentals();
+        return rentals[0] - rentals[1] == countOccupiedUnits()
+            && history.countRentedOn(Long.MAX_VALUE) == countOccupiedUnits();
+    }
+
+    /**
+     * Compares the rental date index against a full scan of the grid
+     *
+     * @return      true, if the index holds exactly the rented units, under their start dates
+     */
+    public boolean verifyRentalDateIndex() {
+        return Arrays.equals(toUnits(rentalsByStart), scanUnitsRentedBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /**
+     * Compares the occupancy and revenue counters against a recount of the owner index
+     * and the unit columns. Only meaningful while no unit is changing.
+     *
+     * @return      true, if the counters match the recount
+     */
+    public boolean verifyOccupancyCounters() {
+        OccupancyCounters.Totals totals = occupancy.getTotals();
+        int[] occupied = new int[UnitType.values().length];
+        for (int unitIdx = 0; unitIdx < columns.size(); unitIdx++) {
+            if (columns.getRenter(unitIdx) != UnitColumns.FREE) {
+                occupied[columns.getType(unitIdx).ordinal()]++;
+            }
+        }
+        for (UnitType unitType : UnitType.values()) {
+            if (occupied[unitType.ordinal()] != totals.getOccupied(unitType)) {
+                return false;
+            }
+        }
+        long baseCents = BalanceLedger.toCents(basePrice);
+        int multiUnitCustomers = 0;
+        long revenueCents = 0;
+        for (StorageUnit[] rented : unitsByCustomer.values()) {
+            long specificCents = 0;
+            for (StorageUnit unit : rented) {
+                specificCents += BalanceLedger.toCents(columns.calcUnitSpecificPrice(unit.getUnitIdx()));
+            }
+            if (rented.length > 1) {
+                multiUnitCustomers++;
+            }
+            revenueCents += OccupancyCounters.calcRentCents(rented.length, baseCents, specificCents,
+                getMultiUnitDiscount());
+        }
+        return multiUnitCustomers == totals.getMultiUnitCustomers() && revenueCents == totals.getRevenueCents();
+    }
+
+    /**
+     * Compares the receivables against the customers' balances. Only meaningful while
+     * no balance is changing.
+     *
+     * @return      true, if every account matches its customer's balance and the
+     *              debtor indexes match the accounts
+     */
+    public boolean verifyReceivables() {
+        return receivables.verify();
+    }
+
+    /**
+     * Compares the fit classes against the unit columns
+     *
+     * @return      true, if every unit is in the class of its type, size and level
+     */
+    public boolean verifyUnitFitIndex() {
+        return fitIndex.verify();
+    }
+
+    /**
+     * Compares the free-unit bitmaps against a full scan of the grid
+     *
+     * @return      true, if the bitmaps of the location and of every unit type match the scan
+     */
+    public boolean verifyFreeUnitIndex() {
+        if (!sameUnits(getEmptyUnitsUnchecked(null), scanEmptyUnits(null))) {
+            return false;
+        }
+        for (UnitType unitType : freeUnitsByType.keySet()) {
+            if (!sameUnits(getEmptyUnitsUnchecked(unitType.getUnitClass()), scanEmptyUnits(unitType.getUnitClass()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //---------------------------------------------------------------------
+    //          INDEX MAINTENANCE
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the current price stamp, which moves on whenever all unit prices change
+     *
+     * @return      the price stamp
+     */
+    long getPriceStamp() {
+        return priceStamp.get();
+    }
+
+    /**
+     * Works out a placed unit's specific price from the current price table
+     *
+     * @param   unit    the unit; must be placed in this location's grid
+     * @return          the unit's specific price
+     */
+    double calcUnitSpecificPrice(StorageUnit unit) {
+        return columns.calcUnitSpecificPrice(unit.getUnitIdx());
+    }
+
+    /**
+     * Catches up after the occupancy counters published a new price table: makes
+     * cached unit prices stale and reprices the fit classes
+     */
+    private void pricesChanged() {
+        // stamp after the table is published; see StorageUnit.getPrice
+        priceStamp.incrementAndGet();
+        fitIndex.pricesChanged();
+    }
+
+    /**
+     * Counts a unit price served from cache
+     */
+    void priceCacheHit() {
+        priceCacheHits.increment();
+    }
+
+    /**
+     * Counts a unit price that had to be worked out
+     */
+    void priceCacheMiss() {
+        priceCacheMisses.increment();
+    }
+
+    /**
+     * Records that a unit has just been rented. Called by the unit itself, which
+     * guarantees that calls for the same unit arrive in the order the changes happened.
+     *
+     * @param   unit        the unit that was rented
+     * @param   customer    the customer now renting the unit
+     * @param   startDay    the first day of the rental, as an epoch day
+     */
+    void unitRented(StorageUnit unit, Customer customer, int startDay) {
+        if (unit.getUnitIdx() < 0) {
+            return;
+        }
+        // each customer's units are replaced copy-on-write, so readers never need a lock
+        unitsByCustomer.compute(customer, (c, rented) -> withUnit(rented, unit));
+        freeUnits.clear(unit.getUnitIdx());
+        freeUnitsByType.get(layout.getType(unit.getRowIdx())).clear(unit.getUnitIdx());
+        Integer customerId = customerIds.get(customer);
+        columns.rented(unit.getUnitIdx(), customerId == null ? UnitColumns.OUTSIDER : customerId, startDay);
+        if (customerId == null) {
+            renterMayHaveJoined(customer, unit.getUnitIdx());
+        }
+        rentalsByStart.add(rentalKey(startDay, unit.getUnitIdx()));
+        history.started(startDay);
+        if (occupancy.rented(customer, unit.getUnitIdx())) {
+            pricesChanged();
+        }
+        record(StorageJournal.RENT, unit.getUnitIdx(), customer, startDay, 0, true);
+        publish(StorageEvent.Kind.RENTED, unit, customer, startDay);
+    }
+
+    /**
+     * Records that a unit has just been released. Called by the unit itself, which
+     * guarantees that calls for the same unit arrive in the order the changes happened.
+     *
+     * @param   unit        the unit that was released
+     * @param   ended       the rental the unit was released from
+     * @param   endDay      the day the unit is free again, as an epoch day
+     */
+    void unitReleased(StorageUnit unit, StorageUnit.Rental ended, int endDay) {
+        if (unit.getUnitIdx() < 0) {
+            return;
+        }
+        Customer formerCustomer = ended.customer;
+        unitsByCustomer.computeIfPresent(formerCustomer, (c, rented) -> withoutUnit(rented, unit));
+        rentalsByStart.remove(rentalKey(columns.getRentalStartDay(unit.getUnitIdx()), unit.getUnitIdx()));
+        history.ended(unit.getUnitIdx(), formerCustomer, ended.startDay, endDay);
+        columns.released(unit.getUnitIdx());
+        if (occupancy.released(unit.getUnitIdx())) {
+            pricesChanged();
+        }
+        freeUnits.set(unit.getUnitIdx());
+        freeUnitsByType.get(layout.getType(unit.getRowIdx())).set(unit.getUnitIdx());
+        record(StorageJournal.RELEASE, unit.getUnitIdx(), formerCustomer, endDay, 0, true);
+        publish(StorageEvent.Kind.RELEASED, unit, formerCustomer, endDay);
+    }
+
+    /**
+     * Records that a batch of units has just been rented to one customer. The caller
+     * holds an unsettled claim on every unit.
+     *
+     * @param   batch       the units that were rented
+     * @param   customer    the customer now renting the units
+     * @param   startDay    the first day of the rentals, as an epoch day
+     */
+    private void unitsRented(StorageUnit[] batch, Customer customer, int startDay) {
+        unitsByCustomer.compute(customer, (c, rented) -> withUnits(rented, batch));
+        Integer customerId = customerIds.get(customer);
+        int[] unitIdxs = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            StorageUnit unit = batch[i];
+            unitIdxs[i] = unit.getUnitIdx();
+            freeUnits.clear(unit.getUnitIdx());
+            freeUnitsByType.get(layout.getType(unit.getRowIdx())).clear(unit.getUnitIdx());
+            columns.rented(unit.getUnitIdx(), customerId == null ? UnitColumns.OUTSIDER : customerId, startDay);
+            rentalsByStart.add(rentalKey(startDay, unit.getUnitIdx()));
+            history.started(startDay);
+        }
+        if (customerId == null) {
+            renterMayHaveJoined(customer, unitIdxs);
+        }
+        if (occupancy.rented(customer, unitIdxs)) {
+            pricesChanged();
+        }
+        commitRecords(recordUnits(StorageJournal.RENT, unitIdxs, customer, startDay));
+        for (StorageUnit unit : batch) {
+            publish(StorageEvent.Kind.RENTED, unit, customer, startDay);
+        }
+    }
+
+    /**
+     * Bills units just rented to an outsider to the renter, if the renter became a
+     * customer meanwhile. addCustomer moves the renter's units from OUTSIDER to its ID,
+     * but it may have read the renter's units before their renter was written, and
+     * then found nothing to move. Both sides write before they read, so at least one
+     * of them sees the other.
+     *
+     * @param   customer    the renter
+     * @param   unitIdxs    the positions of the units, written as rented to OUTSIDER
+     */
+    private void renterMayHaveJoined(Customer customer, int... unitIdxs) {
+        Integer customerId = customerIds.get(customer);
+        if (customerId != null) {
+            for (int unitIdx : unitIdxs) {
+                columns.renterJoined(unitIdx, customerId);
+            }
+        }
+    }
+
+    /**
+     * Records that a batch of units has just been released. The caller has marked
+     * every unit as being released.
+     *
+     * @param   batch       the units that were released
+     * @param   ended       the rental each unit was released from, in the same order
+     * @param   endDays     the day each unit is free again as an epoch day, in the same order
+     */
+    private void unitsReleased(StorageUnit[] batch, StorageUnit.Rental[] ended, int[] endDays) {
+        Map<Customer, List<Integer>> byCustomer = new HashMap<>();
+        int[] unitIdxs = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            StorageUnit unit = batch[i];
+            unitIdxs[i] = unit.getUnitIdx();
+            byCustomer.computeIfAbsent(ended[i].customer, c -> new ArrayList<>()).add(i);
+            rentalsByStart.remove(rentalKey(columns.getRentalStartDay(unit.getUnitIdx()), unit.getUnitIdx()));
+            history.ended(unit.getUnitIdx(), ended[i].customer, ended[i].startDay, endDays[i]);
+            columns.released(unit.getUnitIdx());
+        }
+        if (occupancy.released(unitIdxs)) {
+            pricesChanged();
+        }
+        long sequence = -1;
+        for (Map.Entry<Customer, List<Integer>> entry : byCustomer.entrySet()) {
+            StorageUnit[] released = new StorageUnit[entry.getValue().size()];
+            // one journal call per end day; a batch ended on one day makes one call
+            Map<Integer, List<Integer>> byEndDay = new TreeMap<>();
+            for (int i = 0; i < released.length; i++) {
+                int batchIdx = entry.getValue().get(i);
+                released[i] = batch[batchIdx];
+                byEndDay.computeIfAbsent(endDays[batchIdx], day -> new ArrayList<>()).add(unitIdxs[batchIdx]);
+            }
+            unitsByCustomer.computeIfPresent(entry.getKey(), (c, rented) -> withoutUnits(rented, released));
+            for (Map.Entry<Integer, List<Integer>> endDay : byEndDay.entrySet()) {
+                int[] releasedIdxs = new int[endDay.getValue().size()];
+                for (int i = 0; i < releasedIdxs.length; i++) {
+                    releasedIdxs[i] = endDay.getValue().get(i);
                 }
-                str += "\n";
+                sequence = Math.max(sequence,
+                    recordUnits(StorageJournal.RELEASE, releasedIdxs, entry.getKey(), endDay.getKey()));
             }
         }
-        return str;
+        for (StorageUnit unit : batch) {
+            freeUnits.set(unit.getUnitIdx());
+            freeUnitsByType.get(layout.getType(unit.getRowIdx())).set(unit.getUnitIdx());
+        }
+        commitRecords(sequence);
+        for (int i = 0; i < batch.length; i++) {
+            publish(StorageEvent.Kind.RELEASED, batch[i], ended[i].customer, endDays[i]);
+        }
     }
 
     /**
-     * Retrieves    5-% discount for multi-renters 
+     * Records a unit's new climate level. Called by the unit itself.
      *
-     * @return      5-% discount for multi-renters
+     * @param   unit        the unit whose level changed
+     * @param   level       the new level
      */
-    public double getMultiUnitDiscount(){
-        return DISCOUNT;
+    void unitLevelChanged(StorageUnit unit, int level) {
+        if (unit.getUnitIdx() >= 0) {
+            columns.levelChanged(unit.getUnitIdx(), level);
+            occupancy.priceChanged(unit.getUnitIdx());
+            fitIndex.levelChanged(unit.getUnitIdx());
+            publish(StorageEvent.Kind.LEVEL_CHANGED, unit, null, level);
+        }
+    }
+
+    /**
+     * Records a charge or credit to a customer's balance. Called by the customer.
+     *
+     * @param   customer    the customer whose balance changed
+     * @param   kind        StorageJournal.CHARGE or StorageJournal.CREDIT
+     * @param   cents       the amount, in cents
+     * @param   commit      whether to wait for the record if the journal syncs each operation
+     */
+    void balancePosted(Customer customer, byte kind, long cents, boolean commit) {
+        if (cents != 0) {
+            postToReceivables(customer, kind, cents);
+            record(kind, -1, customer, 0, cents, commit);
+            publish(kind == StorageJournal.CHARGE ? StorageEvent.Kind.CHARGED : StorageEvent.Kind.CREDITED, null,
+                customer, cents);
+        }
+    }
+
+    /**
+     * Brings the receivables up to date with a charge or credit. Called for every
+     * posting, and by journal replay, which restores balances without posting them.
+     *
+     * @param   customer    the customer whose balance changed
+     * @param   kind        StorageJournal.CHARGE or StorageJournal.CREDIT
+     * @param   cents       the amount, in cents
+     */
+    void postToReceivables(Customer customer, byte kind, long cents) {
+        if (kind == StorageJournal.CHARGE) {
+            receivables.charged(customer, cents);
+        } else {
+            receivables.credited(customer, cents);
+        }
+    }
+
+    /**
+     * Dates every charge not billed yet with a billing date. Called by journal replay.
+     *
+     * @param   day     the billing date as an epoch day
+     */
+    void billed(long day) {
+        receivables.billed(day);
+    }
+
+    /**
+     * Appends a record to the journal, if one is attached. Events of customers that
+     * were never added to this location cannot be replayed and are not recorded.
+     *
+     * @param   kind        the record kind
+     * @param   unitIdx     the unit position, or -1
+     * @param   customer    the customer involved
+     * @param   epochDay    the rental start or end as an epoch day, or 0
+     * @param   cents       the amount in cents, or 0
+     * @param   commit      whether to wait for the record if the journal syncs each operation
+     */
+    private void record(byte kind, int unitIdx, Customer customer, int epochDay, long cents, boolean commit) {
+        StorageJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        Integer customerId = customerIds.get(customer);
+        if (customerId == null) {
+            return;
+        }
+        long sequence = current.append(kind, unitIdx, customerId, epochDay, cents);
+        if (commit) {
+            current.commit(sequence);
+        }
+    }
+
+    /**
+     * Hands an event to the event bus, if anyone is subscribed
+     *
+     * @param   kind        what happened
+     * @param   unit        the unit involved, or null
+     * @param   customer    the customer involved, or null
+     * @param   value       the start day, level or amount, depending on the kind
+     */
+    private void publish(StorageEvent.Kind kind, StorageUnit unit, Customer customer, long value) {
+        if (eventBus.hasSubscribers()) {
+            eventBus.publish(new StorageEvent(kind, this, unit, customer, value));
+        }
+    }
+
+    /**
+     * Appends one record per unit of a batch to the journal, if one is attached,
+     * without waiting for them
+     *
+     * @param   kind        StorageJournal.RENT or StorageJournal.RELEASE
+     * @param   unitIdxs    the unit positions
+     * @param   customer    the customer involved
+     * @param   epochDay    the rental start, or end for a release, as an epoch day
+     * @return              the sequence number of the last record, or -1 if none was appended
+     */
+    private long recordUnits(byte kind, int[] unitIdxs, Customer customer, int epochDay) {
+        StorageJournal current = journal;
+        if (current == null) {
+            return -1;
+        }
+        Integer customerId = customerIds.get(customer);
+        if (customerId == null) {
+            return -1;
+        }
+        return current.appendUnits(kind, unitIdxs, customerId, epochDay);
+    }
+
+    /**
+     * Waits for records appended by recordUnits if the journal syncs each operation
+     *
+     * @param   sequence    the sequence number of the last record, or -1
+     */
+    private void commitRecords(long sequence) {
+        StorageJournal current = journal;
+        if (current != null && sequence >= 0) {
+            current.commit(sequence);
+        }
+    }
+
+    /**
+     * Moves a customer to a new number in the phone index. Called by the customer
+     * when the phone number changes.
+     *
+     * @param   customer    the customer whose number changed
+     * @param   oldPhone    the customer's previous phone number
+     */
+    void customerPhoneChanged(Customer customer, String oldPhone) {
+        removeFromIndex(customersByPhone, Customer.phoneDigits(oldPhone), customer);
+        addToIndex(customersByPhone, Customer.phoneDigits(customer.getPhone()), customer);
+    }
+
+    /**
+     * Moves a customer to a new name in the name index. Called by the customer when
+     * the name changes.
+     *
+     * @param   customer    the customer whose name changed
+     * @param   oldName     the customer's previous name
+     */
+    void customerNameChanged(Customer customer, String oldName) {
+        for (String key : nameKeys(oldName)) {
+            removeFromIndex(customersByName, key, customer);
+        }
+        addToNameIndex(customer, customer.getName());
+    }
+
+    /**
+     * Adds a customer to the name index under the whole name and under the rest of
+     * the name from each later word on, so a search can start at any word
+     *
+     * @param   customer    the customer to add
+     * @param   name        the customer's name
+     */
+    private void addToNameIndex(Customer customer, String name) {
+        for (String key : nameKeys(name)) {
+            addToIndex(customersByName, key, customer);
+        }
+    }
+
+    /**
+     * Works out the name index keys of a name: the normalized name, and the rest of
+     * it from each later word on
+     *
+     * @param   name        the name
+     * @return              the keys, longest first
+     */
+    private static List<String> nameKeys(String name) {
+        String normalized = Customer.normalizedName(name);
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+        for (int pos = normalized.indexOf(' '); pos >= 0; pos = normalized.indexOf(' ', pos + 1)) {
+            keys.add(normalized.substring(pos + 1));
+        }
+        return keys;
+    }
+
+    /**
+     * Adds a customer to one key of a customer index, keeping customers with the same
+     * key in ID order
+     *
+     * @param   index       the index
+     * @param   key         the key
+     * @param   customer    the customer to add
+     */
+    private void addToIndex(Map<String, Customer[]> index, String key, Customer customer) {
+        int custIdx = customerIds.get(customer);
+        index.compute(key, (k, found) -> {
+            if (found == null) {
+                return new Customer[] {customer};
+            }
+            if (Arrays.asList(found).contains(customer)) {
+                return found;
+            }
+            int pos = found.length;
+            while (pos > 0 && customerIds.get(found[pos - 1]) > custIdx) {
+                pos--;
+            }
+            Customer[] more = new Customer[found.length + 1];
+            System.arraycopy(found, 0, more, 0, pos);
+            more[pos] = customer;
+            System.arraycopy(found, pos, more, pos + 1, found.length - pos);
+            return more;
+        });
+    }
+
+    /**
+     * Takes a customer out of one key of a customer index
+     *
+     * @param   index       the index
+     * @param   key         the key
+     * @param   customer    the customer to take out
+     */
+    private static void removeFromIndex(Map<String, Customer[]> index, String key, Customer customer) {
+        index.computeIfPresent(key, (k, found) -> {
+            int pos = Arrays.asList(found).indexOf(customer);
+            if (pos < 0) {
+                return found;
+            }
+            if (found.length == 1) {
+                return null;
+            }
+            Customer[] rest = new Customer[found.length - 1];
+            System.arraycopy(found, 0, rest, 0, pos);
+            System.arraycopy(found, pos + 1, rest, pos, rest.length - pos);
+            return rest;
+        });
+    }
+
+    /**
+     * Retrieves the free-unit bitmap for a unit type
+     *
+     * @param   soughtClass     the unit type, or null for all units
+     * @return                  the bitmap of free units; empty if no unit has exactly that type
+     */
+    private UnitBitmap freeUnitsOf(Class<? extends StorageUnit> soughtClass) {
+        if (soughtClass == null) {
+            return freeUnits;
+        }
+        UnitType unitType = UnitType.of(soughtClass);
+        return unitType == null ? new UnitBitmap(0) : freeUnitsByType.get(unitType);
+    }
+
+    /**
+     * Finds the row holding a row-major position
+     *
+     * @param   unitIdx     the position of the unit
+     * @return              the row on which the unit sits
+     */
+    private int rowOf(int unitIdx) {
+        int rowIdx = Arrays.binarySearch(rowStarts, unitIdx);
+        if (rowIdx < 0) {
+            rowIdx = -rowIdx - 2;
+        }
+        // rows without spaces share a start with the next row, so skip past them
+        while (rowIdx + 1 < rowStarts.length && rowStarts[rowIdx + 1] <= unitIdx) {
+            rowIdx++;
+        }
+        return rowIdx;
+    }
+
+    /**
+     * Retrieves the number of units in the grid
+     *
+     * @return      the number of units
+     */
+    int getUnitCount() {
+        return units.length();
+    }
+
+    /**
+     * Retrieves the rows this location was built from. The layout must not be changed.
+     *
+     * @return      the layout
+     */
+    StorageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Retrieves a unit by its row-major position if it has been created
+     *
+     * @param   unitIdx     the position of the unit
+     * @return              the unit, or null if it was never needed yet
+     */
+    StorageUnit getCreatedUnit(int unitIdx) {
+        return units.get(unitIdx);
+    }
+
+    /**
+     * Retrieves a unit by its row-major position, checking the position first
+     *
+     * @param   unitIdx     the position of the unit
+     * @return              the unit at that position
+     */
+    StorageUnit getUnitByIndex(int unitIdx) {
+        if (unitIdx < 0 || unitIdx >= units.length()) {
+            throw new IllegalArgumentException("Index is out of bound.");
+        }
+        return unitAt(unitIdx);
+    }
+
+    /**
+     * Retrieves a unit by its row-major position, creating it from the layout if this
+     * is the first time it is needed. When threads race to create the same unit, only
+     * one of the new units is kept and all of them get that one.
+     *
+     * @param   unitIdx     the position of the unit
+     * @return              the unit at that position
+     */
+    private StorageUnit unitAt(int unitIdx) {
+        StorageUnit unit = units.get(unitIdx);
+        if (unit == null) {
+            int rowIdx = rowOf(unitIdx);
+            unit = layout.getType(rowIdx).create(layout.getWidth(rowIdx), layout.getLength(rowIdx),
+                layout.getHeight(rowIdx), layout.getLevel(rowIdx), this);
+            unit.place(rowIdx, unitIdx - rowStarts[rowIdx], unitIdx);
+            if (!units.compareAndSet(unitIdx, null, unit)) {
+                unit = units.get(unitIdx);
+            }
+        }
+        return unit;
+    }
+
+    /**
+     * Builds the array of free units from the bitmaps without verifying it
+     *
+     * @param   soughtClass     the unit type, or null for all units
+     * @return                  the free units of that type, in grid order
+     */
+    private StorageUnit[] getEmptyUnitsUnchecked(Class<? extends StorageUnit> soughtClass) {
+        UnitBitmap free = freeUnitsOf(soughtClass);
+        List<StorageUnit> emptyUnits = new ArrayList<>(free.cardinality());
+        for (int bit = free.nextSetBit(0); bit >= 0; bit = free.nextSetBit(bit + 1)) {
+            emptyUnits.add(unitAt(bit));
+        }
+        return emptyUnits.toArray(new StorageUnit[emptyUnits.size()]);
+    }
+
+    /**
+     * Finds the free units of a type by scanning the whole grid
+     *
+     * @param   soughtClass     the unit type, or null for all units
+     * @return                  the free units of that type, in grid order
+     */
+    private StorageUnit[] scanEmptyUnits(Class<? extends StorageUnit> soughtClass) {
+        List<StorageUnit> found = new ArrayList<>();
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = unitAt(unitIdx);
+            if ((soughtClass == null || unit.getClass() == soughtClass) && unit.getCustomer() == null) {
+                found.add(unit);
+            }
+        }
+        return found.toArray(new StorageUnit[found.size()]);
+    }
+
+    /**
+     * Reads the climate level of a unit
+     *
+     * @param   unit    the unit
+     * @return          its level; 0 for standard units
+     */
+    private static int levelOf(StorageUnit unit) {
+        if (unit instanceof TempStorageUnit) {
+            return ((TempStorageUnit) unit).getTempLevel();
+        }
+        if (unit instanceof HumidStorageUnit) {
+            return ((HumidStorageUnit) unit).getHumLevel();
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the best available unit for a request by scanning the whole grid
+     *
+     * @param   request     what the customer asks for
+     * @return              the best available unit, or null if none meets the request
+     */
+    private StorageUnit scanAllocate(UnitRequest request) {
+        boolean cheapest = request.getFit() == UnitRequest.Fit.CHEAPEST;
+        StorageUnit best = null;
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = unitAt(unitIdx);
+            if (unit.getCustomer() != null || !request.accepts(UnitType.of(unit.getClass()), unit.getWidth(),
+                    unit.getLength(), unit.getHeight(), levelOf(unit))) {
+                continue;
+            }
+            if (best == null) {
+                best = unit;
+                continue;
+            }
+            int byPrice = Double.compare(unit.calcUnitSpecificPrice(), best.calcUnitSpecificPrice());
+            int byVolume = Long.compare((long) unit.getWidth() * unit.getLength() * unit.getHeight(),
+                (long) best.getWidth() * best.getLength() * best.getHeight());
+            if ((cheapest ? byPrice : byVolume) < 0
+                    || (cheapest ? byPrice : byVolume) == 0 && (cheapest ? byVolume : byPrice) < 0) {
+                best = unit;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the units whose current rental started within a range of epoch days by
+     * scanning the whole grid
+     *
+     * @param   fromDay     the first start day of interest
+     * @param   toDay       the last start day of interest
+     * @return              the units, ordered by rental start and then grid position
+     */
+    private StorageUnit[] scanUnitsRentedBetween(long fromDay, long toDay) {
+        List<StorageUnit> found = new ArrayList<>();
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = units.get(unitIdx);
+            LocalDate start = unit == null ? null : unit.getRentalStart();
+            if (start != null && start.toEpochDay() >= fromDay && start.toEpochDay() <= toDay) {
+                found.add(unit);
+            }
+        }
+        found.sort(Comparator.comparing(StorageUnit::getRentalStart));
+        return found.toArray(new StorageUnit[found.size()]);
+    }
+
+    /**
+     * Packs a rental start and unit position into one key, ordered by start and then
+     * by position
+     *
+     * @param   startDay    the rental start, as an epoch day
+     * @param   unitIdx     the unit position
+     * @return              the key
+     */
+    private static long rentalKey(int startDay, int unitIdx) {
+        return ((long) startDay << 32) | (unitIdx & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Works out the lowest key for a start day, which may lie outside the range of keys
+     *
+     * @param   startDay    the start day
+     * @return              the lowest key on or after that day
+     */
+    private static long firstKey(long startDay) {
+        if (startDay > Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return rentalKey((int) Math.max(startDay, Integer.MIN_VALUE), 0);
+    }
+
+    /**
+     * Works out the highest key for a start day, which may lie outside the range of keys
+     *
+     * @param   startDay    the start day
+     * @return              the highest key on or before that day
+     */
+    private static long lastKey(long startDay) {
+        if (startDay < Integer.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return rentalKey((int) Math.min(startDay, Integer.MAX_VALUE), -1);
+    }
+
+    /**
+     * Turns rental keys into their units
+     *
+     * @param   keys    the keys, in order
+     * @return          the units, in the same order
+     */
+    private StorageUnit[] toUnits(Collection<Long> keys) {
+        List<StorageUnit> found = new ArrayList<>();
+        for (long key : keys) {
+            found.add(unitAt((int) key));
+        }
+        return found.toArray(new StorageUnit[found.size()]);
+    }
+
+    /**
+     * Takes the multi-unit discount off a customer's rent and rounds it to the nearest nickel
+     *
+     * @param   unitsRent   the undiscounted rent for all of the customer's units
+     * @param   discount    the multi-unit discount
+     * @return              the discounted rent
+     */
+    static double applyMultiUnitDiscount(double unitsRent, double discount) {
+        unitsRent = unitsRent - (unitsRent * discount);
+        return Math.round(unitsRent * 20) / 20.0;
+    }
+
+    /**
+     * Finds the units rented by a customer by scanning the whole grid
+     *
+     * @param   customer    the customer whose units are of interest
+     * @return              the customer's units, in grid order
+     */
+    private StorageUnit[] scanCustomerUnits(Customer customer) {
+        List<StorageUnit> found = new ArrayList<>();
+        for (int unitIdx = 0; unitIdx < units.length(); unitIdx++) {
+            StorageUnit unit = units.get(unitIdx);
+            if (unit != null && unit.getCustomer() == customer) {
+                found.add(unit);
+            }
+        }
+        return found.toArray(new StorageUnit[found.size()]);
+    }
+
+    /**
+     * Copies a customer's units with one more unit added in grid order
+     *
+     * @param   rented      the customer's units in grid order, or null if there are none
+     * @param   unit        the unit to add
+     * @return              the new array of units
+     */
+    private static StorageUnit[] withUnit(StorageUnit[] rented, StorageUnit unit) {
+        if (rented == null) {
+            return new StorageUnit[] {unit};
+        }
+        int pos = rented.length;
+        while (pos > 0 && rented[pos - 1].getUnitIdx() > unit.getUnitIdx()) {
+            pos--;
+        }
+        StorageUnit[] more = new StorageUnit[rented.length + 1];
+        System.arraycopy(rented, 0, more, 0, pos);
+        more[pos] = unit;
+        System.arraycopy(rented, pos, more, pos + 1, rented.length - pos);
+        return more;
+    }
+
+    /**
+     * Copies a customer's units with one unit taken out
+     *
+     * @param   rented      the customer's units in grid order
+     * @param   unit        the unit to take out
+     * @return              the new array of units, or null if none are left
+     */
+    private static StorageUnit[] withoutUnit(StorageUnit[] rented, StorageUnit unit) {
+        int pos = Arrays.asList(rented).indexOf(unit);
+        if (pos < 0) {
+            return rented;
+        }
+        if (rented.length == 1) {
+            return null;
+        }
+        StorageUnit[] rest = new StorageUnit[rented.length - 1];
+        System.arraycopy(rented, 0, rest, 0, pos);
+        System.arraycopy(rented, pos + 1, rest, pos, rest.length - pos);
+        return rest;
+    }
+
+    /**
+     * Copies a customer's units with a batch of units added in grid order
+     *
+     * @param   rented      the customer's units in grid order, or null if there are none
+     * @param   batch       the units to add
+     * @return              the new array of units
+     */
+    private static StorageUnit[] withUnits(StorageUnit[] rented, StorageUnit[] batch) {
+        int held = rented == null ? 0 : rented.length;
+        StorageUnit[] more = new StorageUnit[held + batch.length];
+        if (rented != null) {
+            System.arraycopy(rented, 0, more, 0, held);
+        }
+        System.arraycopy(batch, 0, more, held, batch.length);
+        Arrays.sort(more, Comparator.comparingInt(StorageUnit::getUnitIdx));
+        return more;
+    }
+
+    /**
+     * Copies a customer's units with a batch of units taken out
+     *
+     * @param   rented      the customer's units in grid order
+     * @param   batch       the units to take out
+     * @return              the new array of units, or null if none are left
+     */
+    private static StorageUnit[] withoutUnits(StorageUnit[] rented, StorageUnit[] batch) {
+        Set<StorageUnit> taken = new HashSet<>(Arrays.asList(batch));
+        List<StorageUnit> rest = new ArrayList<>(rented.length);
+        for (StorageUnit unit : rented) {
+            if (!taken.contains(unit)) {
+                rest.add(unit);
+            }
+        }
+        return rest.isEmpty() ? null : rest.toArray(new StorageUnit[rest.size()]);
+    }
+
+    /**
+     * Checks that a batch lists units of this location, each once
+     *
+     * @param   batch       the units of the batch
+     */
+    private void checkBatch(StorageUnit[] batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch must be non-null");
+        }
+        int[] unitIdxs = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            if (batch[i] == null || batch[i].getStorageLocation() != this || batch[i].getUnitIdx() < 0
+                    || unitAt(batch[i].getUnitIdx()) != batch[i]) {
+                throw new IllegalArgumentException("Every unit of a batch must be a unit of this location");
+            }
+            unitIdxs[i] = batch[i].getUnitIdx();
+        }
+        Arrays.sort(unitIdxs);
+        for (int i = 1; i < unitIdxs.length; i++) {
+            if (unitIdxs[i] == unitIdxs[i - 1]) {
+                throw new IllegalArgumentException("A batch must not list a unit twice");
+            }
+        }
+    }
+
+    /**
+     * Checks whether two unit arrays hold the same units in the same order
+     *
+     * @param   first       the first array
+     * @param   second      the second array
+     * @return              true, if both arrays hold the same units in the same order
+     */
+    private static boolean sameUnits(StorageUnit[] first, StorageUnit[] second) {
+        if (first.length != second.length) {
+            return false;
+        }
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] != second[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a character a number of times
+     *
+     * @param   out     where to write
+     * @param   c       the character
+     * @param   count   how many times to write it
+     * @throws  IOException     if the destination cannot be written
+     */
+    private static void appendRepeated(Appendable out, char c, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.append(c);
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a number without turning it into a String first
+     *
+     * @param   out     where to write
+     * @param   number  the number; must not be negative
+     * @throws  IOException     if the destination cannot be written
+     */
+    private static void appendNumber(Appendable out, int number) throws IOException {
+        int divisor = 1;
+        while (number / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + number / divisor % 10));
+        }
     }
-}
\ No newline at end of file
+}
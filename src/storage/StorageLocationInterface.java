@@ -1,5 +1,8 @@
 package storage;
 
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Requirements for the StorageLocation class
  *
@@ -18,8 +21,31 @@ public interface StorageLocationInterface {
     public StorageUnit[] getCustomerUnits(Customer customer);
     public StorageUnit[] getEmptyUnits();
     public StorageUnit[] getEmptyUnits(Class<? extends StorageUnit> soughtClass);
+    public int countEmptyUnits();
+    public int countEmptyUnits(Class<? extends StorageUnit> soughtClass);
+    public int countOccupiedUnits();
+    public int countOccupiedUnits(Class<? extends StorageUnit> soughtClass);
+    public int getMultiUnitCustomerCount();
+    public double getProjectedMonthlyRevenue();
+    public StorageUnit findEmptyUnit(Class<? extends StorageUnit> soughtClass);
+    public StorageUnit allocate(UnitRequest request);
+    public boolean rentUnits(Customer customer, LocalDate rentalStart, StorageUnit... batch);
+    public boolean releaseUnits(StorageUnit... batch);
+    public boolean releaseUnits(LocalDate rentalEnd, StorageUnit... batch);
+    public StorageUnit[] getUnitsRentedBetween(LocalDate from, LocalDate to);
+    public int countUnitsRentedBetween(LocalDate from, LocalDate to);
+    public StorageUnit[] getUnitsWithTenureOver(int days, LocalDate asOf);
+    public int countOccupiedUnitsAsOf(LocalDate date);
+    public RentalInterval[] getRentalHistory(StorageUnit unit, LocalDate from, LocalDate to);
     public double chargeMonthlyRent();
+    public double chargeMonthlyRent(LocalDate billingDate);
+    public double chargeMonthlyRent(LocalDate billingDate, ForkJoinPool pool);
+    public Customer[] getTopDebtors(int count);
+    public Customer[] getCustomersOwingOver(double amount);
+    public int[] countDebtorsByAge(LocalDate asOf);
     public double getUnitBasePrice();
     public double getMultiUnitDiscount();
+    public PricingRules getPricingRules();
+    public void setPricingRules(PricingRules rules);
 
 }
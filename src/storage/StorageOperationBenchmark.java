@@ -0,0 +1,240 @@
+package storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Throughput and allocation figures for every public operation of
+ * StorageLocationInterface and StorageUnitInterface, plus the unit map. The location
+ * is synthetic; its size and occupancy come from the command line:
+ * <pre>
+ *     java storage.StorageOperationBenchmark [layoutCopies] [occupancy] [customers]
+ * </pre>
+ * Each operation runs for a warm-up period and is then called repeatedly for a
+ * measurement period. Allocation is read from the JVM's per-thread allocation
+ * counter, the same counter a GC profiler reports.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class StorageOperationBenchmark {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** how long each operation runs before it is measured, in milliseconds */
+    public static final long WARMUP_MILLIS = 300;
+    /** how long each operation is measured, in milliseconds */
+    public static final long MEASURE_MILLIS = 700;
+    /** the number of customers signed up per call when timing addCustomer */
+    public static final int SIGN_UPS_PER_CALL = 1000;
+    /** the number of units moved in per call when timing batch rentals, as for a corporate account */
+    public static final int BATCH_SIZE = 50;
+
+    /** keeps results alive, so the JIT cannot drop the work that produced them */
+    private static volatile Object sink;
+    /** keeps primitive results alive without boxing them */
+    private static volatile long primitiveSink;
+
+    public static void main(String[] args) {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : StorageBenchmark.LAYOUT_COPIES;
+        double occupancy = args.length > 1 ? Double.parseDouble(args[1]) : StorageBenchmark.OCCUPANCY;
+        int customerCount = args.length > 2 ? Integer.parseInt(args[2]) : StorageBenchmark.CUSTOMERS;
+        if (copies <= 0 || occupancy < 0 || occupancy > 1 || customerCount <= 0) {
+            throw new IllegalArgumentException("Usage: StorageOperationBenchmark [layoutCopies > 0] [occupancy 0..1] [customers > 0]");
+        }
+
+        StorageLocation loc = StorageBenchmark.buildLocation(StorageBenchmark.repeatedLayout(copies), customerCount, occupancy);
+        int unitCount = loc.countEmptyUnits() + StorageBenchmark.countRented(loc);
+        System.out.printf("Location with %,d units, %,d customers, %,d rented%n",
+            unitCount, loc.getCustomerCount(), StorageBenchmark.countRented(loc));
+        System.out.printf("%-34s : %16s %14s %12s%n", "Operation", "ops/s", "bytes/op", "MB/s");
+
+        StorageUnit[] allUnits = new StorageUnit[unitCount];
+        int filled = 0;
+        for (int rowIdx = 0; rowIdx < loc.getRowCount(); rowIdx++) {
+            for (int spaceIdx = 0; spaceIdx < loc.getUnitsPerRowCount(rowIdx); spaceIdx++) {
+                allUnits[filled++] = loc.getStorageUnit(rowIdx, spaceIdx);
+            }
+        }
+        int[] next = new int[1];
+
+        // StorageLocationInterface
+        measure("getDesignation", 1, () -> sink = loc.getDesignation());
+        measure("getRowCount", 1, () -> consume(loc.getRowCount()));
+        measure("getUnitsPerRowCount", 1, () -> consume(loc.getUnitsPerRowCount(next[0]++ % loc.getRowCount())));
+        measure("getStorageUnit", 1, () -> {
+            int rowIdx = next[0]++ % loc.getRowCount();
+            sink = loc.getStorageUnit(rowIdx, rowIdx % loc.getUnitsPerRowCount(rowIdx));
+        });
+        measure("getCustomer", 1, () -> sink = loc.getCustomer(next[0]++ % loc.getCustomerCount()));
+        measure("getCustomerCount", 1, () -> consume(loc.getCustomerCount()));
+        measure("getCustomerUnits", 1, () -> sink = loc.getCustomerUnits(loc.getCustomer(next[0]++ % loc.getCustomerCount())));
+        measure("getEmptyUnits", 1, () -> sink = loc.getEmptyUnits());
+        measure("getEmptyUnits(Class)", 1, () -> sink = loc.getEmptyUnits(TempStorageUnit.class));
+        measure("countEmptyUnits", 1, () -> consume(loc.countEmptyUnits()));
+        measure("countEmptyUnits(Class)", 1, () -> consume(loc.countEmptyUnits(HumidStorageUnit.class)));
+        measure("findEmptyUnit(Class)", 1, () -> sink = loc.findEmptyUnit(StorageUnit.class));
+        measure("countOccupiedUnits(Class)", 1, () -> consume(loc.countOccupiedUnits(TempStorageUnit.class)));
+        measure("getMultiUnitCustomerCount", 1, () -> consume(loc.getMultiUnitCustomerCount()));
+        measure("getProjectedMonthlyRevenue", 1, () -> consume(loc.getProjectedMonthlyRevenue()));
+        UnitRequest request = new UnitRequest(null, 4, 8, 8, UnitRequest.Fit.CHEAPEST);
+        measure("allocate", 1, () -> sink = loc.allocate(request));
+        measure("chargeMonthlyRent", 1, () -> consume(loc.chargeMonthlyRent()));
+        measure("getUnitBasePrice", 1, () -> consume(loc.getUnitBasePrice()));
+        measure("getMultiUnitDiscount", 1, () -> consume(loc.getMultiUnitDiscount()));
+        measure("addCustomer", SIGN_UPS_PER_CALL, () -> {
+            StorageLocation fresh = new StorageLocation("WA23Issaquah", 100.0);
+            for (int idx = 0; idx < SIGN_UPS_PER_CALL; idx++) {
+                fresh.addCustomer(new Customer("Customer " + idx, "425-555-0100"));
+            }
+            sink = fresh;
+        });
+        measure("unitMap", 1, () -> sink = loc.unitMap());
+        measure("renderUnitMap", 1, () -> {
+            StringBuilder out = new StringBuilder(unitCount * 5 + 4096);
+            try {
+                loc.renderUnitMap(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sink = out;
+        });
+
+        // StorageUnitInterface
+        measure("getWidth", 1, () -> consume(allUnits[next[0]++ % unitCount].getWidth()));
+        measure("getLength", 1, () -> consume(allUnits[next[0]++ % unitCount].getLength()));
+        measure("getHeight", 1, () -> consume(allUnits[next[0]++ % unitCount].getHeight()));
+        measure("getPrice", 1, () -> consume(allUnits[next[0]++ % unitCount].getPrice()));
+        measure("getCustomer (unit)", 1, () -> sink = allUnits[next[0]++ % unitCount].getCustomer());
+        measure("isRented", 1, () -> consume(allUnits[next[0]++ % unitCount].isRented()));
+        measure("getRentalStart", 1, () -> sink = allUnits[next[0]++ % unitCount].getRentalStart());
+        measure("getStorageLocation", 1, () -> sink = allUnits[next[0]++ % unitCount].getStorageLocation());
+        measure("calcUnitSpecificPrice", 1, () -> consume(allUnits[next[0]++ % unitCount].calcUnitSpecificPrice()));
+        measure("toString (unit)", 1, () -> sink = allUnits[next[0]++ % unitCount].toString());
+        Customer renter = loc.getCustomer(0);
+        LocalDate start = LocalDate.of(2026, 10, 1);
+        measure("rent + release", 2, () -> {
+            StorageUnit unit = loc.findEmptyUnit(StorageUnit.class);
+            if (unit != null && unit.rent(renter, start)) {
+                unit.release();
+            }
+        });
+        StorageUnit[] block = Arrays.copyOf(loc.getEmptyUnits(), Math.min(BATCH_SIZE, loc.countEmptyUnits()));
+        measure("rent + release, one by one", 2 * block.length, () -> {
+            for (StorageUnit unit : block) {
+                unit.rent(renter, start);
+            }
+            for (StorageUnit unit : block) {
+                unit.release();
+            }
+        });
+        measure("rentUnits + releaseUnits", 2 * block.length, () -> {
+            if (loc.rentUnits(renter, start, block)) {
+                loc.releaseUnits(block);
+            }
+        });
+        StorageEventBus.Subscription subscription = loc.getEventBus().subscribe(events -> sink = events.get(0));
+        measure("rent + release, with a subscriber", 2 * block.length, () -> {
+            for (StorageUnit unit : block) {
+                unit.rent(renter, start);
+            }
+            for (StorageUnit unit : block) {
+                unit.release();
+            }
+        });
+        subscription.close();
+    }
+
+    /**
+     * Runs an operation for the warm-up period, then measures it and prints its
+     * throughput and allocation
+     *
+     * @param   label       the name to print
+     * @param   opsPerCall  the number of operations one call of the operation performs
+     * @param   operation   the operation to measure
+     */
+    static void measure(String label, int opsPerCall, Runnable operation) {
+        runFor(WARMUP_MILLIS, operation);
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long calls = runFor(MEASURE_MILLIS, operation);
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+        double ops = (double) calls * opsPerCall;
+        System.out.printf("%-34s : %,16.0f %,14.1f %,12.1f%n", label,
+            ops * 1e9 / elapsed, bytes / ops, bytes * 1e3 / elapsed);
+    }
+
+    /**
+     * Calls an operation over and over until a period has passed. The clock is read
+     * once per batch of calls, so it does not dominate fast operations; batches grow
+     * until one takes about a millisecond.
+     *
+     * @param   millis      the length of the period, in milliseconds
+     * @param   operation   the operation to call
+     * @return              the number of calls made
+     */
+    private static long runFor(long millis, Runnable operation) {
+        long now = System.nanoTime();
+        long deadline = now + millis * 1_000_000L;
+        long calls = 0;
+        int batch = 1;
+        while (now < deadline) {
+            for (int i = 0; i < batch; i++) {
+                operation.run();
+            }
+            calls += batch;
+            long batchStart = now;
+            now = System.nanoTime();
+            // grow the batch while a whole batch still takes under a millisecond
+            if (now - batchStart < 1_000_000L) {
+                batch *= 2;
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * Reads the number of bytes allocated so far by the current thread
+     *
+     * @return      the allocated bytes, or 0 if the JVM does not track them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Keeps a whole-number result alive
+     *
+     * @param   value   the result
+     */
+    private static void consume(long value) {
+        primitiveSink = value;
+    }
+
+    /**
+     * Keeps a fractional result alive
+     *
+     * @param   value   the result
+     */
+    private static void consume(double value) {
+        primitiveSink = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Keeps a true/false result alive
+     *
+     * @param   value   the result
+     */
+    private static void consume(boolean value) {
+        primitiveSink = value ? 1 : 0;
+    }
+}
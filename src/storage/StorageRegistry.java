@@ -0,0 +1,251 @@
+package storage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The company's storage locations, keyed by designation. Fleet-wide operations run
+ * on every location at once on an executor. Each location runs as its own task, so
+ * a location that throws only fails its own entry in the report, and a location
+ * that is still busy when the time limit runs out is reported as timed out while
+ * the others are reported as usual.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class StorageRegistry {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** how long a fleet-wide operation waits for its locations by default, in milliseconds */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the locations, ordered by designation */
+    private final ConcurrentSkipListMap<String, StorageLocation> locations;
+    /** where the per-location tasks run */
+    private final Executor executor;
+    /** how long a fleet-wide operation waits for its locations, in milliseconds */
+    private final long timeoutMillis;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageRegistry Constructor running fleet-wide operations on the common
+     * fork-join pool with the default time limit
+     */
+    public StorageRegistry() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * StorageRegistry Constructor
+     *
+     * @param   executor        where the per-location tasks run; must not be null
+     * @param   timeoutMillis   how long a fleet-wide operation waits for its locations,
+     *                          in milliseconds; must be over 0
+     */
+    public StorageRegistry(Executor executor, long timeoutMillis) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must be non-null");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be > 0");
+        }
+        this.locations     = new ConcurrentSkipListMap<>();
+        this.executor      = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Looks up a location by its designation
+     *
+     * @param   designation     the designation, for example WA23Issaquah
+     * @return                  the location, or null if none is registered under it
+     */
+    public StorageLocation getLocation(String designation) {
+        if (designation == null) {
+            throw new IllegalArgumentException("Designation must be non-null");
+        }
+        return locations.get(designation);
+    }
+
+    /**
+     * Retrieves the number of registered locations
+     *
+     * @return      the number of locations
+     */
+    public int getLocationCount() {
+        return locations.size();
+    }
+
+    /**
+     * Retrieves the designations of all registered locations
+     *
+     * @return      the designations, in order
+     */
+    public String[] getDesignations() {
+        return locations.keySet().toArray(new String[0]);
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Registers a location under its designation
+     *
+     * @param   location    the location; must not be null, and its designation must
+     *                      not be registered yet
+     */
+    public void register(StorageLocation location) {
+        if (location == null) {
+            throw new IllegalArgumentException("Location must be non-null");
+        }
+        if (locations.putIfAbsent(location.getDesignation(), location) != null) {
+            throw new IllegalArgumentException("Location " + location.getDesignation() + " is already registered");
+        }
+    }
+
+    /**
+     * Removes a location from the registry
+     *
+     * @param   designation     the designation of the location
+     * @return                  the removed location, or null if none was registered under it
+     */
+    public StorageLocation unregister(String designation) {
+        if (designation == null) {
+            throw new IllegalArgumentException("Designation must be non-null");
+        }
+        return locations.remove(designation);
+    }
+
+    /**
+     * Charges every customer at every location their monthly rent
+     *
+     * @return      the rent charged at each location
+     */
+    public FleetReport chargeMonthlyRent() {
+        return runFleetWide("Monthly rent charged", StorageLocation::chargeMonthlyRent);
+    }
+
+    /**
+     * Charges every customer at every location their monthly rent as of a billing date
+     *
+     * @param   billingDate the date of this bill run; must not be null or before any
+     *                      location's previous billing date
+     * @return              the rent charged at each location
+     */
+    public FleetReport chargeMonthlyRent(LocalDate billingDate) {
+        if (billingDate == null) {
+            throw new IllegalArgumentException("Date must be non-null");
+        }
+        return runFleetWide("Monthly rent charged", location -> location.chargeMonthlyRent(billingDate));
+    }
+
+    /**
+     * Finds the customers who owe the most across all locations, merging each
+     * location's own top debtors. A customer of several locations is listed once.
+     *
+     * @param   count       the most customers to return; must not be negative
+     * @return              the customers, largest balance first
+     */
+    public Customer[] getTopDebtors(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        Set<Customer> found = new LinkedHashSet<>();
+        for (StorageLocation location : locations.values()) {
+            found.addAll(Arrays.asList(location.getTopDebtors(count)));
+        }
+        List<Customer> merged = new ArrayList<>(found);
+        merged.sort(Comparator.comparingLong(Customer::getBalanceCents).reversed());
+        return merged.subList(0, Math.min(count, merged.size())).toArray(new Customer[0]);
+    }
+
+    /**
+     * Counts the empty units at every location
+     *
+     * @return      the number of empty units at each location
+     */
+    public FleetReport countEmptyUnits() {
+        return runFleetWide("Empty units", StorageLocation::countEmptyUnits);
+    }
+
+    /**
+     * Estimates the monthly rent every location's renters owe right now, from each
+     * location's running total, so each figure is the one the location reports itself.
+     * The running totals round every unit's prices to the cent, so each figure can
+     * differ from what the location's next bill run charges by up to a cent per rented
+     * unit and a nickel per renter of more than one unit; the report is labelled as
+     * an estimate.
+     *
+     * @return      the projected monthly revenue of each location
+     */
+    public FleetReport calcMonthlyRevenue() {
+        return runFleetWide("Projected monthly revenue (estimate)", StorageLocation::getProjectedMonthlyRevenue);
+    }
+
+    /**
+     * Runs an operation on every location at once and collects the outcomes. The
+     * caller waits at most the registry's time limit; a location still running then
+     * is reported as timed out and left to finish in the background.
+     *
+     * @param   name        the name of the operation, for the report
+     * @param   operation   the operation to run on each location
+     * @return              the outcome at each location
+     */
+    private FleetReport runFleetWide(String name, ToDoubleFunction<StorageLocation> operation) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Map.Entry<String, CompletableFuture<FleetReport.LocationResult>>> tasks = new ArrayList<>();
+        for (Map.Entry<String, StorageLocation> entry : locations.entrySet()) {
+            String designation = entry.getKey();
+            StorageLocation location = entry.getValue();
+            tasks.add(Map.entry(designation, CompletableFuture.supplyAsync(() -> {
+                long taskStart = System.nanoTime();
+                try {
+                    double value = operation.applyAsDouble(location);
+                    return new FleetReport.LocationResult(designation, value, System.nanoTime() - taskStart, null, false);
+                } catch (RuntimeException e) {
+                    return new FleetReport.LocationResult(designation, 0.0, System.nanoTime() - taskStart, e, false);
+                }
+            }, executor)));
+        }
+
+        List<FleetReport.LocationResult> results = new ArrayList<>(tasks.size());
+        for (Map.Entry<String, CompletableFuture<FleetReport.LocationResult>> task : tasks) {
+            try {
+                results.add(task.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                results.add(new FleetReport.LocationResult(task.getKey(), 0.0, System.nanoTime() - start, null, true));
+            } catch (ExecutionException e) {
+                results.add(new FleetReport.LocationResult(task.getKey(), 0.0, System.nanoTime() - start, e.getCause(), false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new FleetReport.LocationResult(task.getKey(), 0.0, System.nanoTime() - start, e, false));
+            }
+        }
+        return new FleetReport(name, results, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,613 @@
+package storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A read-only, memory-mapped picture of a location: its rows, every unit and every
+ * customer, stored column by column. Opening a snapshot only maps the file; each
+ * accessor reads its value straight from the mapping, so a large site can be
+ * queried right away and only the pages actually touched are read from disk.
+ *
+ * The file holds a fixed header followed by these sections, each an array with one
+ * entry per row, unit or customer:
+ * <pre>
+ *     designation     UTF-8 bytes
+ *     rows            type, spaces, width, length, height, level
+ *     units           type, width, length, height, level, occupant ID, rental start epoch day
+ *     customers       first ID, balance in cents, end of name, end of phone
+ *     text            UTF-8 names and phones, one after the other
+ * </pre>
+ * Snapshots are written without locking the location. Each unit is read in one step,
+ * so its occupant and rental start always belong together, but rentals made while the
+ * snapshot is being written may or may not be in it.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class StorageSnapshot {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** marks a file as a storage snapshot */
+    public static final int MAGIC = 0x5354534E;
+    /** the version of the file layout */
+    public static final int VERSION = 1;
+    /** the size of the header, in bytes */
+    private static final int HEADER_SIZE = 40;
+    /** the occupant ID of a free unit */
+    public static final int NO_OCCUPANT = -1;
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the mapped file */
+    private final ByteBuffer data;
+    /** the number of rows */
+    private final int rowCount;
+    /** the number of units */
+    private final int unitCount;
+    /** the number of customers */
+    private final int customerCount;
+    /** the base unit price */
+    private final double basePrice;
+    /** the location designation */
+    private final String designation;
+    /** where each section starts in the file */
+    private final Sections at;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * StorageSnapshot Constructor
+     *
+     * @param   data    the snapshot bytes
+     */
+    private StorageSnapshot(ByteBuffer data) {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a storage snapshot");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + data.getInt(4));
+        }
+        this.data          = data;
+        this.rowCount      = data.getInt(8);
+        this.unitCount     = data.getInt(12);
+        this.customerCount = data.getInt(16);
+        this.basePrice     = data.getDouble(24);
+        this.at            = new Sections(data.getInt(20), rowCount, unitCount, customerCount);
+        if (data.capacity() < at.text + data.getInt(32)) {
+            throw new IllegalArgumentException("Snapshot is truncated");
+        }
+        byte[] name = new byte[data.getInt(20)];
+        data.get(HEADER_SIZE, name);
+        this.designation   = new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory. Nothing else is read up front.
+     *
+     * @param   file    the snapshot file
+     * @return          the snapshot
+     * @throws  IOException     if the file cannot be mapped
+     */
+    public static StorageSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new StorageSnapshot(mapped);
+        }
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the designation of the location
+     *
+     * @return      the designation
+     */
+    public String getDesignation() {
+        return designation;
+    }
+
+    /**
+     * Retrieves the base unit price of the location
+     *
+     * @return      the base price
+     */
+    public double getUnitBasePrice() {
+        return basePrice;
+    }
+
+    /**
+     * Retrieves the number of rows
+     *
+     * @return      the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Retrieves the number of units
+     *
+     * @return      the number of units
+     */
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * Retrieves the number of customers
+     *
+     * @return      the number of customers
+     */
+    public int getCustomerCount() {
+        return customerCount;
+    }
+
+    /**
+     * Retrieves the type of a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the unit type
+     */
+    public UnitType getType(int unitIdx) {
+        return UnitType.fromSymbol((char) data.get(at.unitTypes + checkUnit(unitIdx)));
+    }
+
+    /**
+     * Retrieves the width of a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the width, in feet
+     */
+    public int getWidth(int unitIdx) {
+        return data.getInt(at.unitWidths + 4 * checkUnit(unitIdx));
+    }
+
+    /**
+     * Retrieves the length of a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the length, in feet
+     */
+    public int getLength(int unitIdx) {
+        return data.getInt(at.unitLengths + 4 * checkUnit(unitIdx));
+    }
+
+    /**
+     * Retrieves the height of a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the height, in feet
+     */
+    public int getHeight(int unitIdx) {
+        return data.getInt(at.unitHeights + 4 * checkUnit(unitIdx));
+    }
+
+    /**
+     * Retrieves the climate level of a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the climate level; 0 for standard units
+     */
+    public int getLevel(int unitIdx) {
+        return data.getInt(at.unitLevels + 4 * checkUnit(unitIdx));
+    }
+
+    /**
+     * Retrieves the ID of the customer renting a unit
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the customer ID, or NO_OCCUPANT if the unit is free
+     */
+    public int getOccupant(int unitIdx) {
+        return data.getInt(at.unitOccupants + 4 * checkUnit(unitIdx));
+    }
+
+    /**
+     * Retrieves the start of a unit's rental
+     *
+     * @param   unitIdx     the unit's row-major position
+     * @return              the rental start, or null if the unit is free
+     */
+    public LocalDate getRentalStart(int unitIdx) {
+        if (getOccupant(unitIdx) == NO_OCCUPANT) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(data.getInt(at.unitStarts + 4 * unitIdx));
+    }
+
+    /**
+     * Retrieves a customer's name
+     *
+     * @param   custIdx     the customer ID
+     * @return              the name
+     */
+    public String getCustomerName(int custIdx) {
+        int start = custIdx == 0 ? 0 : data.getInt(at.phoneEnds + 4 * (custIdx - 1));
+        return text(start, data.getInt(at.nameEnds + 4 * checkCustomer(custIdx)));
+    }
+
+    /**
+     * Retrieves a customer's phone number
+     *
+     * @param   custIdx     the customer ID
+     * @return              the phone number
+     */
+    public String getCustomerPhone(int custIdx) {
+        return text(data.getInt(at.nameEnds + 4 * checkCustomer(custIdx)), data.getInt(at.phoneEnds + 4 * custIdx));
+    }
+
+    /**
+     * Retrieves a customer's balance
+     *
+     * @param   custIdx     the customer ID
+     * @return              the balance, in cents
+     */
+    public long getBalanceCents(int custIdx) {
+        return data.getLong(at.balances + 8 * checkCustomer(custIdx));
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Counts the free units of the snapshot
+     *
+     * @return      the number of free units
+     */
+    public int countEmptyUnits() {
+        int empty = 0;
+        for (int unitIdx = 0; unitIdx < unitCount; unitIdx++) {
+            if (data.getInt(at.unitOccupants + 4 * unitIdx) == NO_OCCUPANT) {
+                empty++;
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Builds a working location from the snapshot. Only rented units and units whose
+     * level differs from their row's are created; the rest are created when needed.
+     *
+     * @return      the restored location
+     */
+    public StorageLocation restore() {
+        StorageLayout layout = new StorageLayout();
+        for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+            layout.addRows(UnitType.fromSymbol((char) data.get(at.rowTypes + rowIdx)), 1,
+                data.getInt(at.rowSpaces + 4 * rowIdx), data.getInt(at.rowWidths + 4 * rowIdx),
+                data.getInt(at.rowLengths + 4 * rowIdx), data.getInt(at.rowHeights + 4 * rowIdx),
+                data.getInt(at.rowLevels + 4 * rowIdx));
+        }
+        StorageLocation location = new StorageLocation(designation, basePrice, layout);
+        for (int custIdx = 0; custIdx < customerCount; custIdx++) {
+            int firstIdx = data.getInt(at.firstIds + 4 * custIdx);
+            if (firstIdx != custIdx) {
+                // the same customer was added more than once
+                location.addCustomer(location.getCustomer(firstIdx));
+                continue;
+            }
+            Customer customer = new Customer(getCustomerName(custIdx), getCustomerPhone(custIdx));
+            long balance = getBalanceCents(custIdx);
+            if (balance >= 0) {
+                customer.getLedger().charge(balance);
+            } else {
+                customer.getLedger().credit(-balance);
+            }
+            location.addCustomer(customer);
+        }
+        int unitIdx = 0;
+        for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+            int rowLevel = data.getInt(at.rowLevels + 4 * rowIdx);
+            int spaces = data.getInt(at.rowSpaces + 4 * rowIdx);
+            for (int spaceIdx = 0; spaceIdx < spaces; spaceIdx++, unitIdx++) {
+                int level = getLevel(unitIdx);
+                if (level != rowLevel) {
+                    setLevel(location.getUnitByIndex(unitIdx), level);
+                }
+                int occupant = getOccupant(unitIdx);
+                if (occupant != NO_OCCUPANT) {
+                    location.getUnitByIndex(unitIdx).rent(location.getCustomer(occupant), getRentalStart(unitIdx));
+                }
+            }
+        }
+        return location;
+    }
+
+    /**
+     * Writes a snapshot of a location. The snapshot goes to a temporary file first and
+     * replaces the target in one step, so a reader never sees a half-written snapshot.
+     * Rentals and releases carry on while it is written.
+     *
+     * @param   location    the location
+     * @param   file        the snapshot file to write
+     * @throws  IOException     if the file cannot be written
+     */
+    public static void write(StorageLocation location, Path file) throws IOException {
+        if (location == null) {
+            throw new IllegalArgumentException("Location must be non-null");
+        }
+        StorageLayout layout = location.getLayout();
+        int rows = layout.getRowCount();
+        int unitTotal = location.getUnitCount();
+        int customers = location.getCustomerCount();
+        byte[] name = location.getDesignation().getBytes(StandardCharsets.UTF_8);
+        byte[][] texts = new byte[customers * 2][];
+        int textLength = 0;
+        for (int custIdx = 0; custIdx < customers; custIdx++) {
+            Customer customer = location.getCustomer(custIdx);
+            texts[2 * custIdx]     = customer.getName().getBytes(StandardCharsets.UTF_8);
+            texts[2 * custIdx + 1] = customer.getPhone().getBytes(StandardCharsets.UTF_8);
+            textLength += texts[2 * custIdx].length + texts[2 * custIdx + 1].length;
+        }
+        Sections at = new Sections(name.length, rows, unitTotal, customers);
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, at.text + textLength);
+                out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, unitTotal).putInt(16, customers)
+                    .putInt(20, name.length).putDouble(24, location.getUnitBasePrice()).putInt(32, textLength);
+                out.put(HEADER_SIZE, name);
+                writeRows(out, at, layout);
+                writeUnits(out, at, location, layout, customers);
+                writeCustomers(out, at, location, texts);
+                out.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a location on another thread
+     *
+     * @param   location    the location
+     * @param   file        the snapshot file to write
+     * @param   executor    where to write it
+     * @return              completes when the snapshot is in place
+     */
+    public static CompletableFuture<Void> writeInBackground(StorageLocation location, Path file, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(location, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes the row section
+     *
+     * @param   out     the snapshot bytes
+     * @param   at      where the sections start
+     * @param   layout  the location's rows
+     */
+    private static void writeRows(ByteBuffer out, Sections at, StorageLayout layout) {
+        for (int rowIdx = 0; rowIdx < layout.getRowCount(); rowIdx++) {
+            out.put(at.rowTypes + rowIdx, (byte) layout.getType(rowIdx).getSymbol());
+            out.putInt(at.rowSpaces + 4 * rowIdx, layout.getSpaces(rowIdx));
+            out.putInt(at.rowWidths + 4 * rowIdx, layout.getWidth(rowIdx));
+            out.putInt(at.rowLengths + 4 * rowIdx, layout.getLength(rowIdx));
+            out.putInt(at.rowHeights + 4 * rowIdx, layout.getHeight(rowIdx));
+            out.putInt(at.rowLevels + 4 * rowIdx, layout.getLevel(rowIdx));
+        }
+    }
+
+    /**
+     * Writes the unit section. Units that were never created are described by their row.
+     *
+     * @param   out         the snapshot bytes
+     * @param   at          where the sections start
+     * @param   location    the location
+     * @param   layout      the location's rows
+     * @param   customers   the number of customers in the snapshot; rentals by customers
+     *                      added after they were counted are left out
+     */
+    private static void writeUnits(ByteBuffer out, Sections at, StorageLocation location, StorageLayout layout,
+                                   int customers) {
+        int unitIdx = 0;
+        for (int rowIdx = 0; rowIdx < layout.getRowCount(); rowIdx++) {
+            byte type = (byte) layout.getType(rowIdx).getSymbol();
+            for (int spaceIdx = 0; spaceIdx < layout.getSpaces(rowIdx); spaceIdx++, unitIdx++) {
+                StorageUnit unit = location.getCreatedUnit(unitIdx);
+                StorageUnit.Rental rental = unit == null ? null : unit.getRental();
+                int occupant = rental == null ? NO_OCCUPANT : location.getCustomerId(rental.customer);
+                if (occupant >= customers) {
+                    occupant = NO_OCCUPANT;
+                }
+                out.put(at.unitTypes + unitIdx, type);
+                out.putInt(at.unitWidths + 4 * unitIdx, layout.getWidth(rowIdx));
+                out.putInt(at.unitLengths + 4 * unitIdx, layout.getLength(rowIdx));
+                out.putInt(at.unitHeights + 4 * unitIdx, layout.getHeight(rowIdx));
+                out.putInt(at.unitLevels + 4 * unitIdx, unit == null ? layout.getLevel(rowIdx) : levelOf(unit));
+                out.putInt(at.unitOccupants + 4 * unitIdx, occupant);
+                out.putInt(at.unitStarts + 4 * unitIdx,
+                    occupant == NO_OCCUPANT ? 0 : rental.startDay);
+            }
+        }
+    }
+
+    /**
+     * Writes the customer and text sections
+     *
+     * @param   out         the snapshot bytes
+     * @param   at          where the sections start
+     * @param   location    the location
+     * @param   texts       each customer's name and phone, encoded
+     */
+    private static void writeCustomers(ByteBuffer out, Sections at, StorageLocation location, byte[][] texts) {
+        int textEnd = 0;
+        for (int custIdx = 0; custIdx < texts.length / 2; custIdx++) {
+            Customer customer = location.getCustomer(custIdx);
+            out.putInt(at.firstIds + 4 * custIdx, location.getCustomerId(customer));
+            out.putLong(at.balances + 8 * custIdx, customer.getBalanceCents());
+            out.put(at.text + textEnd, texts[2 * custIdx]);
+            textEnd += texts[2 * custIdx].length;
+            out.putInt(at.nameEnds + 4 * custIdx, textEnd);
+            out.put(at.text + textEnd, texts[2 * custIdx + 1]);
+            textEnd += texts[2 * custIdx + 1].length;
+            out.putInt(at.phoneEnds + 4 * custIdx, textEnd);
+        }
+    }
+
+    /**
+     * Reads the climate level of a unit
+     *
+     * @param   unit    the unit
+     * @return          its level; 0 for standard units
+     */
+    private static int levelOf(StorageUnit unit) {
+        if (unit instanceof TempStorageUnit) {
+            return ((TempStorageUnit) unit).getTempLevel();
+        }
+        if (unit instanceof HumidStorageUnit) {
+            return ((HumidStorageUnit) unit).getHumLevel();
+        }
+        return 0;
+    }
+
+    /**
+     * Changes the climate level of a unit
+     *
+     * @param   unit    the unit
+     * @param   level   the new level
+     */
+    private static void setLevel(StorageUnit unit, int level) {
+        if (unit instanceof TempStorageUnit) {
+            ((TempStorageUnit) unit).setTempLevel(level);
+        } else if (unit instanceof HumidStorageUnit) {
+            ((HumidStorageUnit) unit).setHumLevel(level);
+        }
+    }
+
+    /**
+     * Decodes a stretch of the text section
+     *
+     * @param   start   the offset of the first byte within the text section
+     * @param   end     the offset after the last byte
+     * @return          the decoded text
+     */
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        data.get(at.text + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that a unit position lies within the snapshot
+     *
+     * @param   unitIdx     the unit position
+     * @return              the same position
+     */
+    private int checkUnit(int unitIdx) {
+        if (unitIdx < 0 || unitIdx >= unitCount) {
+            throw new IllegalArgumentException("Index is out of bound.");
+        }
+        return unitIdx;
+    }
+
+    /**
+     * Checks that a customer ID lies within the snapshot
+     *
+     * @param   custIdx     the customer ID
+     * @return              the same ID
+     */
+    private int checkCustomer(int custIdx) {
+        if (custIdx < 0 || custIdx >= customerCount) {
+            throw new IllegalArgumentException("Index is out of bound.");
+        }
+        return custIdx;
+    }
+
+    /**
+     * Where each section of a snapshot file starts, worked out from the counts in the
+     * header
+     */
+    private static final class Sections {
+        /** the symbol of each row's unit type */
+        final int rowTypes;
+        /** the number of units in each row */
+        final int rowSpaces;
+        /** the unit width of each row */
+        final int rowWidths;
+        /** the unit length of each row */
+        final int rowLengths;
+        /** the unit height of each row */
+        final int rowHeights;
+        /** the climate level of each row */
+        final int rowLevels;
+        /** the symbol of each unit's type */
+        final int unitTypes;
+        /** the width of each unit */
+        final int unitWidths;
+        /** the length of each unit */
+        final int unitLengths;
+        /** the height of each unit */
+        final int unitHeights;
+        /** the climate level of each unit */
+        final int unitLevels;
+        /** the ID of each unit's renter */
+        final int unitOccupants;
+        /** the rental start of each unit, as an epoch day */
+        final int unitStarts;
+        /** the first ID of each customer, which differs for customers added twice */
+        final int firstIds;
+        /** the balance of each customer, in cents */
+        final int balances;
+        /** where each customer's name ends in the text section */
+        final int nameEnds;
+        /** where each customer's phone ends in the text section */
+        final int phoneEnds;
+        /** the names and phones */
+        final int text;
+
+        /**
+         * Sections Constructor
+         *
+         * @param   nameLength      the length of the encoded designation, in bytes
+         * @param   rows            the number of rows
+         * @param   units           the number of units
+         * @param   customers       the number of customers
+         */
+        Sections(int nameLength, int rows, int units, int customers) {
+            rowTypes      = HEADER_SIZE + nameLength;
+            rowSpaces     = rowTypes + rows;
+            rowWidths     = rowSpaces + 4 * rows;
+            rowLengths    = rowWidths + 4 * rows;
+            rowHeights    = rowLengths + 4 * rows;
+            rowLevels     = rowHeights + 4 * rows;
+            unitTypes     = rowLevels + 4 * rows;
+            unitWidths    = unitTypes + units;
+            unitLengths   = unitWidths + 4 * units;
+            unitHeights   = unitLengths + 4 * units;
+            unitLevels    = unitHeights + 4 * units;
+            unitOccupants = unitLevels + 4 * units;
+            unitStarts    = unitOccupants + 4 * units;
+            firstIds      = unitStarts + 4 * units;
+            balances      = firstIds + 4 * customers;
+            nameEnds      = balances + 8 * customers;
+            phoneEnds     = nameEnds + 4 * customers;
+            text          = phoneEnds + 4 * customers;
+        }
+    }
+}
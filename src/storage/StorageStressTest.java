@@ -0,0 +1,411 @@
+package storage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hammers one location from many threads and checks that no unit is ever rented
+ * to two customers at once, that the location's indexes agree with its units
+ * afterwards, that a renter who joins while renting is billed for every unit, that
+ * concurrent postings to a balance are never lost, and that a
+ * bill run split across threads charges exactly what a serial one does. Exits
+ * with an exception if any check fails.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public class StorageStressTest {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the layout under test: 10,000 standard units */
+    public static final String LAYOUT = "S 100 100 4x8x8 0";
+    /** the rent or release attempts made by each thread in the churn test */
+    public static final int CHURN_OPERATIONS = 200000;
+    /** the seed for the parallel billing test's rentals */
+    public static final long SEED = 25L;
+    /** the rounds of a renter joining the location while renting */
+    public static final int JOIN_ROUNDS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        rentContention(threads);
+        for (int threadCount = 1; threadCount <= threads; threadCount *= 2) {
+            churn(threadCount);
+        }
+        ledgerPostings(threads);
+        parallelBilling(threads);
+        fleetIsolation(threads);
+        joinWhileRenting();
+        System.out.println("All stress checks passed");
+    }
+
+    /**
+     * Lets every thread try to rent every unit, each in its own random order, and
+     * checks that each unit was won exactly once
+     *
+     * @param   threadCount     the number of competing threads
+     */
+    static void rentContention(int threadCount) throws InterruptedException {
+        StorageLocation loc = new StorageLocation("WA23Issaquah", 100.0, StorageLayout.parse(LAYOUT));
+        int unitCount = loc.countEmptyUnits();
+        AtomicIntegerArray wins = new AtomicIntegerArray(unitCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Customer customer = new Customer("Renter " + t, "425-555-" + (1000 + t));
+            loc.addCustomer(customer);
+            long seed = t;
+            workers.add(new Thread(() -> {
+                int[] order = shuffled(unitCount, new Random(seed));
+                awaitQuietly(start);
+                for (int unitIdx : order) {
+                    if (unitAt(loc, unitIdx).rent(customer, LocalDate.now())) {
+                        wins.incrementAndGet(unitIdx);
+                    }
+                }
+            }));
+        }
+        runAll(workers, start);
+
+        for (int unitIdx = 0; unitIdx < unitCount; unitIdx++) {
+            check(wins.get(unitIdx) == 1, "unit " + unitIdx + " was rented " + wins.get(unitIdx) + " times");
+        }
+        int indexed = 0;
+        for (int custIdx = 0; custIdx < loc.getCustomerCount(); custIdx++) {
+            indexed += loc.getCustomerUnits(loc.getCustomer(custIdx)).length;
+        }
+        check(indexed == unitCount, "owner index holds " + indexed + " of " + unitCount + " units");
+        check(loc.countEmptyUnits() == 0, "occupancy counters still show free units");
+        check(loc.verifyOwnerIndex() && loc.verifyFreeUnitIndex(), "indexes disagree with the units");
+        check(loc.verifyOccupancyCounters(), "occupancy counters disagree with a recount");
+        System.out.printf("%-30s : %d threads, %,d units, no double rentals%n", "Rent contention", threadCount, unitCount);
+    }
+
+    /**
+     * Has threads rent and release random units, releasing only what they rented
+     * themselves. A shadow table records who holds each unit; a successful rent of a
+     * unit the table shows as held means the unit was rented twice.
+     *
+     * @param   threadCount     the number of threads
+     */
+    static void churn(int threadCount) throws InterruptedException {
+        StorageLocation loc = new StorageLocation("WA23Issaquah", 100.0, StorageLayout.parse(LAYOUT));
+        int unitCount = loc.countEmptyUnits();
+        // surges low enough that the churn keeps crossing them, republishing prices as it goes
+        loc.setPricingRules(PricingRules.standard().addSurge(UnitType.STANDARD, 0.25, 1.2)
+            .addSurge(UnitType.HUMIDITY, 0.25, 1.3).addSurge(UnitType.TEMPERATURE, 0.25, 1.4));
+        AtomicReferenceArray<Customer> holders = new AtomicReferenceArray<>(unitCount);
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Customer customer = new Customer("Renter " + t, "425-555-" + (1000 + t));
+            loc.addCustomer(customer);
+            long seed = 31L * t + 7;
+            workers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                List<Integer> held = new ArrayList<>();
+                awaitQuietly(start);
+                for (int op = 0; op < CHURN_OPERATIONS; op++) {
+                    if (held.isEmpty() || random.nextInt(3) > 0) {
+                        int unitIdx = random.nextInt(unitCount);
+                        if (unitAt(loc, unitIdx).rent(customer, LocalDate.now())) {
+                            if (!holders.compareAndSet(unitIdx, null, customer)) {
+                                failures.incrementAndGet();
+                            }
+                            held.add(unitIdx);
+                        }
+                    } else {
+                        int unitIdx = held.remove(random.nextInt(held.size()));
+                        holders.set(unitIdx, null);
+                        if (!unitAt(loc, unitIdx).release()) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        long elapsed = runAll(workers, start);
+
+        check(failures.get() == 0, failures.get() + " double rentals or lost releases");
+        check(loc.verifyOwnerIndex() && loc.verifyFreeUnitIndex(), "indexes disagree with the units");
+        check(loc.verifyOccupancyCounters(), "occupancy counters disagree with a recount");
+        check(loc.verifyRentalHistory(), "rental history disagrees with the rented units");
+        check(loc.verifyUnitFitIndex(), "fit index disagrees with the prices after surges");
+        double opsPerSec = (double) threadCount * CHURN_OPERATIONS / (elapsed / 1e9);
+        System.out.printf("%-30s : %2d threads, %,14.0f ops/s%n", "Rent/release churn", threadCount, opsPerSec);
+    }
+
+    /**
+     * Has billing threads charge and payment threads credit one customer at once, and
+     * checks that the balance comes out exact to the cent
+     *
+     * @param   threadCount     the number of threads; half charge, half credit
+     */
+    static void ledgerPostings(int threadCount) throws InterruptedException {
+        Customer customer = new Customer("Busy Account", "425-555-0000");
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            boolean billing = t % 2 == 0;
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int op = 0; op < CHURN_OPERATIONS; op++) {
+                    if (billing) {
+                        customer.charge(0.10);
+                    } else {
+                        customer.credit(0.03);
+                    }
+                }
+            }));
+        }
+        long elapsed = runAll(workers, start);
+
+        long chargers = (threadCount + 1) / 2;
+        long expected = CHURN_OPERATIONS * (chargers * 10 - (threadCount - chargers) * 3);
+        check(customer.getBalanceCents() == expected,
+            "balance is " + customer.getBalanceCents() + " cents, expected " + expected);
+        double postsPerSec = (double) threadCount * CHURN_OPERATIONS / (elapsed / 1e9);
+        System.out.printf("%-30s : %2d threads, %,14.0f posts/s, balance exact%n", "Ledger postings", threadCount, postsPerSec);
+    }
+
+    /**
+     * Bills a large location with odd prices on pools of every size up to the thread
+     * count, checks that every run works out the same rent for every customer as the
+     * serial run and the per-customer scan, then charges it in parallel and checks that
+     * each customer was charged exactly once
+     *
+     * @param   threadCount     the largest pool size
+     */
+    static void parallelBilling(int threadCount) {
+        StorageLocation loc = new StorageLocation("WA25Bothell", 99.995, StorageLayout.parse("S 1000 100 4x8x8 0"));
+        loc.setPricingRules(PricingRules.standard().setFlatPrice(UnitType.STANDARD, 74.33).setRowPremium(7, 0.07)
+            .setMultiUnitDiscount(0.07));
+        Customer[] renters = new Customer[5000];
+        for (int idx = 0; idx < renters.length; idx++) {
+            renters[idx] = new Customer("Renter " + idx, "425-555-" + (1000 + idx));
+            loc.addCustomer(renters[idx]);
+        }
+        Random random = new Random(SEED);
+        for (int unitIdx = 0; unitIdx < loc.getUnitCount(); unitIdx++) {
+            if (random.nextInt(10) < 8) {
+                loc.getUnitByIndex(unitIdx).rent(renters[random.nextInt(renters.length)], LocalDate.of(2026, 1, 1));
+            }
+        }
+        double[] serial = loc.calcMonthlyRent(renters, renters.length, null);
+        check(Arrays.equals(serial, loc.calcMonthlyRentByScan()), "rent differs from the per-customer scan");
+        for (int poolSize = 1; poolSize <= threadCount; poolSize *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(poolSize);
+            double[] split = loc.calcMonthlyRent(renters, renters.length, pool);
+            pool.shutdown();
+            check(Arrays.equals(serial, split), "rent on " + poolSize + " threads differs from the serial run");
+        }
+        double expected = 0.0;
+        for (double rentDue : serial) {
+            expected += rentDue;
+        }
+        // the projection rounds every unit's prices to the cent; billing rounds only the rents
+        double allowed = 0.01 * loc.countOccupiedUnits() + 0.05 * loc.getMultiUnitCustomerCount() + 1e-6;
+        double projected = loc.getProjectedMonthlyRevenue();
+        check(Math.abs(projected - expected) <= allowed,
+            "projected revenue " + projected + " is further than " + allowed + " from the billed " + expected);
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        long begin = System.nanoTime();
+        double charged = loc.chargeMonthlyRent(LocalDate.of(2026, 2, 1), pool);
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        check(charged == expected, "charged " + charged + ", expected " + expected);
+        for (int idx = 0; idx < renters.length; idx++) {
+            check(renters[idx].getBalanceCents() == BalanceLedger.toCents(serial[idx]),
+                renters[idx].getName() + " was not charged exactly once");
+        }
+        check(loc.verifyReceivables(), "receivables disagree with the balances");
+        System.out.printf("%-30s : %2d threads, %,14.0f us, totals exact%n", "Parallel bill run", threadCount,
+            elapsed / 1e3);
+    }
+
+    /**
+     * Runs fleet-wide operations over a registry in which one location always fails
+     * and one never finishes in time, and checks that every other location is still
+     * reported, with the same figures it gives on its own
+     *
+     * @param   threadCount     the number of pool threads
+     */
+    static void fleetIsolation(int threadCount) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        StorageRegistry registry = new StorageRegistry(pool, 500);
+        CountDownLatch stuck = new CountDownLatch(1);
+        int healthy = 50;
+        double expectedRevenue = 0.0;
+        int expectedVacancies = 0;
+        for (int idx = 0; idx < healthy; idx++) {
+            StorageLocation loc = new StorageLocation(String.format("WA%02dSite", idx), 100.0);
+            Customer customer = new Customer("Renter " + idx, "425-555-" + (2000 + idx));
+            loc.addCustomer(customer);
+            for (int rowIdx = 0; rowIdx <= idx % loc.getRowCount(); rowIdx++) {
+                loc.getStorageUnit(rowIdx, 0).rent(customer, LocalDate.of(2026, 1, 1));
+            }
+            expectedRevenue += loc.getProjectedMonthlyRevenue();
+            expectedVacancies += loc.countEmptyUnits();
+            registry.register(loc);
+        }
+        registry.register(new StorageLocation("OR01Broken", 100.0) {
+            public int countEmptyUnits() {
+                throw new IllegalStateException("index unavailable");
+            }
+        });
+        registry.register(new StorageLocation("OR02Stuck", 100.0) {
+            public int countEmptyUnits() {
+                awaitQuietly(stuck);
+                return super.countEmptyUnits();
+            }
+        });
+
+        long start = System.nanoTime();
+        FleetReport vacancies = registry.countEmptyUnits();
+        long elapsed = System.nanoTime() - start;
+        stuck.countDown();
+        FleetReport revenue = registry.calcMonthlyRevenue();
+        pool.shutdown();
+
+        List<FleetReport.LocationResult> problems = vacancies.getProblems();
+        check(problems.size() == 2, problems.size() + " problem locations, expected 2");
+        check(problems.get(0).getDesignation().equals("OR01Broken") && problems.get(0).getFailure() != null,
+            "OR01Broken was not reported as failed");
+        check(problems.get(1).getDesignation().equals("OR02Stuck") && problems.get(1).isTimedOut(),
+            "OR02Stuck was not reported as timed out");
+        check(vacancies.getTotal() == expectedVacancies,
+            "fleet vacancies are " + vacancies.getTotal());
+        check(elapsed < TimeUnit.SECONDS.toNanos(5), "a stuck location held up the fleet");
+        check(revenue.getOperation().contains("estimate"), "fleet revenue is not labelled as an estimate");
+        check(revenue.getProblems().isEmpty() && Math.abs(revenue.getTotal() - expectedRevenue) < 1e-6,
+            "fleet revenue is " + revenue.getTotal() + ", expected " + expectedRevenue);
+        for (FleetReport.LocationResult result : revenue.getResults()) {
+            double own = registry.getLocation(result.getDesignation()).getProjectedMonthlyRevenue();
+            check(result.getValue() == own, result.getDesignation() + " revenue is " + result.getValue() + ", expected " + own);
+        }
+        System.out.printf("%-30s : %2d locations, %,10.3f ms, failures isolated%n", "Fleet isolation",
+            registry.getLocationCount(), elapsed / 1e6);
+    }
+
+    /**
+     * Has a renter rent a row of units while another thread adds the renter as a
+     * customer, and checks that billing from the unit columns finds every unit the
+     * owner index gives the customer
+     */
+    static void joinWhileRenting() throws InterruptedException {
+        StorageLocation loc = new StorageLocation("WA26Kirkland", 100.0, StorageLayout.parse("S 1 8 4x8x8 0"));
+        long begin = System.nanoTime();
+        for (int round = 0; round < JOIN_ROUNDS; round++) {
+            Customer customer = new Customer("Joiner " + round, "425-555-" + (3000 + round));
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int unitIdx = 0; unitIdx < loc.getUnitsPerRowCount(0); unitIdx++) {
+                    unitAt(loc, unitIdx).rent(customer, LocalDate.of(2026, 1, 1));
+                }
+            }));
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                loc.addCustomer(customer);
+            }));
+            runAll(workers, start);
+            check(Arrays.equals(loc.calcMonthlyRent(), loc.calcMonthlyRentByScan()),
+                "a unit rented while its renter joined is not billed to them, round " + round);
+            for (int unitIdx = 0; unitIdx < loc.getUnitsPerRowCount(0); unitIdx++) {
+                unitAt(loc, unitIdx).release();
+            }
+        }
+        System.out.printf("%-30s : %,d rounds, %,10.3f ms, every unit billed%n", "Join while renting", JOIN_ROUNDS,
+            (System.nanoTime() - begin) / 1e6);
+    }
+
+    /**
+     * Retrieves a unit of the test layout by its row-major position
+     *
+     * @param   loc         the location
+     * @param   unitIdx     the position
+     * @return              the unit
+     */
+    private static StorageUnit unitAt(StorageLocation loc, int unitIdx) {
+        int spaces = loc.getUnitsPerRowCount(0);
+        return loc.getStorageUnit(unitIdx / spaces, unitIdx % spaces);
+    }
+
+    /**
+     * Starts all workers at once and waits for them
+     *
+     * @param   workers     the worker threads
+     * @param   start       the latch the workers wait on
+     * @return              the nanoseconds from release of the latch until all workers finished
+     */
+    private static long runAll(List<Thread> workers, CountDownLatch start) throws InterruptedException {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Builds a random permutation of 0 to count - 1
+     *
+     * @param   count       the number of positions
+     * @param   random      the source of randomness
+     * @return              the permutation
+     */
+    private static int[] shuffled(int count, Random random) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Waits for a latch, treating an interrupt as the signal to go ahead
+     *
+     * @param   latch       the latch to wait on
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fails the run if a condition does not hold
+     *
+     * @param   condition   the condition
+     * @param   message     what went wrong
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package storage;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Represents a single storage unit for Stanley's Storage Spots
@@ -19,6 +21,19 @@ public abstract class StorageUnit implements StorageUnitInterface  {
     public static final int MULT_FOR_WIDTH_LENGTH = 4;
     /** height must be a multiple of this number */
     public static final int MULT_FOR_HEIGHT = 2;
+    /** marks a unit whose release is being recorded; it is neither rented nor available */
+    private static final Rental RELEASING = new Rental(null, 0);
+    /** swaps the rental of a unit atomically */
+    private static final AtomicReferenceFieldUpdater<StorageUnit, Rental> RENTAL =
+        AtomicReferenceFieldUpdater.newUpdater(StorageUnit.class, Rental.class, "rental");
+    /** the waits for a unit being recorded that only spin; the other thread is likely just updating memory */
+    private static final int SPIN_WAITS = 64;
+    /** the waits that yield the processor after spinning, before parking */
+    private static final int YIELD_WAITS = 16;
+    /** the longest park while a unit is being recorded, in nanoseconds; the other thread may be syncing to disk */
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    /** the times the park doubles, from a microsecond, before it reaches the longest park */
+    private static final int PARK_DOUBLINGS = 10;
     //----------------------------------------------------------------
     //          INSTANCE DATA
     //----------------------------------------------------------------
@@ -28,14 +43,20 @@ public abstract class StorageUnit implements StorageUnitInterface  {
     private int length;
     /** the height of the unit */
     private int height;
-    /** the price for this unit */
-    private double price;
-    /** the customer renting this unit */
-    private Customer customer;
-    /** the rental start date for this unit */
-    private LocalDate rentalStart;
+    /** the last price worked out for this unit while rented, or null when it must be worked out again */
+    private volatile CachedPrice cachedPrice;
+    /** moves on whenever something this unit's own price depends on changes */
+    private volatile int priceVersion;
+    /** the current rental: null when available, RELEASING while a release is recorded */
+    private volatile Rental rental;
     /** the storage location for this unit */
     private StorageLocation storageLocation;
+    /** the row this unit occupies in its location, or -1 if not placed in the grid */
+    private int rowIdx;
+    /** the space this unit occupies within its row, or -1 if not placed in the grid */
+    private int spaceIdx;
+    /** the row-major position of this unit in its location, or -1 if not placed in the grid */
+    private int unitIdx;
 
     //----------------------------------------------------------------
     //          CONSTRUCTORS
@@ -67,9 +88,12 @@ public abstract class StorageUnit implements StorageUnitInterface  {
         this.height          = height;
         this.storageLocation = storageLocation;
 
-        this.customer    = null;
-        this.rentalStart = null;
-        this.price       = 0.00;
+        this.rental      = null;
+        this.cachedPrice = null;
+
+        this.rowIdx   = -1;
+        this.spaceIdx = -1;
+        this.unitIdx  = -1;
     }
 
     //----------------------------------------------------------------
@@ -103,17 +127,28 @@ public abstract class StorageUnit implements StorageUnitInterface  {
     }
 
     /**
-     * Retrieves the unit's full price for storage unit rent per month
+     * Retrieves the unit's full price for storage unit rent per month. The price is
+     * worked out once and reused until the base price, the unit's climate level or its
+     * rental changes.
      *
      * @return  the unit's full price for storage unit rent per month
      */
     public double getPrice() {
         //check if there is no customer in order to not calculate specific price if customer is null
-        if(this.customer == null) {
-            price = 0;
-        }else{
-            price = storageLocation.getUnitBasePrice() + calcUnitSpecificPrice();
+        if(getCustomer() == null) {
+            return 0;
+        }
+        // read both stamps before the inputs, so a price cached here is never newer than its stamps
+        long stamp = storageLocation.getPriceStamp();
+        int version = priceVersion;
+        CachedPrice cached = cachedPrice;
+        if (cached != null && cached.stamp == stamp && cached.version == version) {
+            storageLocation.priceCacheHit();
+            return cached.price;
         }
+        storageLocation.priceCacheMiss();
+        double price = storageLocation.getUnitBasePrice() + calcUnitSpecificPrice();
+        cachedPrice = new CachedPrice(stamp, version, price);
         return price;
     }
 
@@ -123,7 +158,18 @@ public abstract class StorageUnit implements StorageUnitInterface  {
      * @return  the unit's customer, or null if not rented
      */
     public Customer getCustomer() {
-        return customer;
+        Rental current = rental;
+        return current == null ? null : current.customer;
+    }
+
+    /**
+     * Retrieves the current rental, with its customer and start date read together
+     *
+     * @return  the rental, or null if the unit is free or being released
+     */
+    Rental getRental() {
+        Rental current = rental;
+        return current == RELEASING ? null : current;
     }
 
     /**
@@ -132,14 +178,16 @@ public abstract class StorageUnit implements StorageUnitInterface  {
      * @return  the unit's rental start date
      */
     public LocalDate getRentalStart() {
-        return rentalStart;
+        Rental current = rental;
+        return current == null || current == RELEASING ? null : current.getRentalStart();
     }
 
     //----------------------------------------------------------------
     //          OTHER METHODS
     //----------------------------------------------------------------
     /**
-     * Rents the unit to the specified customer
+     * Rents the unit to the specified customer. Safe to call from many threads at once;
+     * exactly one of several competing calls for an available unit succeeds.
      *
      * @param   customer        the customer to whom the unit has been rented
      * @param   rentalStart     the start data of the rental; must not be null
@@ -149,29 +197,196 @@ public abstract class StorageUnit implements StorageUnitInterface  {
         if (rentalStart == null) {
             throw new IllegalArgumentException("rentalStart must not be null");
         }
-        if (this.customer != null) {
-            return false;
+        long startDay = rentalStart.toEpochDay();
+        if (startDay < Integer.MIN_VALUE || startDay > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("rentalStart is out of range");
+        }
+        if (customer == null) {
+            // nothing to record; succeeds only if the unit is available
+            return getCustomer() == null;
+        }
+        Rental claim;
+        int waits = 0;
+        while ((claim = tryClaim(customer, (int) startDay)) == null) {
+            if (!isBeingReleased()) {
+                return false;
+            }
+            // a release is being recorded; the unit is free a moment from now
+            waits = waitForRecording(waits);
+        }
+        try {
+            storageLocation.unitRented(this, customer, claim.startDay);
+        } finally {
+            claim.settled = true;
         }
-        this.customer    = customer;
-        this.rentalStart = rentalStart;
         return true;
     }
 
     /**
-     * Releases ("un-rents") the unit, making it available for rent
+     * Releases ("un-rents") the unit as of today, making it available for rent. Safe
+     * to call from many threads at once; only one of several competing calls succeeds.
+     * A rental that has not started yet by today ends the day after its start.
      * 
      * @return  true, if release could be completed; false, if unit wasn't rented to begin with
      */
     public boolean release() {
-        if (this.customer == null) {
-            return false;
+        return release(null);
+    }
+
+    /**
+     * Releases ("un-rents") the unit, making it available for rent, and ends the rental
+     * in the location's rental history. Safe to call from many threads at once; only
+     * one of several competing calls succeeds.
+     *
+     * @param   rentalEnd   the day the unit is free again; must not be before the rental
+     *                      start; pass null for today
+     * @return              true, if release could be completed; false, if unit wasn't
+     *                      rented to begin with
+     */
+    public boolean release(LocalDate rentalEnd) {
+        Rental current;
+        int waits = 0;
+        while ((current = tryBeginRelease()) == null) {
+            if (!isBeingRented()) {
+                return false;
+            }
+            // the rent that claimed this unit is still being recorded
+            waits = waitForRecording(waits);
+        }
+        int endDay;
+        try {
+            endDay = endDay(current, rentalEnd);
+        } catch (IllegalArgumentException e) {
+            cancelRelease(current);
+            throw e;
+        }
+        try {
+            storageLocation.unitReleased(this, current, endDay);
+        } finally {
+            finishRelease();
         }
-        this.customer    = null;
-        this.rentalStart = null;
-        this.price       = 0.00;
         return true;
     }
 
+    /**
+     * Waits a little for another thread to finish recording a rent or release of a
+     * unit. Recording takes a moment, but with a journal that syncs every operation it
+     * lasts as long as a disk sync, so the wait spins at first, then yields, and then
+     * parks for longer and longer.
+     *
+     * @param   waits   the number of times the caller has waited for this unit already
+     * @return          the number of times the caller has waited, including this one
+     */
+    static int waitForRecording(int waits) {
+        if (waits < SPIN_WAITS) {
+            Thread.onSpinWait();
+        } else if (waits < SPIN_WAITS + YIELD_WAITS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L << (waits - SPIN_WAITS - YIELD_WAITS)));
+        }
+        // stop counting once the parks are as long as they get
+        return Math.min(waits + 1, SPIN_WAITS + YIELD_WAITS + PARK_DOUBLINGS);
+    }
+
+    /**
+     * Works out the day a rental ends. A rental covers at least its first day.
+     *
+     * @param   ended       the rental being ended
+     * @param   rentalEnd   the day the unit is free again, or null for today
+     * @return              the end day as an epoch day, after the start day
+     */
+    static int endDay(Rental ended, LocalDate rentalEnd) {
+        if (rentalEnd == null) {
+            return (int) Math.max(ended.startDay + 1L, LocalDate.now().toEpochDay());
+        }
+        if (rentalEnd.toEpochDay() < ended.startDay) {
+            throw new IllegalArgumentException("rentalEnd must not be before the rental start");
+        }
+        return (int) Math.max(ended.startDay + 1L, rentalEnd.toEpochDay());
+    }
+
+    /**
+     * Claims the unit for a customer if it is available, without recording the rental.
+     * The claim must then be recorded and settled, or withdrawn with unclaim.
+     *
+     * @param   customer    the customer claiming the unit
+     * @param   startDay    the first day of the rental, as an epoch day
+     * @return              the claim, or null if the unit is rented or being released
+     */
+    Rental tryClaim(Customer customer, int startDay) {
+        Rental claim = new Rental(customer, startDay);
+        while (rental == null) {
+            if (RENTAL.compareAndSet(this, null, claim)) {
+                return claim;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Withdraws a claim that was never recorded, making the unit available again
+     *
+     * @param   claim   the claim returned by tryClaim
+     */
+    void unclaim(Rental claim) {
+        RENTAL.compareAndSet(this, claim, null);
+    }
+
+    /**
+     * Starts a release if the unit is rented and its rental is settled, without
+     * recording it. The release must then be recorded and finished with
+     * finishRelease, or undone with cancelRelease.
+     *
+     * @return      the rental being ended, or null if the unit is free, already being
+     *              released or its rent is still being recorded
+     */
+    Rental tryBeginRelease() {
+        Rental current;
+        while ((current = rental) != null && current != RELEASING && current.settled) {
+            if (RENTAL.compareAndSet(this, current, RELEASING)) {
+                cachedPrice = null;
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts back a rental whose release was started but never recorded
+     *
+     * @param   previous    the rental returned by tryBeginRelease
+     */
+    void cancelRelease(Rental previous) {
+        RENTAL.compareAndSet(this, RELEASING, previous);
+    }
+
+    /**
+     * Finishes a recorded release, making the unit available
+     */
+    void finishRelease() {
+        rental = null;
+    }
+
+    /**
+     * Checks whether a release of this unit is being recorded right now
+     *
+     * @return      true, if the unit will be available a moment from now
+     */
+    boolean isBeingReleased() {
+        return rental == RELEASING;
+    }
+
+    /**
+     * Checks whether a rent of this unit is being recorded right now
+     *
+     * @return      true, if the unit will be rented and settled a moment from now
+     */
+    boolean isBeingRented() {
+        Rental current = rental;
+        return current != null && current != RELEASING && !current.settled;
+    }
+
     /**
      * Retrieves the unit's location
      *
@@ -181,6 +396,48 @@ public abstract class StorageUnit implements StorageUnitInterface  {
         return storageLocation;
     }
     
+    /**
+     * Retrieves the row this unit occupies in its location
+     *
+     * @return  the unit's row, or -1 if the unit is not part of the location's grid
+     */
+    int getRowIdx() {
+        return rowIdx;
+    }
+
+    /**
+     * Retrieves the space this unit occupies within its row
+     *
+     * @return  the unit's space, or -1 if the unit is not part of the location's grid
+     */
+    int getSpaceIdx() {
+        return spaceIdx;
+    }
+
+    /**
+     * Retrieves the row-major position of this unit within its location; units
+     * that come earlier in the grid have lower positions
+     *
+     * @return  the unit's position, or -1 if the unit is not part of the location's grid
+     */
+    int getUnitIdx() {
+        return unitIdx;
+    }
+
+    /**
+     * Records where this unit sits in its location's grid. Called by the location
+     * when the unit is placed.
+     *
+     * @param   rowIdx      the row on which the unit sits
+     * @param   spaceIdx    the space the unit occupies within the row
+     * @param   unitIdx     the row-major position of the unit
+     */
+    void place(int rowIdx, int spaceIdx, int unitIdx) {
+        this.rowIdx   = rowIdx;
+        this.spaceIdx = spaceIdx;
+        this.unitIdx  = unitIdx;
+    }
+
     /**
      * Checks if this unit is rented.
      * 
@@ -188,7 +445,7 @@ public abstract class StorageUnit implements StorageUnitInterface  {
      */
     public boolean isRented(){
         boolean flag = false;
-        if (this.customer != null){
+        if (getCustomer() != null){
             flag = true;
         }
         return flag;
@@ -200,7 +457,29 @@ public abstract class StorageUnit implements StorageUnitInterface  {
      * @return   specific price of certain unit
      */
     public double calcUnitSpecificPrice(){
-        return price;
+        return 0.00;
+    }
+
+    /**
+     * Drops the cached price, so the next call to getPrice works it out again. Subclasses
+     * call this whenever something their specific price depends on changes.
+     */
+    protected void invalidatePrice() {
+        priceVersion++;
+        cachedPrice = null;
+    }
+
+    /**
+     * Tells the unit's location about a new climate level, then drops the cached price.
+     * The location's columns take the level first, so a price worked out in between is
+     * dropped rather than cached at the old level. Climate-controlled subclasses call
+     * this whenever their level changes.
+     *
+     * @param   level   the new climate level
+     */
+    protected void climateLevelChanged(int level) {
+        storageLocation.unitLevelChanged(this, level);
+        invalidatePrice();
     }
 
     /**
@@ -218,4 +497,72 @@ public abstract class StorageUnit implements StorageUnitInterface  {
         return info;
     }
 
+    /**
+     * The customer and start date of one rental. A new rental is claimed with
+     * compare-and-swap and marked settled once the location's indexes know about it;
+     * a release waits for that, so index updates for a unit happen in rental order.
+     * The start is kept as an epoch day; a LocalDate is only made when someone asks.
+     */
+    static final class Rental {
+        /** the customer renting the unit */
+        final Customer customer;
+        /** the rental start, as an epoch day */
+        final int startDay;
+        /** whether the location has finished recording the rental */
+        volatile boolean settled;
+        /** the rental start as a date, once asked for */
+        private LocalDate startDate;
+
+        /**
+         * Rental Constructor
+         *
+         * @param   customer        the customer renting the unit
+         * @param   startDay        the rental start, as an epoch day
+         */
+        Rental(Customer customer, int startDay) {
+            this.customer = customer;
+            this.startDay = startDay;
+        }
+
+        /**
+         * Retrieves the rental start as a date, creating it the first time. Threads
+         * racing here may each create one; they are equal, so any of them will do.
+         *
+         * @return      the rental start date
+         */
+        LocalDate getRentalStart() {
+            LocalDate date = startDate;
+            if (date == null) {
+                date = LocalDate.ofEpochDay(startDay);
+                startDate = date;
+            }
+            return date;
+        }
+    }
+
+    /**
+     * A price worked out for a unit, together with the location's price stamp and the
+     * unit's price version at the time; the price is stale once either moves on.
+     */
+    private static final class CachedPrice {
+        /** the location's price stamp when the price was worked out */
+        final long stamp;
+        /** the unit's price version when the price was worked out */
+        final int version;
+        /** the unit's full monthly price */
+        final double price;
+
+        /**
+         * CachedPrice Constructor
+         *
+         * @param   stamp       the location's price stamp
+         * @param   version     the unit's price version
+         * @param   price       the unit's full monthly price
+         */
+        CachedPrice(long stamp, int version, double price) {
+            this.stamp   = stamp;
+            this.version = version;
+            this.price   = price;
+        }
+    }
 }
@@ -20,6 +20,7 @@ public interface StorageUnitInterface {
    public StorageLocation getStorageLocation();
    public boolean rent(Customer customer, LocalDate rentalStart);
    public boolean release();
+   public boolean release(LocalDate rentalEnd);
    public String toString();
    public double calcUnitSpecificPrice();
 
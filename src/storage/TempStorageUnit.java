@@ -70,19 +70,38 @@ public class TempStorageUnit extends StorageUnit
             throw new IllegalArgumentException("Level temperature is out of bound.");
         }
         this.tempLevel = tempLevel;
+        climateLevelChanged(tempLevel);
     }
     
     /**
      * Method calculates specific unit price of Temperature Storage Unit. This method trears
-     * like an abstract in StorageUnit Class.
+     * like an abstract in StorageUnit Class. A unit placed in its location's grid is
+     * priced by the location's pricing rules; any other unit by the standard prices.
      * 
      * @return     specific unit price of Temperature Storage Unit
      */
     public double calcUnitSpecificPrice(){
-        double unitSpecificPrice = getLength() * getWidth() * getHeight() * PRICE_PER_CUB_FT;
+        if (getUnitIdx() >= 0) {
+            return getStorageLocation().calcUnitSpecificPrice(this);
+        }
+        return calcUnitSpecificPrice(getWidth(), getLength(), getHeight(), tempLevel);
+    }
+
+    /**
+     * Calculates the specific unit price of a Temperature Storage Unit from its
+     * dimensions and level, without needing the unit itself
+     *
+     * @param   width       the unit's width, in feet
+     * @param   length      the unit's length, in feet
+     * @param   height      the unit's height, in feet
+     * @param   tempLevel   the unit's temperature level
+     * @return              specific unit price of such a unit
+     */
+    static double calcUnitSpecificPrice(int width, int length, int height, int tempLevel) {
+        double unitSpecificPrice = length * width * height * PRICE_PER_CUB_FT;
         if (tempLevel >= LOWER && tempLevel <= UPPER_PAY || tempLevel >= LOWER_PAY && tempLevel <= UPPER) {
             unitSpecificPrice += PRICE_PAY_TEMP;
-        }        
+        }
         return unitSpecificPrice;
     }
 }
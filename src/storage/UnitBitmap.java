@@ -0,0 +1,167 @@
+package storage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size bitmap, one bit per unit position, that many threads can update at
+ * once. Bits are set and cleared with compare-and-swap on the 64-bit word holding
+ * them, so threads working on different units never wait for each other.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class UnitBitmap {
+
+    /** the bits, 64 to a word */
+    private final AtomicLongArray words;
+    /** the number of bits */
+    private final int size;
+
+    /**
+     * UnitBitmap Constructor; all bits start cleared
+     *
+     * @param   size    the number of bits; must not be negative
+     */
+    UnitBitmap(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+        this.size  = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Retrieves the number of bits in the bitmap
+     *
+     * @return      the number of bits
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks a bit
+     *
+     * @param   bit     the bit position
+     * @return          true, if the bit is set
+     */
+    boolean get(int bit) {
+        return (words.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets a bit
+     *
+     * @param   bit     the bit position
+     * @return          true, if the bit was clear before
+     */
+    boolean set(int bit) {
+        int wordIdx = bit >>> 6;
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(wordIdx);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIdx, word, word | mask));
+        return true;
+    }
+
+    /**
+     * Clears a bit
+     *
+     * @param   bit     the bit position
+     * @return          true, if the bit was set before
+     */
+    boolean clear(int bit) {
+        int wordIdx = bit >>> 6;
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(wordIdx);
+            if ((word & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIdx, word, word & ~mask));
+        return true;
+    }
+
+    /**
+     * Sets a range of bits. Meant for filling a new bitmap before it is shared.
+     *
+     * @param   from    the first bit to set
+     * @param   to      the bit after the last one to set
+     */
+    void set(int from, int to) {
+        for (int bit = from; bit < to; bit++) {
+            set(bit);
+        }
+    }
+
+    /**
+     * Counts the set bits
+     *
+     * @return      the number of set bits
+     */
+    int cardinality() {
+        int count = 0;
+        for (int wordIdx = 0; wordIdx < words.length(); wordIdx++) {
+            count += Long.bitCount(words.get(wordIdx));
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first set bit at or after a position
+     *
+     * @param   from    the position to start from
+     * @return          the position of the set bit, or -1 if there is none
+     */
+    int nextSetBit(int from) {
+        if (from < 0 || from >= size) {
+            return -1;
+        }
+        int wordIdx = from >>> 6;
+        long word = words.get(wordIdx) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int bit = (wordIdx << 6) + Long.numberOfTrailingZeros(word);
+                return bit < size ? bit : -1;
+            }
+            if (++wordIdx == words.length()) {
+                return -1;
+            }
+            word = words.get(wordIdx);
+        }
+    }
+
+    /**
+     * Finds the first bit that is set both here and in another bitmap of the same size,
+     * within a range
+     *
+     * @param   other   the other bitmap
+     * @param   from    the first position to look at
+     * @param   to      the position after the last one to look at
+     * @return          the position of the bit, or -1 if there is none in the range
+     */
+    int nextCommonBit(UnitBitmap other, int from, int to) {
+        to = Math.min(to, size);
+        if (from < 0 || from >= to) {
+            return -1;
+        }
+        int wordIdx = from >>> 6;
+        int lastWordIdx = (to - 1) >>> 6;
+        long word = words.get(wordIdx) & other.words.get(wordIdx) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int bit = (wordIdx << 6) + Long.numberOfTrailingZeros(word);
+                return bit < to ? bit : -1;
+            }
+            if (++wordIdx > lastWordIdx) {
+                return -1;
+            }
+            word = words.get(wordIdx) & other.words.get(wordIdx);
+        }
+    }
+}
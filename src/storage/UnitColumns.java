@@ -0,0 +1,286 @@
+package storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The state of every unit of a location kept as parallel primitive arrays, one entry
+ * per row-major position: type, dimensions, climate level, renter and rental start.
+ * Scans such as billing and the unit map walk these arrays from start to end instead
+ * of following a reference to a separate object per unit, and units that are only
+ * scanned never need a StorageUnit object at all.
+ *
+ * Each entry is written only from the owning unit's rent, release and level hooks,
+ * which the unit already keeps in order. The renter is written last with release
+ * semantics and read first with acquire semantics, so a reader that sees a renter
+ * also sees that rental's start.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class UnitColumns {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the renter ID of a free unit */
+    static final int FREE = -1;
+    /** the renter ID of a unit rented to someone who is not a customer of the location */
+    static final int OUTSIDER = -2;
+    /** ordered access to the renter array */
+    private static final VarHandle RENTERS = MethodHandles.arrayElementVarHandle(int[].class);
+    /** the unit types, by ordinal */
+    private static final UnitType[] TYPES = UnitType.values();
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the ordinal of each unit's type */
+    private final byte[] types;
+    /** the width of each unit, in feet */
+    private final int[] widths;
+    /** the length of each unit, in feet */
+    private final int[] lengths;
+    /** the height of each unit, in feet */
+    private final int[] heights;
+    /** the climate level of each unit; 0 for standard units */
+    private final short[] levels;
+    /** the customer ID of each unit's renter, FREE or OUTSIDER */
+    private final int[] renters;
+    /** the rental start of each rented unit, as an epoch day */
+    private final int[] starts;
+    /** the compiled pricing rules the units are priced by; replaced whole, never changed */
+    private final AtomicReference<PriceTable> prices;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * UnitColumns Constructor; every unit starts free
+     *
+     * @param   layout  the rows of the location
+     */
+    UnitColumns(StorageLayout layout) {
+        int unitCount = layout.getUnitCount();
+        types   = new byte[unitCount];
+        widths  = new int[unitCount];
+        lengths = new int[unitCount];
+        heights = new int[unitCount];
+        levels  = new short[unitCount];
+        renters = new int[unitCount];
+        starts  = new int[unitCount];
+        int unitIdx = 0;
+        for (int rowIdx = 0; rowIdx < layout.getRowCount(); rowIdx++) {
+            int rowEnd = unitIdx + layout.getSpaces(rowIdx);
+            Arrays.fill(types, unitIdx, rowEnd, (byte) layout.getType(rowIdx).ordinal());
+            Arrays.fill(widths, unitIdx, rowEnd, layout.getWidth(rowIdx));
+            Arrays.fill(lengths, unitIdx, rowEnd, layout.getLength(rowIdx));
+            Arrays.fill(heights, unitIdx, rowEnd, layout.getHeight(rowIdx));
+            Arrays.fill(levels, unitIdx, rowEnd, (short) layout.getLevel(rowIdx));
+            unitIdx = rowEnd;
+        }
+        Arrays.fill(renters, FREE);
+        prices = new AtomicReference<>(new PriceTable(PricingRules.standard(), layout));
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the number of units
+     *
+     * @return      the number of units
+     */
+    int size() {
+        return renters.length;
+    }
+
+    /**
+     * Retrieves the type of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the unit type
+     */
+    UnitType getType(int unitIdx) {
+        return TYPES[types[unitIdx]];
+    }
+
+    /**
+     * Retrieves the width of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the width, in feet
+     */
+    int getWidth(int unitIdx) {
+        return widths[unitIdx];
+    }
+
+    /**
+     * Retrieves the length of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the length, in feet
+     */
+    int getLength(int unitIdx) {
+        return lengths[unitIdx];
+    }
+
+    /**
+     * Retrieves the height of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the height, in feet
+     */
+    int getHeight(int unitIdx) {
+        return heights[unitIdx];
+    }
+
+    /**
+     * Retrieves the climate level of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the climate level; 0 for standard units
+     */
+    int getLevel(int unitIdx) {
+        return levels[unitIdx];
+    }
+
+    /**
+     * Retrieves the renter of a unit
+     *
+     * @param   unitIdx     the unit position
+     * @return              the renter's customer ID, FREE or OUTSIDER
+     */
+    int getRenter(int unitIdx) {
+        return (int) RENTERS.getAcquire(renters, unitIdx);
+    }
+
+    /**
+     * Retrieves the rental start of a unit. Only meaningful after getRenter has
+     * returned a renter for the unit.
+     *
+     * @param   unitIdx     the unit position
+     * @return              the rental start, as an epoch day
+     */
+    int getRentalStartDay(int unitIdx) {
+        return starts[unitIdx];
+    }
+
+    /**
+     * Retrieves the compiled pricing rules the units are priced by
+     *
+     * @return      the price table
+     */
+    PriceTable getPrices() {
+        return prices.get();
+    }
+
+    /**
+     * Replaces the compiled pricing rules, if they are still the expected table.
+     * Readers see either the old table or the new one, never a mix.
+     *
+     * @param   expected    the table the caller worked the new one out from
+     * @param   prices      the new price table
+     * @return              true, if the table was replaced; false, if another table was swapped in first
+     */
+    boolean compareAndSetPrices(PriceTable expected, PriceTable prices) {
+        return this.prices.compareAndSet(expected, prices);
+    }
+
+    /**
+     * Calculates the specific price of a unit from its columns
+     *
+     * @param   unitIdx     the unit position
+     * @return              the unit's specific price
+     */
+    double calcUnitSpecificPrice(int unitIdx) {
+        return calcUnitSpecificPrice(prices.get(), unitIdx);
+    }
+
+    /**
+     * Calculates the specific price of a unit from its columns by a given price table
+     *
+     * @param   table       the price table
+     * @param   unitIdx     the unit position
+     * @return              the unit's specific price
+     */
+    double calcUnitSpecificPrice(PriceTable table, int unitIdx) {
+        return table.calcSpecificPrice(unitIdx, types[unitIdx], widths[unitIdx], lengths[unitIdx], heights[unitIdx],
+            levels[unitIdx]);
+    }
+
+    /**
+     * Calculates the specific price of every unit in one branch-free batch
+     *
+     * @param   table       the price table; read once by the caller, so every unit is priced by the same rules
+     * @param   prices      receives the specific prices, indexed by unit position
+     */
+    void calcUnitSpecificPrices(PriceTable table, double[] prices) {
+        calcUnitSpecificPrices(table, prices, 0, size());
+    }
+
+    /**
+     * Calculates the specific prices of a range of units in one branch-free batch
+     *
+     * @param   table       the price table
+     * @param   prices      receives the specific prices, indexed by unit position
+     * @param   from        the position of the first unit to price
+     * @param   to          the position after the last unit to price
+     */
+    void calcUnitSpecificPrices(PriceTable table, double[] prices, int from, int to) {
+        table.calcSpecificPrices(types, widths, lengths, heights, levels, prices, from, to);
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Records a rental
+     *
+     * @param   unitIdx     the unit position
+     * @param   renter      the renter's customer ID, or OUTSIDER
+     * @param   startDay    the rental start, as an epoch day
+     */
+    void rented(int unitIdx, int renter, int startDay) {
+        starts[unitIdx] = startDay;
+        if (renter == OUTSIDER) {
+            // ordered before the caller checks again whether the renter joined, see renterJoined
+            RENTERS.setVolatile(renters, unitIdx, renter);
+        } else {
+            RENTERS.setRelease(renters, unitIdx, renter);
+        }
+    }
+
+    /**
+     * Changes the renter of a rented unit without touching its start, for a renter
+     * who became a customer after renting. Does nothing unless the unit is rented to
+     * OUTSIDER, so the renting thread and the joining customer can both call it.
+     *
+     * @param   unitIdx     the unit position
+     * @param   renter      the renter's customer ID
+     */
+    void renterJoined(int unitIdx, int renter) {
+        RENTERS.compareAndSet(renters, unitIdx, OUTSIDER, renter);
+    }
+
+    /**
+     * Records a release
+     *
+     * @param   unitIdx     the unit position
+     */
+    void released(int unitIdx) {
+        RENTERS.setRelease(renters, unitIdx, FREE);
+    }
+
+    /**
+     * Records a new climate level
+     *
+     * @param   unitIdx     the unit position
+     * @param   level       the climate level
+     */
+    void levelChanged(int unitIdx, int level) {
+        levels[unitIdx] = (short) level;
+    }
+}
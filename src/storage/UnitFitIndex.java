@@ -0,0 +1,331 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Groups a location's units into fit classes of the same type, dimensions, climate
+ * level and row premium, so a search for the best free unit looks at a handful of
+ * classes rather than at every unit. Every unit of a class has the same specific
+ * price under any price table compiled from the same rules. The classes are kept in
+ * two orders, by price and by volume; a search walks one order and takes the first
+ * class that meets the request and has a free unit, found by intersecting the
+ * class's members with the location's free-unit bitmap over the positions the class
+ * spans.
+ *
+ * Renting and releasing only change the free-unit bitmap, so the index itself only
+ * changes when a unit's climate level moves it to another class, when a surge
+ * changes prices, or when new rules regroup every unit. A surge only works out each
+ * class's price again and sorts the classes, never visiting a unit. Those changes are
+ * serialized on this object; searches never lock.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+final class UnitFitIndex {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** orders classes by specific price, then volume; ties keep their order */
+    private static final Comparator<Ranked> BY_PRICE =
+        Comparator.<Ranked>comparingDouble(r -> r.specificPrice).thenComparingLong(r -> r.fitClass.volume);
+    /** orders classes by volume, then specific price; ties keep their order */
+    private static final Comparator<Ranked> BY_VOLUME =
+        Comparator.<Ranked>comparingLong(r -> r.fitClass.volume).thenComparingDouble(r -> r.specificPrice);
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the columns the units' types, dimensions and levels are read from */
+    private final UnitColumns columns;
+    /** the class each unit belongs to; guarded by this */
+    private final FitClass[] classOf;
+    /** every class, in the order they were created; guarded by this */
+    private final List<FitClass> classes;
+    /** the classes by price, replaced whenever a class is added or prices change */
+    private volatile Ranked[] byPrice;
+    /** the classes by volume, replaced whenever a class is added or prices change */
+    private volatile Ranked[] byVolume;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * UnitFitIndex Constructor
+     *
+     * @param   columns     the location's unit columns
+     */
+    UnitFitIndex(UnitColumns columns) {
+        this.columns = columns;
+        classOf = new FitClass[columns.size()];
+        classes = new ArrayList<>();
+        build();
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Finds the best free unit for a request. Among classes that tie on price and
+     * volume the free unit earliest in grid order wins.
+     *
+     * @param   request     what the customer asks for
+     * @param   free        the location's free units
+     * @return              the position of the best free unit, or -1 if none meets the request
+     */
+    int find(UnitRequest request, UnitBitmap free) {
+        Ranked[] order = request.getFit() == UnitRequest.Fit.CHEAPEST ? byPrice : byVolume;
+        Comparator<Ranked> comparator = request.getFit() == UnitRequest.Fit.CHEAPEST ? BY_PRICE : BY_VOLUME;
+        Ranked best = null;
+        int bestIdx = -1;
+        for (Ranked ranked : order) {
+            if (best != null && comparator.compare(ranked, best) != 0) {
+                break;
+            }
+            FitClass fitClass = ranked.fitClass;
+            if (!request.accepts(fitClass.type, fitClass.width, fitClass.length, fitClass.height, fitClass.level)) {
+                continue;
+            }
+            int unitIdx = free.nextCommonBit(fitClass.members, fitClass.first, fitClass.last + 1);
+            if (unitIdx >= 0 && (bestIdx < 0 || unitIdx < bestIdx)) {
+                best = ranked;
+                bestIdx = unitIdx;
+            }
+        }
+        return bestIdx;
+    }
+
+    /**
+     * Moves a unit to the class of its new climate level
+     *
+     * @param   unitIdx     the unit position
+     */
+    synchronized void levelChanged(int unitIdx) {
+        FitClass current = classOf[unitIdx];
+        PriceTable prices = columns.getPrices();
+        if (current.matches(columns, prices, unitIdx)) {
+            return;
+        }
+        int classCount = classes.size();
+        FitClass target = classFor(prices, unitIdx, null);
+        // join the new class before leaving the old one, so the unit can always be found
+        target.add(unitIdx);
+        current.members.clear(unitIdx);
+        classOf[unitIdx] = target;
+        if (classes.size() != classCount) {
+            publishOrders();
+        }
+    }
+
+    /**
+     * Works out every class's price again from the columns' current price table and
+     * publishes the new orders, after a surge changed prices. The classes keep their
+     * units.
+     */
+    synchronized void pricesChanged() {
+        PriceTable prices = columns.getPrices();
+        for (FitClass fitClass : classes) {
+            fitClass.price(prices);
+        }
+        publishOrders();
+    }
+
+    /**
+     * Groups every unit again after the location's pricing rules changed, which may
+     * change the row premiums. The new classes are built apart from the old ones,
+     * which searches keep using until the new orders are published.
+     */
+    synchronized void rulesChanged() {
+        classes.clear();
+        build();
+    }
+
+    /**
+     * Checks that every unit is in exactly the class its columns call for
+     *
+     * @return      true, if the classes match the columns
+     */
+    synchronized boolean verify() {
+        PriceTable prices = columns.getPrices();
+        for (int unitIdx = 0; unitIdx < classOf.length; unitIdx++) {
+            if (!classOf[unitIdx].matches(columns, prices, unitIdx)
+                    || classOf[unitIdx].specificPrice != columns.calcUnitSpecificPrice(prices, unitIdx)) {
+                return false;
+            }
+            for (FitClass fitClass : classes) {
+                if (fitClass.members.get(unitIdx) != (fitClass == classOf[unitIdx])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Puts every unit in its class, creating the classes, and publishes the orders
+     */
+    private void build() {
+        PriceTable prices = columns.getPrices();
+        for (int unitIdx = 0; unitIdx < classOf.length; unitIdx++) {
+            FitClass fitClass = classFor(prices, unitIdx, unitIdx > 0 ? classOf[unitIdx - 1] : null);
+            fitClass.add(unitIdx);
+            classOf[unitIdx] = fitClass;
+        }
+        publishOrders();
+    }
+
+    /**
+     * Finds the class a unit belongs in, creating it if there is none yet
+     *
+     * @param   prices      the columns' current price table
+     * @param   unitIdx     the unit position
+     * @param   likely      a class to try first, or null
+     * @return              the class
+     */
+    private FitClass classFor(PriceTable prices, int unitIdx, FitClass likely) {
+        if (likely != null && likely.matches(columns, prices, unitIdx)) {
+            return likely;
+        }
+        for (FitClass fitClass : classes) {
+            if (fitClass.matches(columns, prices, unitIdx)) {
+                return fitClass;
+            }
+        }
+        FitClass created = new FitClass(columns, prices, unitIdx);
+        classes.add(created);
+        return created;
+    }
+
+    /**
+     * Publishes the classes in price and volume order to searches
+     */
+    private void publishOrders() {
+        Ranked[] all = new Ranked[classes.size()];
+        for (int classIdx = 0; classIdx < all.length; classIdx++) {
+            all[classIdx] = new Ranked(classes.get(classIdx));
+        }
+        Ranked[] sortedByPrice = all.clone();
+        Arrays.sort(sortedByPrice, BY_PRICE);
+        Arrays.sort(all, BY_VOLUME);
+        byPrice = sortedByPrice;
+        byVolume = all;
+    }
+
+    /**
+     * One class in a published order, with the specific price it had when the order
+     * was sorted
+     */
+    private static final class Ranked {
+
+        /** the class */
+        private final FitClass fitClass;
+        /** the specific price of a unit of the class */
+        private final double specificPrice;
+
+        /**
+         * Ranked Constructor at the class's current price
+         *
+         * @param   fitClass    the class
+         */
+        private Ranked(FitClass fitClass) {
+            this.fitClass      = fitClass;
+            this.specificPrice = fitClass.specificPrice;
+        }
+    }
+
+    /**
+     * The units of one type, size, climate level and row premium
+     */
+    private static final class FitClass {
+
+        /** the unit type */
+        private final UnitType type;
+        /** the width, in feet */
+        private final int width;
+        /** the length, in feet */
+        private final int length;
+        /** the height, in feet */
+        private final int height;
+        /** the climate level; 0 for standard units */
+        private final int level;
+        /** the row premium of a unit of this class */
+        private final double premium;
+        /** the unit the class was created for, whose row premium the class shares */
+        private final int seedIdx;
+        /** the specific price of a unit of this class at the latest prices; guarded by the index */
+        private double specificPrice;
+        /** the volume of a unit of this class, in cubic feet */
+        private final long volume;
+        /** the positions of the units in this class */
+        private final UnitBitmap members;
+        /** the lowest position this class has ever held; only moves down */
+        private volatile int first;
+        /** the highest position this class has ever held; only moves up */
+        private volatile int last;
+
+        /**
+         * FitClass Constructor for the class of a unit; the class starts empty
+         *
+         * @param   columns     the location's unit columns
+         * @param   prices      the columns' current price table
+         * @param   unitIdx     the unit position
+         */
+        private FitClass(UnitColumns columns, PriceTable prices, int unitIdx) {
+            type          = columns.getType(unitIdx);
+            width         = columns.getWidth(unitIdx);
+            length        = columns.getLength(unitIdx);
+            height        = columns.getHeight(unitIdx);
+            level         = columns.getLevel(unitIdx);
+            premium       = prices.getUnitPremium(unitIdx);
+            seedIdx       = unitIdx;
+            volume        = (long) width * length * height;
+            members       = new UnitBitmap(columns.size());
+            first         = unitIdx;
+            last          = unitIdx;
+            price(prices);
+        }
+
+        /**
+         * Works out the specific price of a unit of this class
+         *
+         * @param   prices      the price table
+         */
+        private void price(PriceTable prices) {
+            // the seed unit may have moved to another level since, so its own level is not read
+            specificPrice = prices.calcSpecificPrice(seedIdx, type.ordinal(), width, length, height, level);
+        }
+
+        /**
+         * Checks whether a unit belongs in this class
+         *
+         * @param   columns     the location's unit columns
+         * @param   prices      the columns' current price table
+         * @param   unitIdx     the unit position
+         * @return              true, if the unit's type, dimensions, level and row premium match
+         */
+        private boolean matches(UnitColumns columns, PriceTable prices, int unitIdx) {
+            return columns.getType(unitIdx) == type && columns.getWidth(unitIdx) == width
+                && columns.getLength(unitIdx) == length && columns.getHeight(unitIdx) == height
+                && columns.getLevel(unitIdx) == level && prices.getUnitPremium(unitIdx) == premium;
+        }
+
+        /**
+         * Adds a unit to this class
+         *
+         * @param   unitIdx     the unit position
+         */
+        private void add(int unitIdx) {
+            // widen the range before the bit becomes visible to searches
+            if (unitIdx < first) {
+                first = unitIdx;
+            }
+            if (unitIdx > last) {
+                last = unitIdx;
+            }
+            members.set(unitIdx);
+        }
+    }
+}
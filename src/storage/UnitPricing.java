@@ -0,0 +1,128 @@
+package storage;
+
+/**
+ * Prices many units per call from columns of dimensions and climate levels, for
+ * what-if repricing across the fleet. The rules are compiled once into a price table,
+ * whose batch loop has no branches, so the JIT can unroll and vectorize it. Units are
+ * priced as if not placed in any location: no row premium and no occupancy surge
+ * applies, since both belong to a location.
+ *
+ * The static methods price by the standard rules, and every result is bit-for-bit
+ * the price the unit classes give a unit not placed in a location. An instance
+ * prices by any rules, so one set of columns can be priced by several candidates.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class UnitPricing {
+
+    //---------------------------------------------------------------------
+    //          CONSTANTS
+    //---------------------------------------------------------------------
+    /** the standard rules, compiled once */
+    private static final UnitPricing STANDARD = new UnitPricing(PricingRules.standard());
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the rules, compiled */
+    private final PriceTable prices;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * UnitPricing Constructor compiling a set of rules
+     *
+     * @param   rules   the rules to price by; must be non-null; copied, so later
+     *                  changes to them do not change this pricing
+     */
+    public UnitPricing(PricingRules rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("Pricing rules must be non-null");
+        }
+        prices = new PriceTable(rules);
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the rules this pricing was compiled from
+     *
+     * @return      a copy of the rules
+     */
+    public PricingRules getRules() {
+        return prices.getRules();
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Calculates the specific prices of units of one type by this pricing's rules
+     *
+     * @param   type        the units' type; must be non-null
+     * @param   widths      the unit widths, in feet
+     * @param   lengths     the unit lengths, in feet
+     * @param   heights     the unit heights, in feet; only read for temperature units
+     * @param   levels      the climate levels; levels outside the type's range are
+     *                      priced as the nearest level in it
+     * @param   prices      receives the specific prices
+     * @param   count       the number of units to price, from the start of each column
+     */
+    public void calcSpecificPrices(UnitType type, int[] widths, int[] lengths, int[] heights, int[] levels,
+                                   double[] prices, int count) {
+        if (type == null) {
+            throw new IllegalArgumentException("Unit type must be non-null");
+        }
+        checkColumns(count, widths.length, lengths.length, heights.length, levels.length, prices.length);
+        this.prices.calcSpecificPrices(type, widths, lengths, heights, levels, prices, 0, count);
+    }
+
+    /**
+     * Calculates the specific prices of temperature units by the standard rules
+     *
+     * @param   widths      the unit widths, in feet
+     * @param   lengths     the unit lengths, in feet
+     * @param   heights     the unit heights, in feet
+     * @param   levels      the temperature levels
+     * @param   prices      receives the specific prices
+     * @param   count       the number of units to price, from the start of each column
+     */
+    public static void calcTempPrices(int[] widths, int[] lengths, int[] heights, int[] levels, double[] prices,
+                                      int count) {
+        STANDARD.calcSpecificPrices(UnitType.TEMPERATURE, widths, lengths, heights, levels, prices, count);
+    }
+
+    /**
+     * Calculates the specific prices of humidity units by the standard rules
+     *
+     * @param   widths      the unit widths, in feet
+     * @param   lengths     the unit lengths, in feet
+     * @param   levels      the humidity levels
+     * @param   prices      receives the specific prices
+     * @param   count       the number of units to price, from the start of each column
+     */
+    public static void calcHumidPrices(int[] widths, int[] lengths, int[] levels, double[] prices, int count) {
+        // humidity units are priced by floor area, so no height column is read
+        STANDARD.calcSpecificPrices(UnitType.HUMIDITY, widths, lengths, widths, levels, prices, count);
+    }
+
+    /**
+     * Checks that every column holds at least the number of units to price
+     *
+     * @param   count       the number of units to price
+     * @param   lengths     the lengths of the columns
+     */
+    private static void checkColumns(int count, int... lengths) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative");
+        }
+        for (int length : lengths) {
+            if (length < count) {
+                throw new IllegalArgumentException("Every column must hold at least count units");
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package storage;
+
+/**
+ * What a customer asks for when looking for a unit: a unit type, minimum dimensions,
+ * a band of acceptable climate levels, and whether the cheapest or the tightest
+ * fitting unit is wanted. Used with StorageLocation.allocate.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public final class UnitRequest {
+
+    /**
+     * Which of the fitting units to prefer
+     */
+    public enum Fit {
+        /** the unit with the lowest price, then the smallest volume */
+        CHEAPEST,
+        /** the unit with the smallest volume, then the lowest price */
+        TIGHTEST
+    }
+
+    //---------------------------------------------------------------------
+    //          INSTANCE DATA
+    //---------------------------------------------------------------------
+    /** the wanted unit type, or null for any type */
+    private final UnitType type;
+    /** the minimum width, in feet */
+    private final int minWidth;
+    /** the minimum length, in feet */
+    private final int minLength;
+    /** the minimum height, in feet */
+    private final int minHeight;
+    /** the lowest acceptable climate level */
+    private final int minLevel;
+    /** the highest acceptable climate level */
+    private final int maxLevel;
+    /** which of the fitting units to prefer */
+    private final Fit fit;
+
+    //---------------------------------------------------------------------
+    //          CONSTRUCTORS
+    //---------------------------------------------------------------------
+    /**
+     * UnitRequest Constructor for a unit at any climate level
+     *
+     * @param   type        the wanted unit type, or null for any type
+     * @param   minWidth    the minimum width, in feet; must not be negative
+     * @param   minLength   the minimum length, in feet; must not be negative
+     * @param   minHeight   the minimum height, in feet; must not be negative
+     * @param   fit         which of the fitting units to prefer; must not be null
+     */
+    public UnitRequest(UnitType type, int minWidth, int minLength, int minHeight, Fit fit) {
+        this(type, minWidth, minLength, minHeight, Integer.MIN_VALUE, Integer.MAX_VALUE, fit);
+    }
+
+    /**
+     * UnitRequest Constructor for a climate-controlled unit. Standard units have no
+     * climate level and never match a request with a band.
+     *
+     * @param   type        the wanted unit type, or null for any climate-controlled type
+     * @param   minWidth    the minimum width, in feet; must not be negative
+     * @param   minLength   the minimum length, in feet; must not be negative
+     * @param   minHeight   the minimum height, in feet; must not be negative
+     * @param   minLevel    the lowest acceptable climate level
+     * @param   maxLevel    the highest acceptable climate level; must not be below minLevel
+     * @param   fit         which of the fitting units to prefer; must not be null
+     */
+    public UnitRequest(UnitType type, int minWidth, int minLength, int minHeight, int minLevel, int maxLevel,
+                       Fit fit) {
+        if (minWidth < 0 || minLength < 0 || minHeight < 0) {
+            throw new IllegalArgumentException("Minimum dimensions must not be negative");
+        }
+        if (maxLevel < minLevel) {
+            throw new IllegalArgumentException("The climate band must not end before it starts");
+        }
+        if (fit == null) {
+            throw new IllegalArgumentException("Fit must be non-null");
+        }
+        this.type      = type;
+        this.minWidth  = minWidth;
+        this.minLength = minLength;
+        this.minHeight = minHeight;
+        this.minLevel  = minLevel;
+        this.maxLevel  = maxLevel;
+        this.fit       = fit;
+    }
+
+    //---------------------------------------------------------------------
+    //          ACCESSORS
+    //---------------------------------------------------------------------
+    /**
+     * Retrieves the wanted unit type
+     *
+     * @return      the unit type, or null for any type
+     */
+    public UnitType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the minimum width
+     *
+     * @return      the minimum width, in feet
+     */
+    public int getMinWidth() {
+        return minWidth;
+    }
+
+    /**
+     * Retrieves the minimum length
+     *
+     * @return      the minimum length, in feet
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Retrieves the minimum height
+     *
+     * @return      the minimum height, in feet
+     */
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    /**
+     * Retrieves the lowest acceptable climate level
+     *
+     * @return      the lowest level
+     */
+    public int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Retrieves the highest acceptable climate level
+     *
+     * @return      the highest level
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Retrieves which of the fitting units to prefer
+     *
+     * @return      the fit
+     */
+    public Fit getFit() {
+        return fit;
+    }
+
+    /**
+     * Checks whether the request limits the climate level
+     *
+     * @return      true, if only climate-controlled units within the band match
+     */
+    public boolean hasClimateBand() {
+        return minLevel != Integer.MIN_VALUE || maxLevel != Integer.MAX_VALUE;
+    }
+
+    //---------------------------------------------------------------------
+    //          OTHER METHODS
+    //---------------------------------------------------------------------
+    /**
+     * Checks whether a unit with the given properties meets the request
+     *
+     * @param   unitType    the unit's type
+     * @param   width       the unit's width, in feet
+     * @param   length      the unit's length, in feet
+     * @param   height      the unit's height, in feet
+     * @param   level       the unit's climate level; ignored for standard units
+     * @return              true, if the unit meets the request
+     */
+    public boolean accepts(UnitType unitType, int width, int length, int height, int level) {
+        if (type != null && unitType != type) {
+            return false;
+        }
+        if (width < minWidth || length < minLength || height < minHeight) {
+            return false;
+        }
+        if (!hasClimateBand()) {
+            return true;
+        }
+        return unitType != UnitType.STANDARD && level >= minLevel && level <= maxLevel;
+    }
+
+    /**
+     * Describes the request
+     *
+     * @return      the request as text
+     */
+    public String toString() {
+        String band = hasClimateBand() ? String.format(", level %d-%d", minLevel, maxLevel) : "";
+        return String.format("%s %s unit, at least %dx%dx%d%s", fit, type == null ? "any" : type, minWidth, minLength,
+            minHeight, band);
+    }
+}
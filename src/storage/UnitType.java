@@ -0,0 +1,141 @@
+package storage;
+
+/**
+ * The kinds of storage unit a location can hold, with the symbol each one uses
+ * in layout files and unit maps.
+ *
+ * @author      agent
+ * @version     2026-10-17
+ */
+public enum UnitType {
+
+    /** standard units, no climate control */
+    STANDARD('S', StdStorageUnit.class),
+    /** humidity controlled units; the climate level is the humidity */
+    HUMIDITY('H', HumidStorageUnit.class),
+    /** temperature controlled units; the climate level is the temperature */
+    TEMPERATURE('T', TempStorageUnit.class);
+
+    /** the symbol for this type in layout files and unit maps */
+    private final char symbol;
+    /** the class of units of this type */
+    private final Class<? extends StorageUnit> unitClass;
+
+    /**
+     * UnitType Constructor
+     *
+     * @param   symbol      the symbol for this type
+     * @param   unitClass   the class of units of this type
+     */
+    UnitType(char symbol, Class<? extends StorageUnit> unitClass) {
+        this.symbol    = symbol;
+        this.unitClass = unitClass;
+    }
+
+    /**
+     * Retrieves the symbol for this type
+     *
+     * @return      the symbol used in layout files and unit maps
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Retrieves the class of units of this type
+     *
+     * @return      the unit class
+     */
+    public Class<? extends StorageUnit> getUnitClass() {
+        return unitClass;
+    }
+
+    /**
+     * Checks whether a climate level is allowed for this type
+     *
+     * @param   level   the climate level; ignored for standard units
+     * @return          true, if units of this type accept the level
+     */
+    public boolean acceptsLevel(int level) {
+        switch (this) {
+            case HUMIDITY:
+                return level >= HumidStorageUnit.LOWER && level <= HumidStorageUnit.UPPER;
+            case TEMPERATURE:
+                return level >= TempStorageUnit.LOWER && level <= TempStorageUnit.UPPER;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Calculates the specific price of a unit of this type from its dimensions and
+     * level, the same way the unit's own calcUnitSpecificPrice does
+     *
+     * @param   width       the unit's width, in feet
+     * @param   length      the unit's length, in feet
+     * @param   height      the unit's height, in feet
+     * @param   level       the climate level; ignored for standard units
+     * @return              the unit's specific price
+     */
+    public double calcUnitSpecificPrice(int width, int length, int height, int level) {
+        switch (this) {
+            case HUMIDITY:
+                return HumidStorageUnit.calcUnitSpecificPrice(width, length, level);
+            case TEMPERATURE:
+                return TempStorageUnit.calcUnitSpecificPrice(width, length, height, level);
+            default:
+                return StdStorageUnit.PRICE_FOR_STAND_STORAGE_UNIT;
+        }
+    }
+
+    /**
+     * Creates a unit of this type
+     *
+     * @param   width               the unit's width, in feet
+     * @param   length              the unit's length, in feet
+     * @param   height              the unit's height, in feet
+     * @param   level               the climate level; ignored for standard units
+     * @param   storageLocation     the location of the unit
+     * @return                      the new unit
+     */
+    public StorageUnit create(int width, int length, int height, int level, StorageLocation storageLocation) {
+        switch (this) {
+            case HUMIDITY:
+                return new HumidStorageUnit(width, length, height, level, storageLocation);
+            case TEMPERATURE:
+                return new TempStorageUnit(width, length, height, level, storageLocation);
+            default:
+                return new StdStorageUnit(width, length, height, storageLocation);
+        }
+    }
+
+    /**
+     * Finds the type with the given symbol
+     *
+     * @param   symbol      the symbol to look up
+     * @return              the matching type
+     */
+    public static UnitType fromSymbol(char symbol) {
+        for (UnitType type : values()) {
+            if (type.symbol == symbol) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown unit type symbol: " + symbol);
+    }
+
+    /**
+     * Finds the type whose units have exactly the given class
+     *
+     * @param   unitClass   the unit class to look up
+     * @return              the matching type, or null if the class is not a unit type
+     */
+    public static UnitType of(Class<?> unitClass) {
+        for (UnitType type : values()) {
+            if (type.unitClass == unitClass) {
+                return type;
+            }
+        }
+        return null;
+    }
+}